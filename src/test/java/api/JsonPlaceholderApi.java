@@ -1,15 +1,81 @@
 package api;
 
+import common.FileBodyCache;
+import common.GeneratedBody;
+import common.IdPool;
+import common.Offload;
+import common.Retry;
+import common.RetryBudget;
+import common.SessionFutures;
 import io.gatling.javaapi.core.ChainBuilder;
+import metrics.RequestMetrics;
+import protocol.Protocols;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-
+import static api.JsonPlaceholderBodies.*;
+import static common.JsonFieldExtractor.jsonField;
 import static io.gatling.javaapi.core.CoreDsl.*;
 import static io.gatling.javaapi.http.HttpDsl.*;
 
 public class JsonPlaceholderApi {
 
+    /**
+     * Request names, as they appear in Gatling's reports and in RequestMetrics; SLOs refer to them.
+     */
+    public static final String GET_ALL_POSTS = "[GET] All Posts";
+    public static final String GET_ALL_POSTS_WITH_RETRY = "[GET] All Posts (with Retry)";
+    public static final String GET_POST_BY_ID = "[GET] Post by ID";
+    public static final String CREATE_POST = "[POST] Create Post";
+    public static final String CREATE_POST_EL_FILE_BODY = "[POST] Create Post with ElFileBody";
+    public static final String CREATE_POST_RAW_FILE_BODY = "[POST] Create Post with RawFileBody";
+    public static final String CREATE_POST_INPUT_STREAM_BODY = "[POST] Create Post with InputStreamBody";
+    public static final String UPDATE_POST = "[PUT] Update Post";
+    public static final String DELETE_POST = "[DELETE] Delete Post";
+    public static final String UPLOAD_GENERATED_POSTS = "[POST] Upload Generated Posts";
+    public static final String UPLOAD_GENERATED_BYTES = "[POST] Upload Generated Bytes";
+
+    /**
+     * Virtual-thread executor for the file I/O of createPostInputStreamBody.
+     */
+    private static final Offload FILE_IO = Offload.named("file-io");
+
+    /**
+     * Upload endpoint: -Dupload.path (default /uploads, served by the local stand-in;
+     * JSONPlaceholder itself rejects large bodies).
+     */
+    private static final String UPLOAD_PATH = System.getProperty("upload.path", "/uploads");
+
+    /**
+     * Payloads of uploadGeneratedPosts and uploadGeneratedBytes, of -Dupload.bytes (default 10 MiB).
+     */
+    public static final GeneratedBody GENERATED_POSTS = GeneratedBody.jsonPosts("posts", Long.getLong("upload.bytes", 10L << 20));
+    public static final GeneratedBody GENERATED_BYTES = GeneratedBody.bytes("bytes", Long.getLong("upload.bytes", 10L << 20));
+
+    /**
+     * Ids of the posts created during the run, shared by all virtual users:
+     * the create chains publish into it, updatePooledPost borrows and deletePooledPost removes.
+     * Capacity: -Dpool.posts.capacity (default 10000).
+     */
+    public static final IdPool POST_IDS = IdPool.named("posts");
+
+    /**
+     * Whether created posts go into POST_IDS: only against a target that stores them, since JSONPlaceholder
+     * fakes its writes and answers every create with the same id, 101, which it does not have.
+     * -Dpool.posts.enabled, by default true with -Dtarget=local only.
+     */
+    public static final boolean POOL_CREATED_POSTS =
+            Boolean.parseBoolean(System.getProperty("pool.posts.enabled", String.valueOf(Protocols.LOCAL)));
+
+    /**
+     * Adds the id saved by a successful create to POST_IDS, if POOL_CREATED_POSTS.
+     * The create chains drop the previous "newPostId" first, so a failed create publishes nothing.
+     */
+    private static final ChainBuilder PUBLISH_NEW_POST_ID = doIf(session -> POOL_CREATED_POSTS && session.contains("newPostId")).then(
+            exec(session -> {
+                POST_IDS.publish(session.getString("newPostId"));
+                return session;
+            })
+    );
+
     /**
      * Retrieves all posts.
      *
@@ -19,31 +85,34 @@ public class JsonPlaceholderApi {
      * @return a ChainBuilder that performs the GET /posts request
      */
     public static ChainBuilder getPosts = exec(
-            http("[GET] All Posts")
+            RequestMetrics.timed(GET_ALL_POSTS, name -> http(name)
                     .get("/posts")
-                    .check(status().is(200))
+                    .check(status().is(200)))
     );
 
+    /**
+     * Retry budget shared by every request of this API: retries add at most -Dretry.jsonplaceholder.ratio
+     * (default 10%) to the base traffic, so a degraded target is not hit by a retry storm.
+     */
+    public static final RetryBudget RETRY_BUDGET = RetryBudget.named("jsonplaceholder");
+
     /**
      * Attempts to retrieve all posts, retrying up to 3 times if the request fails.
      *
-     * This block wraps the GET /posts call inside a tryMax structure, allowing up to 3 retries
-     * in case of temporary failures (like timeouts or 5xx responses).
-     * A short pause of 1 second is added between retries to avoid overwhelming the server.
+     * Retries back off exponentially with full jitter (200 ms up to 5 s) and are only sent while
+     * RETRY_BUDGET has tokens. They are reported as "[GET] All Posts (with Retry) (retry)",
+     * apart from the first attempts.
      *
      * Checks that the response status is 200 (OK).
      *
      * @return a ChainBuilder that performs the GET /posts request with retry logic
      */
-    public static ChainBuilder getPostsWithRetry = tryMax(3).on(
-            exec(
-                    http("[GET] All Posts (with Retry)")
-                            .get("/posts")
-                            .check(status().is(200))
-            )
-                    .pause(1) // Pause 1 second between attempts
-                    .exitHereIfFailed() // exits the scenario early if all retries failed
-    );
+    public static ChainBuilder getPostsWithRetry = Retry.policy().maxAttempts(3).budget(RETRY_BUDGET).on(
+            GET_ALL_POSTS_WITH_RETRY,
+            attempt -> RequestMetrics.timed(attempt, name -> http(name)
+                    .get("/posts")
+                    .check(status().is(200)))
+    ).exitHereIfFailed(); // exits the scenario early if all retries failed
 
     /**
      * Retrieves a single post by its ID.
@@ -55,9 +124,9 @@ public class JsonPlaceholderApi {
      * @return a ChainBuilder that performs the GET /posts/{id} request
      */
     public static ChainBuilder getPostById = exec(
-            http("[GET] Post by ID")
+            RequestMetrics.timed(GET_POST_BY_ID, name -> http(name)
                     .get(session -> "/posts/" + session.get("id"))
-                    .check(status().is(200))
+                    .check(status().is(200)))
     );
 
     /**
@@ -66,7 +135,9 @@ public class JsonPlaceholderApi {
      * Sends a POST request to /posts with a JSON body.
      * The body includes "title", "body", and "userId" values taken from the session.
      * Checks that the response status is 201 (Created) or 200 (OK).
-     * Saves the newly created post's ID as "newPostId" in the session.
+     * Saves the newly created post's ID as "newPostId" in the session
+     * (read by a streaming scan of the response, see JsonFieldExtractor.jsonField),
+     * then publishes it to POST_IDS.
      *
      * Feeder/session requirements:
      * - title (String)
@@ -75,18 +146,14 @@ public class JsonPlaceholderApi {
      *
      * @return a ChainBuilder that performs the POST /posts request
      */
-    public static ChainBuilder createPost = exec(
-            http("[POST] Create Post")
+    public static ChainBuilder createPost = exec(session -> session.remove("newPostId")).exec(
+            RequestMetrics.timed(CREATE_POST, name -> http(name)
                     .post("/posts")
-                    .body(StringBody(session -> "{\n" +
-                            "  \"title\": \"" + session.getString("title") + "\",\n" +
-                            "  \"body\": \"" + session.getString("body") + "\",\n" +
-                            "  \"userId\": " + session.getInt("userId") + "\n" +
-                            "}"))
+                    .body(CREATE_POST_BODY.asBody())
                     .asJson()
                     .check(status().in(201, 200)) // placeholder returns 201
-                    .check(jsonPath("$.id").saveAs("newPostId"))
-    );
+                    .check(jsonField("$.id").saveAs("newPostId")))
+    ).exec(PUBLISH_NEW_POST_ID);
 
     /**
      * Creates a new post using a JSON payload loaded from a file,
@@ -102,14 +169,14 @@ public class JsonPlaceholderApi {
      * - ElFileBody uses those variables to dynamically fill placeholders in the JSON payload.
      * - Feeder feeds data into the session; ElFileBody injects that data into the request body.
      */
-    public static ChainBuilder createPostElFileBody = exec(
-            http("[POST] Create Post with ElFileBody")
+    public static ChainBuilder createPostElFileBody = exec(session -> session.remove("newPostId")).exec(
+            RequestMetrics.timed(CREATE_POST_EL_FILE_BODY, name -> http(name)
                     .post("/posts")
-                    .body(ElFileBody("data/posts.json")) // EL placeholders are resolved at runtime
+                    .body(ElFileBody(POSTS_RESOURCE)) // EL placeholders are resolved at runtime
                     .asJson()
                     .check(status().in(201, 200))
-                    .check(jsonPath("$.id").saveAs("newPostId"))
-    );
+                    .check(jsonField("$.id").saveAs("newPostId")))
+    ).exec(PUBLISH_NEW_POST_ID);
 
     /**
      * Creates a new post by sending a static JSON payload directly from a file,
@@ -125,14 +192,14 @@ public class JsonPlaceholderApi {
      * - The request body is fixed and always identical.
      * - Data feeders are not needed because there's no variable input.
      */
-    public static ChainBuilder createPostRawFileBody = exec(
-            http("[POST] Create Post with RawFileBody")
+    public static ChainBuilder createPostRawFileBody = exec(session -> session.remove("newPostId")).exec(
+            RequestMetrics.timed(CREATE_POST_RAW_FILE_BODY, name -> http(name)
                     .post("/posts")
-                    .body(RawFileBody("data/posts.json")) // No EL processing, file content sent as-is
+                    .body(RawFileBody(POSTS_RESOURCE)) // No EL processing, file content sent as-is
                     .asJson()
                     .check(status().in(201, 200))
-                    .check(jsonPath("$.id").saveAs("newPostId"))
-    );
+                    .check(jsonField("$.id").saveAs("newPostId")))
+    ).exec(PUBLISH_NEW_POST_ID);
 
     /**
      * Creates a new post by streaming the JSON payload from an InputStream.
@@ -146,25 +213,32 @@ public class JsonPlaceholderApi {
      * The JSON file path is relative or absolute in the code,
      * e.g., "src/test/resources/data/posts.json"
      *
+     * The file is loaded once into a shared read-only buffer (memory-mapped when large)
+     * by FileBodyCache, and each request streams from its own cheap view of it.
+     * No file is opened per request, and the file is re-read only when it changes on disk.
+     * That check and reload are file I/O, so when one is due the stream is opened on a virtual thread (FILE_IO)
+     * rather than on the event loop; the rest of the time the cached view is fresh and the stream is opened
+     * right away, without a hop or a poll (FileBodyCache.openStreamIfFresh).
+     *
      * Difference from Data Feeder:
      * - Similar to RawFileBody, it sends a fixed payload.
      * - No dynamic data substitution from session variables.
      * - Data feeders are unnecessary since no variable data is injected.
      */
-    public static ChainBuilder createPostInputStreamBody = exec(
-            http("[POST] Create Post with InputStreamBody")
-                    .post("/posts")
-                    .body(InputStreamBody(session -> {
-                        try {
-                            return new FileInputStream("src/test/resources/data/posts.json");
-                        } catch (FileNotFoundException e) {
-                            throw new RuntimeException(e);
-                        }
-                    }))
-                    .asJson()
-                    .check(status().in(201, 200))
-                    .check(jsonPath("$.id").saveAs("newPostId"))
-    );
+    public static ChainBuilder createPostInputStreamBody = exec(session -> session.remove("newPostId"))
+            .exec(SessionFutures.offload("postsFileStream", FILE_IO,
+                    session -> FileBodyCache.shared().openStreamIfFresh(POSTS_FILE),
+                    session -> FileBodyCache.shared().openStream(POSTS_FILE)))
+            .exec(
+                    RequestMetrics.timed(CREATE_POST_INPUT_STREAM_BODY, name -> http(name)
+                            .post("/posts")
+                            .body(InputStreamBody(session -> session.get("postsFileStream")))
+                            .asJson()
+                            .check(status().in(201, 200))
+                            .check(jsonField("$.id").saveAs("newPostId")))
+            )
+            .exec(session -> session.remove("postsFileStream"))
+            .exec(PUBLISH_NEW_POST_ID);
 
     /**
      * Updates an existing post by ID.
@@ -182,16 +256,11 @@ public class JsonPlaceholderApi {
      * @return a ChainBuilder that performs the PUT /posts/{id} request
      */
     public static ChainBuilder updatePost = exec(
-            http("[PUT] Update Post")
+            RequestMetrics.timed(UPDATE_POST, name -> http(name)
                     .put(session -> "/posts/" + session.get("id"))
-                    .body(StringBody(session -> "{\n" +
-                            "  \"id\": " + session.get("id") + ",\n" +
-                            "  \"title\": \"" + session.getString("title") + "\",\n" +
-                            "  \"body\": \"" + session.getString("body") + "\",\n" +
-                            "  \"userId\": " + session.get("userId") + "\n" +
-                            "}"))
+                    .body(UPDATE_POST_BODY.asBody())
                     .asJson()
-                    .check(status().is(200))
+                    .check(status().is(200)))
     );
 
     /**
@@ -206,8 +275,76 @@ public class JsonPlaceholderApi {
      * @return a ChainBuilder that performs the DELETE /posts/{id} request
      */
     public static ChainBuilder deletePost = exec(
-            http("[DELETE] Delete Post")
+            RequestMetrics.timed(DELETE_POST, name -> http(name)
                     .delete(session -> "/posts/" + session.get("id"))
-                    .check(status().in(200, 204))
+                    .check(status().in(200, 204)))
+    );
+
+    /**
+     * Updates a post created earlier in the run by any virtual user.
+     *
+     * Borrows an id from POST_IDS, so no other user updates or deletes that post meanwhile,
+     * sends updatePost with it, and gives the id back afterwards.
+     * When the pool is empty, the feeder's "id" is used instead.
+     *
+     * Feeder/session requirements: the same as updatePost
+     *
+     * @return a ChainBuilder that performs the PUT /posts/{id} request on a real record
+     */
+    public static ChainBuilder updatePooledPost = exec(session -> {
+        String id = POST_IDS.borrow();
+        return id == null ? session : session.set("pooledId", id).set("id", id);
+    })
+            .exec(updatePost)
+            .exec(session -> {
+                if (session.contains("pooledId")) {
+                    POST_IDS.release(session.getString("pooledId"));
+                    return session.remove("pooledId");
+                }
+                return session;
+            });
+
+    /**
+     * Deletes a post created earlier in the run by any virtual user.
+     *
+     * Removes an id from POST_IDS for good, so each created post is deleted at most once.
+     * When the pool is empty, the feeder's "id" is used instead.
+     *
+     * @return a ChainBuilder that performs the DELETE /posts/{id} request on a real record
+     */
+    public static ChainBuilder deletePooledPost = exec(session -> {
+        String id = POST_IDS.remove();
+        return id == null ? session : session.set("id", id);
+    })
+            .exec(deletePost);
+
+    /**
+     * Uploads a JSON array of posts generated on the fly (GENERATED_POSTS), with chunked transfer encoding.
+     *
+     * The payload is never held in memory nor stored on disk, so it can be several GiB (-Dupload.bytes).
+     * The request's latency is reported as usual; the upload throughput in MB/s is reported
+     * separately at the end of the run (see GeneratedBody).
+     *
+     * @return a ChainBuilder that performs the POST -Dupload.path request
+     */
+    public static ChainBuilder uploadGeneratedPosts = exec(
+            RequestMetrics.timed(UPLOAD_GENERATED_POSTS, name -> http(name)
+                    .post(UPLOAD_PATH)
+                    .body(InputStreamBody(session -> GENERATED_POSTS.open()))
+                    .asJson()
+                    .check(status().in(201, 200)))
+    );
+
+    /**
+     * Same as uploadGeneratedPosts, with pseudo-random bytes (GENERATED_BYTES) as application/octet-stream.
+     *
+     * @return a ChainBuilder that performs the POST -Dupload.path request
+     */
+    public static ChainBuilder uploadGeneratedBytes = exec(
+            RequestMetrics.timed(UPLOAD_GENERATED_BYTES, name -> http(name)
+                    .post(UPLOAD_PATH)
+                    .header("Content-Type", "application/octet-stream")
+                    .body(InputStreamBody(session -> GENERATED_BYTES.open()))
+                    .check(status().in(201, 200)))
     );
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+package api;
+
+import common.JsonTemplate;
+
+import java.nio.file.Path;
+
+/**
+ * The request bodies of JsonPlaceholderApi.
+ *
+ * Kept apart from the API's chains, which need a running Gatling to be built, so the benchmarks
+ * (see benchmarks.RequestBodyBenchmark) can measure the very same bodies outside a simulation.
+ */
+public class JsonPlaceholderBodies {
+
+    /**
+     * Classpath resource sent by createPostElFileBody and createPostRawFileBody.
+     */
+    public static final String POSTS_RESOURCE = "data/posts.json";
+
+    /**
+     * Payload streamed by createPostInputStreamBody: the same file, read from the source tree.
+     */
+    public static final Path POSTS_FILE = Path.of("src/test/resources", POSTS_RESOURCE);
+
+    /**
+     * Request body templates, compiled once into byte segments.
+     *
+     * Rendering writes the session values (JSON-escaped where quoted) straight into a reused
+     * buffer, instead of concatenating and re-encoding Strings on every request.
+     */
+    public static final JsonTemplate CREATE_POST_BODY = JsonTemplate.compile("""
+            {
+              "title": "#{title}",
+              "body": "#{body}",
+              "userId": #{userId}
+            }""");
+
+    public static final JsonTemplate UPDATE_POST_BODY = JsonTemplate.compile("""
+            {
+              "id": #{id},
+              "title": "#{title}",
+              "body": "#{body}",
+              "userId": #{userId}
+            }""");
+}
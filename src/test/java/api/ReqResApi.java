@@ -1,14 +1,35 @@
 package api;
 
 
+import common.JsonFieldExtractor;
+import common.JsonTemplate;
+import common.SessionFutures;
+import common.TokenPool;
 import io.gatling.javaapi.core.ChainBuilder;
+import metrics.RequestMetrics;
+import protocol.Protocols;
 
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static common.JsonFieldExtractor.jsonField;
 import static io.gatling.javaapi.core.CoreDsl.*;
 import static io.gatling.javaapi.http.HttpDsl.http;
 import static io.gatling.javaapi.http.HttpDsl.status;
 
 public class ReqResApi {
 
+    /**
+     * Request names, as they appear in Gatling's reports and in RequestMetrics; SLOs refer to them.
+     */
+    public static final String LOGIN = "ReqRes Login";
+    public static final String GET_USERS = "ReqRes Get Users";
+
     /**
      * API key used to authenticate requests to the ReqRes API.
      *
@@ -17,6 +38,40 @@ public class ReqResApi {
      */
     private static final String API_KEY = "reqres-free-v1";
 
+    /**
+     * Login request body, compiled once; email and password are JSON-escaped when rendered.
+     */
+    private static final JsonTemplate LOGIN_BODY = JsonTemplate.compile(
+            "{ \"email\": \"#{email}\", \"password\": \"#{password}\" }");
+
+    private static final JsonFieldExtractor TOKEN = JsonFieldExtractor.compile("$.token");
+
+    private static final HttpClient TOKEN_CLIENT = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    /**
+     * Login tokens shared by every virtual user, keyed by credential.
+     *
+     * - TTL: -Dreqres.tokenTtlSeconds (default 300)
+     * - Refresh-ahead window: -Dreqres.tokenRefreshAheadSeconds (default 30)
+     * - Back-off after a failed login: -Dreqres.tokenRetryAfterSeconds (default 5)
+     *
+     * Logins made by the pool go through a plain java.net.http client, so they are
+     * not part of the Gatling statistics: the run measures the protected endpoints only.
+     */
+    public static final TokenPool<Credentials> TOKENS = new TokenPool<>(
+            Duration.ofSeconds(Long.getLong("reqres.tokenTtlSeconds", 300)),
+            Duration.ofSeconds(Long.getLong("reqres.tokenRefreshAheadSeconds", 30)),
+            Duration.ofSeconds(Long.getLong("reqres.tokenRetryAfterSeconds", 5)),
+            ReqResApi::fetchToken);
+
+    /**
+     * Key of the shared token pool.
+     */
+    public record Credentials(String email, String password) {
+    }
+
     /**
      * Performs user login via the ReqRes API.
      *
@@ -42,19 +97,58 @@ public class ReqResApi {
     })
             .doIf(session -> !session.contains("authToken"))
             .then(
-                    exec(
-                            http("ReqRes Login")
-                                    .post("/api/login")
-                                    .header("x-api-key", API_KEY)
-                                    .body(StringBody(session ->
-                                            "{ \"email\": \"" + session.getString("email") + "\", " +
-                                                    "\"password\": \"" + session.getString("password") + "\" }"
-                                    ))
-                                    .check(status().is(200))
-                                    .check(jsonPath("$.token").saveAs("authToken"))
-                    )
+                    RequestMetrics.timed(LOGIN, name -> http(name)
+                            .post("/api/login")
+                            .header("x-api-key", API_KEY)
+                            .body(LOGIN_BODY.asBody())
+                            .check(status().is(200))
+                            .check(jsonField("$.token").saveAs("authToken")))
             );
 
+    /**
+     * Obtains an auth token from the pool shared by all virtual users.
+     *
+     * Unlike login, this does not send a measured POST /api/login per virtual user:
+     * - A cached, unexpired token for the user's credentials is used right away.
+     * - Concurrent users with the same credentials share a single login.
+     * - Tokens are refreshed in the background shortly before they expire.
+     *
+     * On success the token is stored in the session as 'authToken', so getUsers works unchanged.
+     * If the login fails, the session is marked as failed.
+     *
+     * Feeder requirements:
+     * - 'email' : The user's email address
+     * - 'password' : The user's password
+     *
+     * @return a ChainBuilder that provides 'authToken' without a per-user round trip
+     */
+    public static ChainBuilder loginWithSharedToken = doIf(session -> !session.contains("authToken")).then(
+            SessionFutures.await("authToken", session ->
+                    TOKENS.token(new Credentials(session.getString("email"), session.getString("password"))))
+    );
+
+    /**
+     * Performs one POST /api/login outside Gatling and extracts the token from the response.
+     */
+    private static CompletableFuture<String> fetchToken(Credentials credentials) {
+        byte[] body = LOGIN_BODY.render(Map.<String, Object>of(
+                "email", credentials.email(),
+                "password", credentials.password())::get);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(Protocols.REQRES_BASE_URL + "/api/login"))
+                .timeout(Duration.ofSeconds(10))
+                .header("x-api-key", API_KEY)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return TOKEN_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+            String token = response.statusCode() == 200 ? TOKEN.extract(response.body()) : null;
+            if (token == null) {
+                throw new IllegalStateException("Login failed for " + credentials.email() + ": HTTP " + response.statusCode());
+            }
+            return token;
+        });
+    }
+
     /**
      * Retrieves a list of users from ReqRes.
      *
@@ -63,11 +157,9 @@ public class ReqResApi {
      *
      * @return a ChainBuilder that performs a GET request to /api/users?page=2
      */
-    public static ChainBuilder getUsers = exec(
-            http("ReqRes Get Users")
-                    .get("/api/users?page=2")
-                    .header("x-api-key", API_KEY)
-                    .header("Authorization", session -> "Bearer " + session.getString("authToken"))
-                    .check(status().is(200))
-    );
+    public static ChainBuilder getUsers = RequestMetrics.timed(GET_USERS, name -> http(name)
+            .get("/api/users?page=2")
+            .header("x-api-key", API_KEY)
+            .header("Authorization", session -> "Bearer " + session.getString("authToken"))
+            .check(status().is(200)));
 }
\ No newline at end of file
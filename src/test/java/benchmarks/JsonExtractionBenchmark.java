@@ -0,0 +1,109 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import common.JsonFieldExtractor;
+import io.gatling.jsonpath.JsonPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares extracting one value from a response body with jsonPath and with JsonFieldExtractor.
+ *
+ * - jsonPath: what a jsonPath(...) check does per response: parse the whole body into a Jackson
+ *   tree, then evaluate the compiled path on it with Gatling's JsonPath
+ * - streamingBytes: JsonFieldExtractor on a byte array
+ * - streamingStream: JsonFieldExtractor on an InputStream, as used by the jsonField(...) check
+ *
+ * Bodies:
+ * - created: the POST /posts response (one small object)
+ * - page:    GET /posts as served by JSONPlaceholder (100 posts, about 27 KB)
+ * - large:   the same shape with 20,000 posts (about 5 MB)
+ *
+ * position selects where the value sits: "first" is the first member of the first element,
+ * "last" the last member of the last element, the worst case for a scan that stops early.
+ *
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.benchmarks=JsonExtractionBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonExtractionBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Param({"created", "page", "large"})
+    public String body;
+
+    @Param({"first", "last"})
+    public String position;
+
+    private byte[] bytes;
+    private JsonPath jsonPath;
+    private JsonFieldExtractor extractor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int posts = switch (body) {
+            case "created" -> 0;
+            case "page" -> 100;
+            case "large" -> 20_000;
+            default -> throw new IllegalArgumentException("Unknown body: " + body);
+        };
+        String path;
+        if (posts == 0) {
+            bytes = post(101).getBytes(StandardCharsets.UTF_8);
+            path = "first".equals(position) ? "$.title" : "$.id";
+        } else {
+            StringBuilder array = new StringBuilder("[\n");
+            for (int id = 1; id <= posts; id++) {
+                array.append(id > 1 ? ",\n" : "").append(post(id));
+            }
+            bytes = array.append("\n]").toString().getBytes(StandardCharsets.UTF_8);
+            path = "first".equals(position) ? "$[0].title" : "$[" + (posts - 1) + "].id";
+        }
+        jsonPath = JsonPath.compile(path).toOption().get();
+        extractor = JsonFieldExtractor.compile(path);
+    }
+
+    private static String post(int id) {
+        return "  {\n    \"title\": \"Post " + id + " \\\"escaped\\\"\",\n"
+                + "    \"body\": \"Load tests help us find bottlenecks early,\\nbefore users do\",\n"
+                + "    \"userId\": " + (id % 10 + 1) + ",\n"
+                + "    \"id\": " + id + "\n  }";
+    }
+
+    @Benchmark
+    public Object jsonPath() throws IOException {
+        JsonNode root = MAPPER.readTree(bytes);
+        return jsonPath.query(root).next();
+    }
+
+    @Benchmark
+    public String streamingBytes() {
+        return extractor.extract(bytes);
+    }
+
+    @Benchmark
+    public String streamingStream() {
+        return extractor.extract(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,173 @@
+package benchmarks;
+
+import api.JsonPlaceholderBodies;
+import common.FileBodyCache;
+import io.gatling.commons.stats.OK$;
+import io.gatling.core.config.GatlingConfiguration$;
+import io.gatling.javaapi.core.Body;
+import io.gatling.javaapi.core.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static io.gatling.javaapi.core.CoreDsl.ElFileBody;
+import static io.gatling.javaapi.core.CoreDsl.RawFileBody;
+
+/**
+ * Compares the per-request cost of the body strategies offered by JsonPlaceholderApi.
+ *
+ * Each benchmark builds the body a strategy sends for one request, with the API's own templates
+ * (JsonPlaceholderBodies) and a copy of its posts.json, evaluated against one prebuilt Gatling Session
+ * but without a running simulation or the HTTP stack, so the numbers isolate the injector-side cost:
+ * - createPostStringBody / updatePostStringBody: the original StringBody lambda (concatenate, then encode), as a baseline
+ * - createPostTemplate / updatePostTemplate: JsonPlaceholderBodies.CREATE_POST_BODY / UPDATE_POST_BODY, rendered from the session
+ * - createPostElFileBody: Gatling's ElFileBody expression on the file, then encoded as Gatling sends it
+ * - createPostRawFileBody: Gatling's RawFileBody expression on the file
+ * - createPostFileInputStreamBody: the original InputStreamBody strategy, a new FileInputStream per request, drained
+ * - createPostInputStreamBody: a FileBodyCache stream of the same file, drained
+ *   (without the hop to the FILE_IO virtual thread)
+ * - createPostFileRead: not a strategy, the cost of reading the whole file once, to put the file strategies in scale
+ *
+ * ElFileBody and RawFileBody cache the file after their first evaluation, as they do in a run, so they are
+ * measured at steady state.
+ *
+ * payloadBytes scales the "body" value of the templated payloads and, for the file strategies, the size of the
+ * fixture: JsonPlaceholderBodies.POSTS_FILE with its last "body" padded, written to a temporary file for the trial.
+ *
+ * Run with: mvn -Pjmh test-compile exec:exec
+ * (throughput, sample-time latency percentiles and the gc profiler's allocation rate per op)
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBodyBenchmark {
+
+    @Param({"364", "65536", "4194304"})
+    public int payloadBytes;
+
+    private Session session;
+    private Path fixture;
+    private Body.WithString elFileBody;
+    private Body.WithBytes rawFileBody;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Gatling loads this before it instantiates a simulation; the file bodies take their charset and caches from it
+        io.gatling.core.Predef$.MODULE$._configuration_$eq(GatlingConfiguration$.MODULE$.load());
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("id", 103);
+        values.put("title", "Performance FTW");
+        values.put("userId", 3);
+        // pad the body value so the rendered create payload is close to payloadBytes
+        values.put("body", "x".repeat(Math.max(16, payloadBytes - 64)));
+        // no event loop: evaluating a body schedules nothing
+        session = new Session(new io.gatling.core.session.Session("benchmark", 1L,
+                scala.collection.immutable.Map$.MODULE$.empty(), OK$.MODULE$, scala.collection.immutable.List$.MODULE$.empty(),
+                exited -> scala.runtime.BoxedUnit.UNIT, null)).setAll(values);
+
+        fixture = Files.createTempFile("posts-" + payloadBytes + "-", ".json");
+        Files.writeString(fixture, padded(Files.readString(JsonPlaceholderBodies.POSTS_FILE), payloadBytes));
+        elFileBody = ElFileBody(fixture.toString());
+        rawFileBody = RawFileBody(fixture.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(fixture);
+    }
+
+    /**
+     * @return the posts with the last "body" value padded so the whole payload is payloadBytes long (never shorter than posts)
+     */
+    private static String padded(String posts, int payloadBytes) {
+        String key = "\"body\": \"";
+        int at = posts.lastIndexOf(key);
+        if (at < 0) {
+            throw new IllegalStateException("No \"body\" field in " + JsonPlaceholderBodies.POSTS_FILE);
+        }
+        int value = at + key.length();
+        return posts.substring(0, value) + "x".repeat(Math.max(0, payloadBytes - posts.length())) + posts.substring(value);
+    }
+
+    @Benchmark
+    public byte[] createPostStringBody() {
+        return ("{\n" +
+                "  \"title\": \"" + session.getString("title") + "\",\n" +
+                "  \"body\": \"" + session.getString("body") + "\",\n" +
+                "  \"userId\": " + session.getInt("userId") + "\n" +
+                "}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] createPostTemplate() {
+        return JsonPlaceholderBodies.CREATE_POST_BODY.render(session);
+    }
+
+    @Benchmark
+    public byte[] createPostElFileBody() {
+        return elFileBody.apply(session).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] createPostRawFileBody() {
+        return rawFileBody.apply(session);
+    }
+
+    @Benchmark
+    public byte[] createPostFileRead() throws IOException {
+        return Files.readAllBytes(fixture);
+    }
+
+    @Benchmark
+    public byte[] createPostFileInputStreamBody() throws IOException {
+        try (InputStream in = new FileInputStream(fixture.toFile())) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public byte[] createPostInputStreamBody() throws IOException {
+        try (InputStream in = FileBodyCache.shared().openStream(fixture)) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public byte[] updatePostStringBody() {
+        return ("{\n" +
+                "  \"id\": " + session.get("id") + ",\n" +
+                "  \"title\": \"" + session.getString("title") + "\",\n" +
+                "  \"body\": \"" + session.getString("body") + "\",\n" +
+                "  \"userId\": " + session.get("userId") + "\n" +
+                "}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] updatePostTemplate() {
+        return JsonPlaceholderBodies.UPDATE_POST_BODY.render(session);
+    }
+}
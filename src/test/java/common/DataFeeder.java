@@ -2,6 +2,13 @@ package common;
 
 import io.gatling.javaapi.core.FeederBuilder;
 
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+
 import static io.gatling.javaapi.core.CoreDsl.jsonFile;
 
 public class DataFeeder {
@@ -21,4 +28,93 @@ public class DataFeeder {
     public static FeederBuilder.FileBased<Object> getJsonFeeder(String fileName){
         return jsonFile("data/" + fileName).circular();
     }
+
+    /**
+     * Memory-maps a JSON file from the 'data' directory and returns a streaming feeder over it.
+     *
+     * Unlike getJsonFeeder, nothing is loaded into the heap before the run:
+     * each record is parsed only when a virtual user pulls it, so memory stays constant
+     * and startup is instant no matter how large the file is.
+     * Use it for production-sized feeder files with millions of records.
+     *
+     * Example:
+     * - .feed(DataFeeder.getStreamingJsonFeeder("posts.json").random())
+     * - .feed(DataFeeder.getStreamingJsonFeeder("reqres_users.json").circular())
+     *
+     * @param fileName The name of the JSON file to map (relative to the 'data' folder)
+     * @return A MappedJsonFeeder offering circular(), random() and queue() strategies
+     */
+    public static MappedJsonFeeder getStreamingJsonFeeder(String fileName) {
+        return MappedJsonFeeder.open(resolveDataFile(fileName));
+    }
+
+    /**
+     * Returns this injector's share of a JSON file from the 'data' directory.
+     *
+     * When several injector JVMs run the same simulation, each one reads only its own disjoint
+     * slice of the file, so no two injectors ever use the same record (no duplicate IDs,
+     * no conflicting updates or deletes). The slice is found by seeking to a byte range,
+     * not by parsing and discarding the other injectors' records.
+     *
+     * The slice comes from system properties, set by the injector launcher:
+     * - injector.index : this injector's number, from 0 (default 0)
+     * - injector.count : the total number of injectors (default 1, i.e. the whole file)
+     *
+     * Example:
+     * - .feed(DataFeeder.getPartitionedJsonFeeder("posts.json").circular())
+     *
+     * @param fileName The name of the JSON file to map (relative to the 'data' folder)
+     * @return A MappedJsonFeeder over this injector's slice of the file
+     */
+    public static MappedJsonFeeder getPartitionedJsonFeeder(String fileName) {
+        return getPartitionedJsonFeeder(fileName, Injectors.index(), Injectors.count());
+    }
+
+    /**
+     * Returns slice nodeIndex of nodeCount of a JSON file from the 'data' directory.
+     *
+     * @param fileName  The name of the JSON file to map (relative to the 'data' folder)
+     * @param nodeIndex The slice to read, from 0 to nodeCount - 1
+     * @param nodeCount The number of slices (injectors)
+     * @return A MappedJsonFeeder over that slice of the file
+     * @throws IllegalStateException if this slice is empty, e.g. the file has fewer records than slices:
+     *                               falling back to the whole file would share records between injectors
+     */
+    public static MappedJsonFeeder getPartitionedJsonFeeder(String fileName, int nodeIndex, int nodeCount) {
+        MappedJsonFeeder file = getStreamingJsonFeeder(fileName);
+        MappedJsonFeeder slice = file.partition(nodeIndex, nodeCount);
+        if (slice.isEmpty()) {
+            int records = 0;
+            for (Iterator<Map<String, Object>> all = file.queue(); all.hasNext(); all.next()) {
+                records++;
+            }
+            throw new IllegalStateException(String.format(
+                    "data/%s has %d records for %d injectors: injector %d gets no slice of its own; run at most %d injectors or add records",
+                    fileName, records, nodeCount, nodeIndex, records));
+        }
+        return slice;
+    }
+
+    /**
+     * Resolves a file in the 'data' directory to a path on disk.
+     *
+     * Looks on the test classpath first (where Gatling resolves jsonFile), then falls back
+     * to the source resources folder.
+     */
+    static Path resolveDataFile(String fileName) {
+        String name = "data/" + (fileName.startsWith("/") ? fileName.substring(1) : fileName);
+        URL resource = DataFeeder.class.getClassLoader().getResource(name);
+        if (resource != null && "file".equals(resource.getProtocol())) {
+            try {
+                return Path.of(resource.toURI());
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+        Path source = Path.of("src/test/resources", name);
+        if (!Files.exists(source)) {
+            throw new IllegalArgumentException("Feeder file not found: " + name);
+        }
+        return source;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,266 @@
+package common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class FileBodyCache {
+
+    /**
+     * Files up to this size are read into the heap once; larger ones are memory-mapped
+     * so they are streamed from the page cache without ever being copied into the heap.
+     * A mapping is a MemorySegment, as in MappedJsonFeeder, so files over 2 GB map as well.
+     */
+    static final int MAP_THRESHOLD = 64 * 1024;
+
+    private static final FileBodyCache SHARED = new FileBodyCache(
+            Long.getLong("fileBody.cacheBytes", 256L * 1024 * 1024),
+            Long.getLong("fileBody.recheckMillis", 1000));
+
+    private final long maxBytes;
+    private final long recheckNanos;
+
+    /**
+     * Lock-free lookup for the hot path; the access-ordered map below only
+     * tracks recency for eviction and is touched under its own lock.
+     */
+    private final ConcurrentHashMap<Path, Entry> entries = new ConcurrentHashMap<>();
+    private final LinkedHashMap<Path, Entry> lru = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    /**
+     * @param maxBytes     total payload bytes to keep cached before least recently used files are evicted
+     * @param recheckMillis how often, at most, each file is checked for changes on disk
+     */
+    public FileBodyCache(long maxBytes, long recheckMillis) {
+        this.maxBytes = maxBytes;
+        this.recheckNanos = recheckMillis * 1_000_000;
+    }
+
+    /**
+     * The process-wide cache used by the API chains.
+     *
+     * Size it with -DfileBody.cacheBytes (default 256 MB) and tune change detection
+     * with -DfileBody.recheckMillis (default 1000).
+     */
+    public static FileBodyCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the file's contents, read-only.
+     *
+     * The file is loaded (or mapped) once; every call returns the same segment, which streams
+     * read with positions of their own, so it can be consumed concurrently.
+     * The file is reloaded when its size or modification time changes.
+     *
+     * @param file the payload file
+     * @return a read-only MemorySegment over the whole file
+     */
+    public MemorySegment contents(Path file) {
+        Entry entry = entries.get(file);
+        if (entry == null) {
+            entry = load(file, null);
+        } else {
+            long now = System.nanoTime();
+            if (now - entry.checkedAt > recheckNanos) {
+                entry = entry.isStale(file, now) ? load(file, entry) : touch(file, entry);
+            }
+        }
+        return entry.contents;
+    }
+
+    /**
+     * Returns an InputStream over a cached view of the file, for use with InputStreamBody.
+     *
+     * No file descriptor is held: closing the stream is optional and releases nothing.
+     *
+     * Example:
+     *   .body(InputStreamBody(session -> FileBodyCache.shared().openStream(POSTS_FILE)))
+     */
+    public InputStream openStream(Path file) {
+        return new SegmentInputStream(contents(file));
+    }
+
+    /**
+     * Same as openStream, but only if that takes no file I/O: the file is cached and was checked for changes
+     * less than -DfileBody.recheckMillis ago. Lets a caller on an event loop skip the hop to a thread
+     * that may block (see SessionFutures.offload) on the common path.
+     *
+     * @return the stream, or null if opening it would read the file or its attributes
+     */
+    public InputStream openStreamIfFresh(Path file) {
+        Entry entry = entries.get(file);
+        if (entry == null || System.nanoTime() - entry.checkedAt > recheckNanos) {
+            return null;
+        }
+        return new SegmentInputStream(entry.contents);
+    }
+
+    /**
+     * @return the number of files currently cached
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the total payload bytes currently cached
+     */
+    public synchronized long cachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Loads the file unless another thread already replaced the given entry.
+     */
+    private synchronized Entry load(Path file, Entry stale) {
+        Entry current = entries.get(file);
+        if (current != null && current != stale) {
+            return current;
+        }
+        long now = System.nanoTime();
+        Entry loaded = Entry.read(file, now);
+        Entry previous = entries.put(file, loaded);
+        lru.put(file, loaded);
+        if (previous != null) {
+            cachedBytes -= previous.contents.byteSize();
+        }
+        cachedBytes += loaded.contents.byteSize();
+        evict(file);
+        return loaded;
+    }
+
+    /**
+     * Marks the file as recently used. Recency is only refreshed on the periodic
+     * change check, which keeps the per-request path lock-free.
+     */
+    private synchronized Entry touch(Path file, Entry entry) {
+        lru.get(file);
+        return entry;
+    }
+
+    /**
+     * Drops least recently used files until the cache fits in maxBytes, always keeping the one just loaded.
+     * Views already handed out stay valid; the mapping is released once they are garbage collected.
+     */
+    private void evict(Path keep) {
+        Iterator<Map.Entry<Path, Entry>> oldest = lru.entrySet().iterator();
+        while (cachedBytes > maxBytes && oldest.hasNext()) {
+            Map.Entry<Path, Entry> candidate = oldest.next();
+            if (candidate.getKey().equals(keep)) {
+                continue;
+            }
+            oldest.remove();
+            entries.remove(candidate.getKey(), candidate.getValue());
+            cachedBytes -= candidate.getValue().contents.byteSize();
+        }
+    }
+
+    private static final class Entry {
+
+        private final MemorySegment contents;
+        private final long size;
+        private final long modifiedMillis;
+        private volatile long checkedAt;
+
+        private Entry(MemorySegment contents, long size, long modifiedMillis, long checkedAt) {
+            this.contents = contents;
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+            this.checkedAt = checkedAt;
+        }
+
+        private static Entry read(Path file, long now) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                long size = channel.size();
+                MemorySegment contents;
+                if (size <= MAP_THRESHOLD) {
+                    ByteBuffer heap = ByteBuffer.allocate((int) size);
+                    while (heap.hasRemaining() && channel.read(heap) >= 0) {
+                        // keep reading until the whole file is in
+                    }
+                    contents = MemorySegment.ofBuffer(heap.flip()).asReadOnly();
+                } else {
+                    // the mapping outlives the channel, so no descriptor stays open; it is unmapped once
+                    // the entry and every stream over it are garbage collected
+                    contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, size, Arena.ofAuto()).asReadOnly();
+                }
+                return new Entry(contents, size, attributes.lastModifiedTime().toMillis(), now);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private boolean isStale(Path file, long now) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                checkedAt = now;
+                return attributes.size() != size || attributes.lastModifiedTime().toMillis() != modifiedMillis;
+            } catch (IOException e) {
+                // the file went away: keep serving the cached copy
+                checkedAt = now;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * InputStream over a segment with a position of its own; reads copy straight from the (possibly mapped) segment.
+     */
+    private static final class SegmentInputStream extends InputStream {
+
+        private final MemorySegment segment;
+        private long position;
+
+        private SegmentInputStream(MemorySegment segment) {
+            this.segment = segment;
+        }
+
+        @Override
+        public int read() {
+            return position < segment.byteSize() ? segment.get(ValueLayout.JAVA_BYTE, position++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            long remaining = segment.byteSize() - position;
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = (int) Math.min(length, remaining);
+            MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, position, bytes, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            long count = Math.max(0, Math.min(n, segment.byteSize() - position));
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, segment.byteSize() - position);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package common;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class Gauges {
+
+    /**
+     * Families by metric name, in registration order.
+     */
+    private static final Map<String, Family> FAMILIES = new LinkedHashMap<>();
+
+    private Gauges() {
+    }
+
+    /**
+     * Receives the samples of one family when it is read.
+     */
+    public interface Writer {
+
+        /**
+         * @param value  the sample's value
+         * @param labels label names and values, alternating, e.g. "pool", "posts"
+         */
+        void sample(double value, String... labels);
+    }
+
+    /**
+     * One metric family: a name without prefix (e.g. "id_pool_size"), a one-line description,
+     * whether it is a counter (only ever goes up during a run) or a gauge, and the code that writes its samples.
+     */
+    public record Family(String metric, String help, boolean counter, Consumer<Writer> samples) {
+    }
+
+    /**
+     * Registers a family of live values, read by metrics.LiveMetrics on every interval.
+     *
+     * Subsystems register their own families once, e.g. from a static initializer, and write one sample
+     * per instance when read, so the live endpoint needs no knowledge of them. A family that writes
+     * no sample is left out of the exposition. Registering a metric name again has no effect.
+     *
+     * Example:
+     *   Gauges.register("id_pool_size", "Ids currently held by each shared id pool.", false, out -> {
+     *       for (IdPool pool : IdPool.all()) {
+     *           out.sample(pool.size(), "pool", pool.name());
+     *       }
+     *   });
+     */
+    public static synchronized void register(String metric, String help, boolean counter, Consumer<Writer> samples) {
+        FAMILIES.putIfAbsent(metric, new Family(metric, help, counter, samples));
+    }
+
+    /**
+     * @return every family registered so far, in registration order
+     */
+    public static synchronized List<Family> all() {
+        return new ArrayList<>(FAMILIES.values());
+    }
+}
@@ -0,0 +1,318 @@
+package common;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class GeneratedBody {
+
+    private static final Map<String, GeneratedBody> BODIES = new ConcurrentHashMap<>();
+
+    static {
+        Gauges.register("upload_bytes_total", "Bytes of generated bodies sent to the end, by body.", true, out -> {
+            for (GeneratedBody body : all()) {
+                out.sample(body.counters().get("bytes"), "body", body.name);
+            }
+        });
+        Gauges.register("upload_throughput_mb_per_second",
+                "Upload throughput of generated bodies since the start of the run: mean, per-upload p50 and p5.", false, out -> {
+                    for (GeneratedBody body : all()) {
+                        for (Map.Entry<String, Double> stat : body.throughput().entrySet()) {
+                            out.sample(stat.getValue(), "body", body.name, "stat", stat.getKey());
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Generation buffers, reused across uploads: live uploads hold one each, idle ones wait here.
+     */
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final BlockingQueue<byte[]> BUFFERS = new ArrayBlockingQueue<>(256);
+
+    /**
+     * Source of the "bytes" content: generated once, then copied from a random offset on every refill.
+     */
+    private static final byte[] RANDOM_BLOCK = new byte[1 << 20];
+
+    static {
+        new SplittableRandom(42).nextBytes(RANDOM_BLOCK);
+    }
+
+    private static final byte[] FILLER = ("Generated post content for upload tests, streamed on the fly "
+            + "so that no payload is ever stored in memory or on disk. ").getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Upper bound of one generated post with its separator: the fixed text, the filler and three numbers of up to 19 digits.
+     */
+    private static final int POST_MAX = 128 + FILLER.length;
+
+    /**
+     * Upload throughput is recorded in KB/s, up to 100 GB/s.
+     */
+    private static final long HIGHEST_KB_PER_SECOND = 100_000_000L;
+
+    private final String name;
+    private final boolean json;
+    private final long size;
+
+    private final LongAdder uploads = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final Histogram kilobytesPerSecond = new ConcurrentHistogram(HIGHEST_KB_PER_SECOND, 2);
+
+    private GeneratedBody(String name, boolean json, long size) {
+        this.name = name;
+        this.json = json;
+        this.size = size;
+    }
+
+    /**
+     * A JSON array of posts ({"userId", "id", "title", "body"}) of about the given size, generated while it is sent.
+     * The array always ends properly, so the size is approximate: it stops at the last post that fits.
+     *
+     * @param name reporting name of the body; the same name returns the same body
+     * @param size target size in bytes, e.g. 10L << 20 for 10 MiB, or several GiB
+     */
+    public static GeneratedBody jsonPosts(String name, long size) {
+        return BODIES.computeIfAbsent(name, key -> new GeneratedBody(key, true, size));
+    }
+
+    /**
+     * Exactly size pseudo-random bytes, generated while they are sent.
+     *
+     * @param name reporting name of the body; the same name returns the same body
+     */
+    public static GeneratedBody bytes(String name, long size) {
+        return BODIES.computeIfAbsent(name, key -> new GeneratedBody(key, false, size));
+    }
+
+    /**
+     * @return every body created so far, for reporting
+     */
+    public static Collection<GeneratedBody> all() {
+        return BODIES.values();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Opens a new stream of the body, for InputStreamBody(session -> body.open()).
+     *
+     * Gatling sends an InputStreamBody with chunked transfer encoding, reading the next chunk only
+     * when the connection can take it: generation is paced by the network, and a stream holds one
+     * 16 KiB buffer whatever the payload size. The time from the first read to the end of the stream
+     * gives the upload throughput, reported by stats() apart from the request's latency.
+     */
+    public InputStream open() {
+        return new Stream();
+    }
+
+    /**
+     * @return counters since the start of the run: uploads (streams sent to the end), bytes
+     */
+    public Map<String, Long> counters() {
+        return Map.of("uploads", uploads.sum(), "bytes", bytes.sum());
+    }
+
+    /**
+     * @return throughput in MB/s: mean over all uploads (total bytes / total upload time), p50 and p5 per upload
+     */
+    public Map<String, Double> throughput() {
+        Histogram perUpload = kilobytesPerSecond.copy();
+        long totalNanos = nanos.sum();
+        return Map.of(
+                "mean", totalNanos == 0 ? 0 : bytes.sum() / 1e6 / (totalNanos / 1e9),
+                "p50", perUpload.getValueAtPercentile(50) / 1000.0,
+                "p5", perUpload.getValueAtPercentile(5) / 1000.0);
+    }
+
+    /**
+     * Zeroes the counters and throughput, so the next simulation run in the same JVM starts from nothing
+     * (see launcher.SimulationBatch). Only call it while no upload is in progress.
+     */
+    public void reset() {
+        uploads.reset();
+        bytes.reset();
+        nanos.reset();
+        kilobytesPerSecond.reset();
+    }
+
+    public String stats() {
+        Map<String, Double> throughput = throughput();
+        return String.format(Locale.ROOT, "%s: %d uploads, %.1f MB, %.1f MB/s (per upload p50 %.1f, p5 %.1f MB/s)",
+                name, uploads.sum(), bytes.sum() / 1e6, throughput.get("mean"), throughput.get("p50"), throughput.get("p5"));
+    }
+
+    private void completed(long sent, long elapsedNanos) {
+        uploads.increment();
+        bytes.add(sent);
+        nanos.add(elapsedNanos);
+        if (elapsedNanos > 0) {
+            kilobytesPerSecond.recordValue(Math.min(HIGHEST_KB_PER_SECOND, (long) (sent / 1e3 / (elapsedNanos / 1e9))));
+        }
+    }
+
+    private final class Stream extends InputStream {
+
+        private byte[] buffer;
+        private int position;
+        private int limit;
+
+        private long remaining = size;
+        private long nextId = 1;
+        private boolean opened;
+        private boolean ended;
+        private long startedAt;
+        private long sent;
+
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (position == limit && !refill()) {
+                finish();
+                return -1;
+            }
+            int count = Math.min(length, limit - position);
+            System.arraycopy(buffer, position, bytes, offset, count);
+            position += count;
+            sent += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            if (buffer != null) {
+                BUFFERS.offer(buffer);
+                buffer = null;
+            }
+        }
+
+        private boolean refill() {
+            if (ended) {
+                return false;
+            }
+            if (buffer == null) {
+                buffer = BUFFERS.poll();
+                if (buffer == null) {
+                    buffer = new byte[BUFFER_SIZE];
+                }
+                startedAt = System.nanoTime();
+            }
+            position = 0;
+            limit = json ? fillJson() : fillBytes();
+            return limit > 0;
+        }
+
+        private int fillBytes() {
+            int count = (int) Math.min(BUFFER_SIZE, remaining);
+            int offset = (int) ((nextId++ * 7919 * BUFFER_SIZE) & (RANDOM_BLOCK.length - 1));
+            int first = Math.min(count, RANDOM_BLOCK.length - offset);
+            System.arraycopy(RANDOM_BLOCK, offset, buffer, 0, first);
+            System.arraycopy(RANDOM_BLOCK, 0, buffer, first, count - first);
+            remaining -= count;
+            if (remaining == 0) {
+                ended = true;
+            }
+            return count;
+        }
+
+        /**
+         * Writes as many whole posts as fit in the buffer, and the closing bracket once the next post
+         * would exceed the size. The first post is always written, so the array is never empty.
+         */
+        private int fillJson() {
+            int at = 0;
+            if (!opened) {
+                buffer[at++] = '[';
+                opened = true;
+                remaining--;
+            }
+            while (at + POST_MAX + 1 <= BUFFER_SIZE) {
+                int start = at;
+                if (nextId > 1) {
+                    buffer[at++] = ',';
+                }
+                at = post(at, nextId);
+                int length = at - start;
+                if (nextId > 1 && length + 1 > remaining) {
+                    at = start;
+                    buffer[at++] = ']';
+                    remaining = 0;
+                    ended = true;
+                    return at;
+                }
+                remaining -= length;
+                nextId++;
+            }
+            return at;
+        }
+
+        /**
+         * Writes one post at the given offset, and returns the offset after it.
+         */
+        private int post(int at, long id) {
+            at = ascii(at, "{\"userId\":");
+            at = number(at, 1 + id % 10);
+            at = ascii(at, ",\"id\":");
+            at = number(at, id);
+            at = ascii(at, ",\"title\":\"generated post ");
+            at = number(at, id);
+            at = ascii(at, "\",\"body\":\"");
+            System.arraycopy(FILLER, 0, buffer, at, FILLER.length);
+            at += FILLER.length;
+            return ascii(at, "\"}");
+        }
+
+        private int ascii(int at, String text) {
+            for (int i = 0; i < text.length(); i++) {
+                buffer[at++] = (byte) text.charAt(i);
+            }
+            return at;
+        }
+
+        private int number(int at, long value) {
+            int digits = 1;
+            for (long rest = value / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            for (int i = at + digits - 1; i >= at; i--) {
+                buffer[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            return at + digits;
+        }
+
+        private void finish() {
+            if (startedAt != 0) {
+                completed(sent, System.nanoTime() - startedAt);
+                startedAt = 0;
+            }
+            close();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package common;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class IdPool {
+
+    private static final Map<String, IdPool> POOLS = new ConcurrentHashMap<>();
+
+    static {
+        Gauges.register("id_pool_size", "Ids currently held by each shared id pool.", false, out -> {
+            for (IdPool pool : all()) {
+                out.sample(pool.size(), "pool", pool.name);
+            }
+        });
+        Gauges.register("id_pool_operations_total", "Id pool operations: published, released, borrowed, removed, evicted and misses.", true, out -> {
+            for (IdPool pool : all()) {
+                for (Map.Entry<String, Long> counter : pool.counters().entrySet()) {
+                    if (!counter.getKey().equals("size")) {
+                        out.sample(counter.getValue(), "pool", pool.name, "operation", counter.getKey());
+                    }
+                }
+            }
+        });
+    }
+
+    private final String name;
+    private final AtomicReferenceArray<String> slots;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder removed = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private IdPool(String name, int capacity) {
+        this.name = name;
+        int slotCount = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(slotCount);
+        this.mask = slotCount - 1;
+    }
+
+    /**
+     * Returns the pool with this name, creating it on first use.
+     *
+     * A pool holds the ids of records created during the run, shared by all virtual users,
+     * so updates and deletes hit rows that really exist on the target instead of feeder ids
+     * that were deleted long ago or are shared by every user.
+     *
+     * The capacity is -Dpool.NAME.capacity (default 10000), rounded up to a power of two.
+     * Ids go into free slots; only when the pool is full does publishing overwrite a slot, the one at the
+     * cursor, which is the oldest unless ids were taken meanwhile, and count an eviction.
+     */
+    public static IdPool named(String name) {
+        return POOLS.computeIfAbsent(name, key -> new IdPool(key, Integer.getInteger("pool." + key + ".capacity", 10_000)));
+    }
+
+    /**
+     * @return every pool created so far, for reporting
+     */
+    public static Collection<IdPool> all() {
+        return POOLS.values();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * @return the ids in the pool, counting those being published
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Adds an id, e.g. of a record just created, in a free slot; if the pool is full, in place of the id at the cursor.
+     *
+     * Lock-free: free slots are probed from the cursor and claimed with a compare-and-set.
+     */
+    public void publish(String id) {
+        published.increment();
+        if (insert(id)) {
+            return;
+        }
+        size.incrementAndGet();
+        String previous = slots.getAndSet((int) (cursor.getAndIncrement() & mask), id);
+        if (previous != null) {
+            size.decrementAndGet();
+            evicted.increment();
+        }
+    }
+
+    /**
+     * Gives back an id taken with borrow(). It goes into a free slot, never in place of another id:
+     * if the pool filled up meanwhile, the borrowed id is the one dropped, and counted as evicted.
+     */
+    public void release(String id) {
+        released.increment();
+        if (!insert(id)) {
+            evicted.increment();
+        }
+    }
+
+    /**
+     * Puts an id in a free slot. The size is incremented first, so that it counts every id in a slot
+     * and never goes below zero when a taker is quick.
+     *
+     * @return false if the pool is full
+     */
+    private boolean insert(String id) {
+        int length = slots.length();
+        if (size.incrementAndGet() <= length) {
+            long start = cursor.getAndIncrement();
+            for (int probe = 0; probe < length; probe++) {
+                int index = (int) ((start + probe) & mask);
+                if (slots.getPlain(index) == null && slots.compareAndSet(index, null, id)) {
+                    return true;
+                }
+            }
+        }
+        size.decrementAndGet();
+        return false;
+    }
+
+    /**
+     * Takes an id out of the pool for exclusive use; give it back with release() when done.
+     *
+     * Lock-free: slots are probed from a random position and claimed with a swap, so concurrent
+     * borrowers never get the same id.
+     *
+     * @return an id, or null if the pool is empty
+     */
+    public String borrow() {
+        String id = take();
+        if (id != null) {
+            borrowed.increment();
+        }
+        return id;
+    }
+
+    /**
+     * Takes an id out of the pool for good, e.g. for a delete.
+     *
+     * @return an id, or null if the pool is empty
+     */
+    public String remove() {
+        String id = take();
+        if (id != null) {
+            removed.increment();
+        }
+        return id;
+    }
+
+    /**
+     * Makes at most one pass over the slots, which runs on the virtual user's event loop, so it never spins:
+     * the pass stops as soon as the size drops to zero, and finding no id, e.g. because the only one is still
+     * being published or was just taken by another user, counts a miss.
+     */
+    private String take() {
+        int length = slots.length();
+        if (size.get() > 0) {
+            int start = ThreadLocalRandom.current().nextInt(length);
+            for (int probe = 0; probe < length; probe++) {
+                int index = (start + probe) & mask;
+                if (slots.getPlain(index) != null) {
+                    String id = slots.getAndSet(index, null);
+                    if (id != null) {
+                        size.decrementAndGet();
+                        return id;
+                    }
+                }
+                if (size.get() == 0) {
+                    break;
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * @return counters since the start of the run: size, published, released, borrowed, removed, evicted, misses
+     */
+    public Map<String, Long> counters() {
+        return Map.of(
+                "size", (long) size.get(),
+                "published", published.sum(),
+                "released", released.sum(),
+                "borrowed", borrowed.sum(),
+                "removed", removed.sum(),
+                "evicted", evicted.sum(),
+                "misses", misses.sum());
+    }
+
+    /**
+     * Empties the pool and zeroes its counters, so the next simulation run in the same JVM starts from nothing:
+     * its target does not know the previous run's ids (see launcher.SimulationBatch).
+     * Only call it while no virtual user is running.
+     */
+    public void reset() {
+        for (int index = 0; index < slots.length(); index++) {
+            slots.set(index, null);
+        }
+        size.set(0);
+        cursor.set(0);
+        published.reset();
+        released.reset();
+        borrowed.reset();
+        removed.reset();
+        evicted.reset();
+        misses.reset();
+    }
+
+    public String stats() {
+        return name + ": size=" + size.get() + "/" + slots.length() + " published=" + published.sum()
+                + " released=" + released.sum() + " borrowed=" + borrowed.sum() + " removed=" + removed.sum()
+                + " evicted=" + evicted.sum() + " misses=" + misses.sum();
+    }
+}
@@ -0,0 +1,94 @@
+package common;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+public class Injectors {
+
+    /**
+     * This injector's number (from 0) and the total number of injectors taking part in the run.
+     * Set by launcher.InjectorLauncher; a plain single-JVM run is injector 0 of 1.
+     */
+    private static final int INDEX = Integer.getInteger("injector.index", 0);
+    private static final int COUNT = Integer.getInteger("injector.count", 1);
+
+    /**
+     * host:port of the launcher's start barrier, or null when not launched by it.
+     */
+    private static final String BARRIER = System.getProperty("injector.barrier");
+
+    public static int index() {
+        return INDEX;
+    }
+
+    public static int count() {
+        return COUNT;
+    }
+
+    /**
+     * Returns this injector's share of a user count, so that the shares of all injectors add up exactly.
+     *
+     * Example: users(5) with 3 injectors gives 2, 2 and 1.
+     * Wrap the counts of an injection profile with it:
+     *   rampUsers(Injectors.users(3)).during(Duration.ofSeconds(10))
+     *
+     * @param total the user count for the whole run
+     * @return the users this injector should inject
+     */
+    public static int users(int total) {
+        return total / COUNT + (INDEX < total % COUNT ? 1 : 0);
+    }
+
+    /**
+     * Returns this injector's share of an arrival rate (users per second).
+     *
+     * Example:
+     *   constantUsersPerSec(Injectors.rate(500)).during(Duration.ofMinutes(5))
+     */
+    public static double rate(double total) {
+        return total / COUNT;
+    }
+
+    /**
+     * Blocks until every injector of the run is ready, so they all start injecting together.
+     *
+     * Call it from Simulation.before(). Does nothing when the simulation was not started by the launcher.
+     */
+    public static void awaitStart() {
+        if (BARRIER == null) {
+            return;
+        }
+        String[] hostPort = BARRIER.split(":");
+        long deadline = System.nanoTime() + 60_000_000_000L;
+        while (true) {
+            try (Socket socket = new Socket(hostPort[0], Integer.parseInt(hostPort[1]));
+                 PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                out.println("READY " + INDEX);
+                String reply = in.readLine();
+                if (!"GO".equals(reply)) {
+                    throw new IllegalStateException("Start barrier aborted the run: " + reply);
+                }
+                return;
+            } catch (ConnectException e) {
+                if (System.nanoTime() > deadline) {
+                    throw new UncheckedIOException("Start barrier at " + BARRIER + " is unreachable", e);
+                }
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(interrupted);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
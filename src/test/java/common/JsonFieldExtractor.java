@@ -0,0 +1,424 @@
+package common;
+
+import io.gatling.javaapi.core.CheckBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.gatling.javaapi.core.CoreDsl.bodyStream;
+
+public class JsonFieldExtractor {
+
+    private final Object[] segments;
+
+    private JsonFieldExtractor(Object[] segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Compiles a simple path: "$.token", "$.data[0].email", "$[3].id".
+     *
+     * Only member names and array indexes are supported; there are no wildcards, filters or
+     * recursive descent. Use jsonPath for anything more elaborate.
+     *
+     * @param path the path to extract
+     * @return a reusable, thread-safe extractor
+     */
+    public static JsonFieldExtractor compile(String path) {
+        if (!path.startsWith("$")) {
+            throw new IllegalArgumentException("Path must start with '$': " + path);
+        }
+        List<Object> segments = new ArrayList<>();
+        int i = 1;
+        while (i < path.length()) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                int end = i + 1;
+                while (end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '[') {
+                    end++;
+                }
+                if (end == i + 1) {
+                    throw new IllegalArgumentException("Empty member name at index " + i + " in path: " + path);
+                }
+                segments.add(path.substring(i + 1, end).getBytes(StandardCharsets.UTF_8));
+                i = end;
+            } else if (c == '[') {
+                int end = path.indexOf(']', i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed '[' at index " + i + " in path: " + path);
+                }
+                try {
+                    segments.add(Integer.parseInt(path.substring(i + 1, end).trim()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Only numeric array indexes are supported: " + path);
+                }
+                i = end + 1;
+            } else {
+                throw new IllegalArgumentException("Unexpected '" + c + "' at index " + i + " in path: " + path);
+            }
+        }
+        return new JsonFieldExtractor(segments.toArray());
+    }
+
+    /**
+     * A drop-in for jsonPath(path) checks on shallow paths, e.g.
+     *   .check(jsonField("$.id").saveAs("newPostId"))
+     *
+     * The response body is scanned as a byte stream and the scan stops as soon as the value
+     * is found: members before it are skipped without being decoded, nothing after it is read,
+     * and no JSON tree is built. Like jsonPath, the value is saved as a String
+     * (strings unescaped, numbers and literals as written, objects and arrays as raw JSON).
+     * The check fails when the path is not found.
+     */
+    public static CheckBuilder.Final jsonField(String path) {
+        JsonFieldExtractor extractor = compile(path);
+        return bodyStream().transform(extractor::extract).notNull();
+    }
+
+    public String extract(byte[] json) {
+        return extract(new Source(json));
+    }
+
+    /**
+     * @return the value at this path, or null if the document has no such value
+     */
+    public String extract(InputStream json) {
+        return extract(new Source(json));
+    }
+
+    private String extract(Source in) {
+        for (int s = 0; s < segments.length; s++) {
+            Object segment = segments[s];
+            if (segment instanceof byte[] name) {
+                if (!in.expect('{')) {
+                    return null;
+                }
+                if (in.peek() == '}') {
+                    return null;
+                }
+                while (true) {
+                    boolean match = in.matchString(name);
+                    if (!in.expect(':')) {
+                        return null;
+                    }
+                    if (match) {
+                        break;
+                    }
+                    in.skipValue();
+                    int next = in.next();
+                    if (next != ',') {
+                        return null;
+                    }
+                }
+            } else {
+                int index = (Integer) segment;
+                if (!in.expect('[')) {
+                    return null;
+                }
+                if (in.peek() == ']') {
+                    return null;
+                }
+                for (int i = 0; i < index; i++) {
+                    in.skipValue();
+                    if (in.next() != ',') {
+                        return null;
+                    }
+                }
+            }
+        }
+        return in.readValue();
+    }
+
+    /**
+     * Byte source over an array or a stream, with one byte of lookahead.
+     * Malformed input makes the scan report "not found" rather than throw.
+     */
+    private static final class Source {
+
+        private final InputStream stream;
+        private byte[] buffer;
+        private int position;
+        private int limit;
+
+        private Source(byte[] bytes) {
+            this.stream = null;
+            this.buffer = bytes;
+            this.limit = bytes.length;
+        }
+
+        private Source(InputStream stream) {
+            this.stream = stream;
+            this.buffer = new byte[8192];
+        }
+
+        private int read() {
+            if (position == limit) {
+                if (stream == null) {
+                    return -1;
+                }
+                try {
+                    limit = stream.read(buffer, 0, buffer.length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        private void unread() {
+            position--;
+        }
+
+        /**
+         * @return the next non-whitespace byte, consumed
+         */
+        private int next() {
+            int b;
+            do {
+                b = read();
+            } while (b == ' ' || b == '\n' || b == '\r' || b == '\t');
+            return b;
+        }
+
+        /**
+         * @return the next non-whitespace byte, not consumed
+         */
+        private int peek() {
+            int b = next();
+            if (b >= 0) {
+                unread();
+            }
+            return b;
+        }
+
+        private boolean expect(char c) {
+            return next() == c;
+        }
+
+        /**
+         * Reads a member name and compares it to the target without decoding it,
+         * unless it contains escapes.
+         */
+        private boolean matchString(byte[] target) {
+            if (next() != '"') {
+                return false;
+            }
+            int i = 0;
+            boolean match = true;
+            while (true) {
+                int b = read();
+                if (b < 0) {
+                    return false;
+                }
+                if (b == '"') {
+                    return match && i == target.length;
+                }
+                if (b == '\\') {
+                    unread();
+                    String rest = readStringTail();
+                    if (rest == null) {
+                        return false;
+                    }
+                    byte[] decoded = rest.getBytes(StandardCharsets.UTF_8);
+                    if (!match || i + decoded.length != target.length) {
+                        return false;
+                    }
+                    for (byte d : decoded) {
+                        if (target[i++] != d) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+                match = match && i < target.length && target[i] == (byte) b;
+                i++;
+            }
+        }
+
+        private void skipValue() {
+            int b = next();
+            if (b == '"') {
+                skipStringTail();
+            } else if (b == '{' || b == '[') {
+                int depth = 1;
+                while (depth > 0) {
+                    int c = read();
+                    if (c < 0) {
+                        return;
+                    }
+                    if (c == '"') {
+                        skipStringTail();
+                    } else if (c == '{' || c == '[') {
+                        depth++;
+                    } else if (c == '}' || c == ']') {
+                        depth--;
+                    }
+                }
+            } else {
+                skipScalarTail();
+            }
+        }
+
+        private void skipStringTail() {
+            int b;
+            while ((b = read()) >= 0 && b != '"') {
+                if (b == '\\') {
+                    read();
+                }
+            }
+        }
+
+        private void skipScalarTail() {
+            int b;
+            while ((b = read()) >= 0) {
+                if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                    unread();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Reads the value at the current position as a String.
+         */
+        private String readValue() {
+            int b = next();
+            if (b < 0) {
+                return null;
+            }
+            if (b == '"') {
+                return readStringTail();
+            }
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(16);
+            raw.write(b);
+            if (b == '{' || b == '[') {
+                int depth = 1;
+                boolean inString = false;
+                while (depth > 0) {
+                    int c = read();
+                    if (c < 0) {
+                        return null;
+                    }
+                    raw.write(c);
+                    if (inString) {
+                        if (c == '\\') {
+                            raw.write(read());
+                        } else if (c == '"') {
+                            inString = false;
+                        }
+                    } else if (c == '"') {
+                        inString = true;
+                    } else if (c == '{' || c == '[') {
+                        depth++;
+                    } else if (c == '}' || c == ']') {
+                        depth--;
+                    }
+                }
+            } else {
+                int c;
+                while ((c = read()) >= 0 && c != ',' && c != '}' && c != ']' && c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    raw.write(c);
+                }
+                if ("null".contentEquals(raw.toString(StandardCharsets.US_ASCII))) {
+                    return null;
+                }
+            }
+            return raw.toString(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Reads the rest of a string literal (the opening quote already consumed) and unescapes it.
+         *
+         * @return the string, or null if it is malformed: unterminated, or with a \\u escape that is not four hex digits.
+         * A surrogate that is not part of a pair is kept as a single (unencodable, hence '?') character.
+         */
+        private String readStringTail() {
+            ByteArrayOutputStream value = new ByteArrayOutputStream(32);
+            // a high surrogate waiting for the low surrogate that may follow it
+            char high = 0;
+            int b;
+            while ((b = read()) != '"') {
+                if (b < 0) {
+                    return null;
+                }
+                if (b != '\\') {
+                    high = flush(high, value);
+                    value.write(b);
+                    continue;
+                }
+                int escaped = read();
+                if (escaped != 'u') {
+                    high = flush(high, value);
+                }
+                switch (escaped) {
+                    case -1 -> {
+                        return null;
+                    }
+                    case 'n' -> value.write('\n');
+                    case 't' -> value.write('\t');
+                    case 'r' -> value.write('\r');
+                    case 'b' -> value.write('\b');
+                    case 'f' -> value.write('\f');
+                    case 'u' -> {
+                        int decoded = readHex4();
+                        if (decoded < 0) {
+                            return null;
+                        }
+                        char c = (char) decoded;
+                        if (high != 0 && Character.isLowSurrogate(c)) {
+                            value.writeBytes(new String(new char[]{high, c}).getBytes(StandardCharsets.UTF_8));
+                            high = 0;
+                        } else {
+                            high = flush(high, value);
+                            if (Character.isHighSurrogate(c)) {
+                                high = c;
+                            } else {
+                                value.writeBytes(String.valueOf(c).getBytes(StandardCharsets.UTF_8));
+                            }
+                        }
+                    }
+                    default -> value.write(escaped);
+                }
+            }
+            flush(high, value);
+            return value.toString(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Writes a pending high surrogate on its own, as no low surrogate follows it.
+         *
+         * @return 0, for nothing pending
+         */
+        private static char flush(char high, ByteArrayOutputStream value) {
+            if (high != 0) {
+                value.writeBytes(String.valueOf(high).getBytes(StandardCharsets.UTF_8));
+            }
+            return 0;
+        }
+
+        /**
+         * @return the code unit of the four hex digits of a \\u escape, or -1 if they are not four hex digits
+         */
+        private int readHex4() {
+            int decoded = 0;
+            for (int h = 0; h < 4; h++) {
+                int digit = Character.digit(read(), 16);
+                if (digit < 0) {
+                    return -1;
+                }
+                decoded = decoded << 4 | digit;
+            }
+            return decoded;
+        }
+    }
+}
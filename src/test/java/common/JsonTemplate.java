@@ -0,0 +1,261 @@
+package common;
+
+import io.gatling.javaapi.core.Body;
+import io.gatling.javaapi.core.Session;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static io.gatling.javaapi.core.CoreDsl.ByteArrayBody;
+
+public class JsonTemplate {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * One reusable render buffer per thread.
+     * Gatling runs virtual users on a fixed set of event-loop threads, so these
+     * are allocated once and grow to the largest body each thread has rendered.
+     */
+    private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+    /**
+     * Literal template bytes; literals[i] is written before slot i, and the last one after the last slot.
+     */
+    private final byte[][] literals;
+    private final String[] slotNames;
+
+    /**
+     * True for slots placed inside a JSON string ("#{title}"), whose values are escaped.
+     * Other slots (#{userId}) are written as raw JSON values: numbers, booleans or null.
+     */
+    private final boolean[] quoted;
+
+    private JsonTemplate(byte[][] literals, String[] slotNames, boolean[] quoted) {
+        this.literals = literals;
+        this.slotNames = slotNames;
+        this.quoted = quoted;
+    }
+
+    /**
+     * Compiles a JSON body with Gatling EL-style placeholders into literal byte segments and slots.
+     *
+     * A placeholder inside quotes is a string slot: its value is JSON-escaped, so titles
+     * containing quotes, backslashes or newlines still produce valid JSON.
+     * A placeholder outside quotes is written as-is and should hold a number or boolean.
+     *
+     * Example:
+     *   JsonTemplate.compile("{ \"title\": \"#{title}\", \"userId\": #{userId} }")
+     *
+     * Only simple attribute names are supported (no EL functions or nested paths).
+     *
+     * @param template the JSON body with #{name} placeholders
+     * @return a compiled template that can be rendered many times
+     */
+    public static JsonTemplate compile(String template) {
+        List<byte[]> literals = new ArrayList<>();
+        List<String> slotNames = new ArrayList<>();
+        List<Boolean> quoted = new ArrayList<>();
+
+        boolean inString = false;
+        int literalStart = 0;
+        int i = 0;
+        while (i < template.length()) {
+            char c = template.charAt(i);
+            if (c == '#' && i + 1 < template.length() && template.charAt(i + 1) == '{') {
+                int close = template.indexOf('}', i + 2);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed placeholder at index " + i + " in template: " + template);
+                }
+                String name = template.substring(i + 2, close).trim();
+                if (name.isEmpty()) {
+                    throw new IllegalArgumentException("Empty placeholder at index " + i + " in template: " + template);
+                }
+                literals.add(template.substring(literalStart, i).getBytes(StandardCharsets.UTF_8));
+                slotNames.add(name);
+                quoted.add(inString);
+                i = close + 1;
+                literalStart = i;
+                continue;
+            }
+            if (c == '\\' && inString) {
+                i += 2;
+                continue;
+            }
+            if (c == '"') {
+                inString = !inString;
+            }
+            i++;
+        }
+        literals.add(template.substring(literalStart).getBytes(StandardCharsets.UTF_8));
+
+        boolean[] quotedSlots = new boolean[quoted.size()];
+        for (int s = 0; s < quotedSlots.length; s++) {
+            quotedSlots[s] = quoted.get(s);
+        }
+        return new JsonTemplate(literals.toArray(new byte[0][]), slotNames.toArray(new String[0]), quotedSlots);
+    }
+
+    /**
+     * Returns this template as a request body, a drop-in for StringBody(session -> ...).
+     *
+     * Example:
+     *   .body(CREATE_POST_BODY.asBody())
+     */
+    public Body.WithBytes asBody() {
+        return ByteArrayBody(this::render);
+    }
+
+    /**
+     * Renders the template with values from the Gatling session.
+     *
+     * @throws IllegalStateException if an attribute used by the template is missing from the session,
+     *                               which Gatling reports as a failed request
+     */
+    public byte[] render(Session session) {
+        return render(name -> session.contains(name) ? session.get(name) : missing(name));
+    }
+
+    /**
+     * Renders the template with values looked up by name.
+     *
+     * Values are written straight into a reused per-thread buffer; the only allocation
+     * per call is the returned array.
+     */
+    public byte[] render(Function<String, Object> values) {
+        Buffer buffer = BUFFER.get();
+        buffer.size = 0;
+        for (int s = 0; s < slotNames.length; s++) {
+            buffer.write(literals[s]);
+            Object value = values.apply(slotNames[s]);
+            if (quoted[s]) {
+                buffer.writeEscaped(String.valueOf(value));
+            } else {
+                buffer.writeRaw(value);
+            }
+        }
+        buffer.write(literals[slotNames.length]);
+        return Arrays.copyOf(buffer.bytes, buffer.size);
+    }
+
+    private static Object missing(String name) {
+        throw new IllegalStateException("No attribute named '" + name + "' is defined");
+    }
+
+    private static final class Buffer {
+
+        private byte[] bytes = new byte[512];
+        private int size;
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        private void write(byte[] literal) {
+            ensure(literal.length);
+            System.arraycopy(literal, 0, bytes, size, literal.length);
+            size += literal.length;
+        }
+
+        private void writeRaw(Object value) {
+            if (value instanceof Integer || value instanceof Long) {
+                writeLong(((Number) value).longValue());
+            } else {
+                String text = String.valueOf(value);
+                ensure(text.length() * 3);
+                for (int i = 0; i < text.length(); i++) {
+                    i = writeChar(text, i);
+                }
+            }
+        }
+
+        private void writeLong(long value) {
+            if (value == Long.MIN_VALUE) {
+                write(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            ensure(20);
+            if (value < 0) {
+                bytes[size++] = '-';
+                value = -value;
+            }
+            int digits = 1;
+            for (long v = value / 10; v > 0; v /= 10) {
+                digits++;
+            }
+            for (int d = size + digits - 1; d >= size; d--) {
+                bytes[d] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            size += digits;
+        }
+
+        /**
+         * Writes a string as the contents of a JSON string literal, escaping as required by RFC 8259.
+         */
+        private void writeEscaped(String text) {
+            ensure(text.length() * 6);
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '"' -> writeEscape('"');
+                    case '\\' -> writeEscape('\\');
+                    case '\n' -> writeEscape('n');
+                    case '\r' -> writeEscape('r');
+                    case '\t' -> writeEscape('t');
+                    case '\b' -> writeEscape('b');
+                    case '\f' -> writeEscape('f');
+                    default -> {
+                        if (c < 0x20) {
+                            bytes[size++] = '\\';
+                            bytes[size++] = 'u';
+                            bytes[size++] = '0';
+                            bytes[size++] = '0';
+                            bytes[size++] = HEX[c >> 4];
+                            bytes[size++] = HEX[c & 0xF];
+                        } else {
+                            i = writeChar(text, i);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void writeEscape(char c) {
+            bytes[size++] = '\\';
+            bytes[size++] = (byte) c;
+        }
+
+        /**
+         * UTF-8 encodes the character at index i (a surrogate pair counts as one) and returns the last index consumed.
+         * Callers must have reserved at least 3 bytes per remaining char.
+         */
+        private int writeChar(String text, int i) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes[size++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[size++] = (byte) (0xC0 | c >> 6);
+                bytes[size++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                bytes[size++] = (byte) (0xF0 | cp >> 18);
+                bytes[size++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                bytes[size++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                bytes[size++] = (byte) (0x80 | cp & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                bytes[size++] = '?';
+            } else {
+                bytes[size++] = (byte) (0xE0 | c >> 12);
+                bytes[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[size++] = (byte) (0x80 | c & 0x3F);
+            }
+            return i;
+        }
+    }
+}
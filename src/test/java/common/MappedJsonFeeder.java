@@ -0,0 +1,469 @@
+package common;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class MappedJsonFeeder {
+
+    /**
+     * The whole feeder file, mapped read-only.
+     * Only the pages around the records actually read are ever paged in,
+     * so the heap footprint does not depend on the file size.
+     */
+    private final MemorySegment data;
+
+    /**
+     * Offset of the first record ('{') and the exclusive end of the record range.
+     */
+    private final long start;
+    private final long end;
+
+    MappedJsonFeeder(MemorySegment data, long start, long end) {
+        this.data = data;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Memory-maps a JSON array of objects (the same format jsonFile() reads).
+     *
+     * Nothing is parsed up front: records are decoded one at a time as virtual users pull them.
+     *
+     * @param file the JSON file to map
+     * @return a feeder over every record in the file
+     */
+    public static MappedJsonFeeder open(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MemorySegment data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), Arena.ofAuto());
+            long open = skipWhitespace(data, 0, data.byteSize());
+            if (open >= data.byteSize() || data.get(ValueLayout.JAVA_BYTE, open) != '[') {
+                throw new IllegalArgumentException(file + " is not a JSON array");
+            }
+            long close = data.byteSize() - 1;
+            while (close > open && data.get(ValueLayout.JAVA_BYTE, close) != ']') {
+                close--;
+            }
+            if (close == open) {
+                throw new IllegalArgumentException(file + " is not a JSON array");
+            }
+            return new MappedJsonFeeder(data, open + 1, close);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Restricts this feeder to one of count disjoint slices of its records.
+     *
+     * The byte range is cut into count equal parts and each cut is moved forward to the
+     * next record start, so every record belongs to exactly one slice and no slice needs
+     * to parse (or page in) anything outside its own range.
+     * Like random(), this assumes flat records: a record holding an array of objects
+     * could be cut inside that array.
+     *
+     * When the file holds fewer records than slices, some slices are empty: check with isEmpty().
+     *
+     * @param index the slice to keep, from 0 to count - 1
+     * @param count the number of slices
+     * @return a feeder over the records of that slice only
+     */
+    public MappedJsonFeeder partition(int index, int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid partition " + index + " of " + count);
+        }
+        if (count == 1) {
+            return this;
+        }
+        long size = end - start;
+        long from = index == 0 ? start : alignToRecord(start + size * index / count);
+        long to = index == count - 1 ? end : alignToRecord(start + size * (index + 1) / count);
+        return new MappedJsonFeeder(data, from, Math.max(from, to));
+    }
+
+    /**
+     * Returns records in file order, looping back to the first one after the last.
+     *
+     * Equivalent to jsonFile(...).circular(). The iterator is safe to share between virtual users.
+     */
+    public Iterator<Map<String, Object>> circular() {
+        requireRecords();
+        return new Iterator<>() {
+            private long position = start;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public synchronized Map<String, Object> next() {
+                long record = nextRecord(position);
+                if (record < 0) {
+                    record = nextRecord(start);
+                }
+                Parser parser = new Parser(record);
+                Map<String, Object> values = parser.readObject();
+                position = parser.position;
+                return values;
+            }
+        };
+    }
+
+    /**
+     * Returns records in file order and ends after the last one.
+     *
+     * Equivalent to jsonFile(...).queue(): Gatling stops the run if users need more records than the file holds.
+     */
+    public Iterator<Map<String, Object>> queue() {
+        return new Iterator<>() {
+            private long position = nextRecord(start);
+
+            @Override
+            public synchronized boolean hasNext() {
+                return position >= 0;
+            }
+
+            @Override
+            public synchronized Map<String, Object> next() {
+                if (position < 0) {
+                    throw new NoSuchElementException("Feeder is empty");
+                }
+                Parser parser = new Parser(position);
+                Map<String, Object> values = parser.readObject();
+                position = nextRecord(parser.position);
+                return values;
+            }
+        };
+    }
+
+    /**
+     * Returns records picked at random, forever.
+     *
+     * Equivalent to jsonFile(...).random(), without an in-memory index:
+     * a random byte offset is chosen and the record that starts after it is returned.
+     * Selection is therefore uniform by bytes rather than by records, which is the same
+     * thing when records have similar sizes (as feeder rows usually do).
+     *
+     * No lock is taken, so concurrent virtual users never contend.
+     */
+    public Iterator<Map<String, Object>> random() {
+        requireRecords();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                long offset = start + ThreadLocalRandom.current().nextLong(end - start);
+                while (true) {
+                    long record = nextBoundary(offset);
+                    if (record < 0) {
+                        return new Parser(nextRecord(start)).readObject();
+                    }
+                    try {
+                        return new Parser(record).readObject();
+                    } catch (IllegalStateException e) {
+                        // the boundary was inside a string value: keep scanning
+                        offset = record + 1;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * @return true when this feeder has no record, e.g. a slice of a file with fewer records than slices
+     */
+    public boolean isEmpty() {
+        return nextRecord(start) < 0;
+    }
+
+    private void requireRecords() {
+        if (isEmpty()) {
+            throw new IllegalStateException("Feeder contains no records (empty file, or a partition of a file with fewer records than partitions)");
+        }
+    }
+
+    /**
+     * Skips separators from the given offset and returns the offset of the next record's '{',
+     * or -1 when the end of the range has been reached.
+     */
+    long nextRecord(long offset) {
+        long i = offset;
+        while (i < end) {
+            byte b = data.get(ValueLayout.JAVA_BYTE, i);
+            if (b == '{') {
+                return i;
+            }
+            if (b != ',' && !isWhitespace(b)) {
+                return -1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the start of the first record that begins at or after the given offset,
+     * or end when there is none. Candidates that turn out to sit inside a string value
+     * are skipped by checking that a whole record parses from there.
+     */
+    private long alignToRecord(long offset) {
+        long candidate = nextBoundary(offset);
+        while (candidate >= 0) {
+            try {
+                new Parser(candidate).readObject();
+                return candidate;
+            } catch (IllegalStateException e) {
+                candidate = nextBoundary(candidate + 1);
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Scans forward from an arbitrary offset for the "},{" separator between two records
+     * (whitespace allowed) and returns the offset of the second '{', or -1 when none is left.
+     */
+    long nextBoundary(long offset) {
+        for (long i = offset; i < end; i++) {
+            if (data.get(ValueLayout.JAVA_BYTE, i) != '}') {
+                continue;
+            }
+            long comma = skipWhitespace(data, i + 1, end);
+            if (comma < end && data.get(ValueLayout.JAVA_BYTE, comma) == ',') {
+                long open = skipWhitespace(data, comma + 1, end);
+                if (open < end && data.get(ValueLayout.JAVA_BYTE, open) == '{') {
+                    return open;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static long skipWhitespace(MemorySegment data, long offset, long limit) {
+        long i = offset;
+        while (i < limit && isWhitespace(data.get(ValueLayout.JAVA_BYTE, i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * Minimal recursive-descent JSON reader over the mapped segment.
+     *
+     * Produces the same value types Gatling's jsonFile() does for feeder rows:
+     * String, Integer/Long/Double, Boolean, null, and nested Map/List.
+     * Throws IllegalStateException on malformed input.
+     */
+    private final class Parser {
+
+        private long position;
+
+        private Parser(long position) {
+            this.position = position;
+        }
+
+        private Map<String, Object> readObject() {
+            expect('{');
+            Map<String, Object> values = new HashMap<>();
+            if (peek() == '}') {
+                position++;
+                return values;
+            }
+            while (true) {
+                String key = readString();
+                expect(':');
+                values.put(key, readValue());
+                byte next = nextToken();
+                if (next == '}') {
+                    return values;
+                }
+                if (next != ',') {
+                    throw malformed();
+                }
+            }
+        }
+
+        private List<Object> readArray() {
+            expect('[');
+            List<Object> values = new ArrayList<>();
+            if (peek() == ']') {
+                position++;
+                return values;
+            }
+            while (true) {
+                values.add(readValue());
+                byte next = nextToken();
+                if (next == ']') {
+                    return values;
+                }
+                if (next != ',') {
+                    throw malformed();
+                }
+            }
+        }
+
+        private Object readValue() {
+            byte b = peek();
+            return switch (b) {
+                case '{' -> readObject();
+                case '[' -> readArray();
+                case '"' -> readString();
+                case 't' -> literal("true", Boolean.TRUE);
+                case 'f' -> literal("false", Boolean.FALSE);
+                case 'n' -> literal("null", null);
+                default -> readNumber();
+            };
+        }
+
+        private String readString() {
+            expect('"');
+            long from = position;
+            while (position < end) {
+                byte b = data.get(ValueLayout.JAVA_BYTE, position);
+                if (b == '"') {
+                    String value = new String(data.asSlice(from, position - from).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+                    position++;
+                    return value;
+                }
+                if (b == '\\') {
+                    return readEscapedString(from);
+                }
+                position++;
+            }
+            throw malformed();
+        }
+
+        private String readEscapedString(long from) {
+            StringBuilder value = new StringBuilder(new String(data.asSlice(from, position - from).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8));
+            long chunk = position;
+            while (position < end) {
+                byte b = data.get(ValueLayout.JAVA_BYTE, position);
+                if (b == '"' || b == '\\') {
+                    value.append(new String(data.asSlice(chunk, position - chunk).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8));
+                    position++;
+                    if (b == '"') {
+                        return value.toString();
+                    }
+                    if (position >= end) {
+                        throw malformed();
+                    }
+                    char escaped = (char) data.get(ValueLayout.JAVA_BYTE, position++);
+                    switch (escaped) {
+                        case 'n' -> value.append('\n');
+                        case 't' -> value.append('\t');
+                        case 'r' -> value.append('\r');
+                        case 'b' -> value.append('\b');
+                        case 'f' -> value.append('\f');
+                        case 'u' -> value.append(readHex4());
+                        default -> value.append(escaped);
+                    }
+                    chunk = position;
+                } else {
+                    position++;
+                }
+            }
+            throw malformed();
+        }
+
+        /**
+         * @return the code unit of the four hex digits of a \\u escape
+         * @throws IllegalStateException if fewer than four bytes remain or one of them is not a hex digit
+         */
+        private char readHex4() {
+            if (end - position < 4) {
+                throw malformed();
+            }
+            int decoded = 0;
+            for (int h = 0; h < 4; h++) {
+                int digit = Character.digit(data.get(ValueLayout.JAVA_BYTE, position++), 16);
+                if (digit < 0) {
+                    throw malformed();
+                }
+                decoded = decoded << 4 | digit;
+            }
+            return (char) decoded;
+        }
+
+        private Object readNumber() {
+            long from = position;
+            boolean decimal = false;
+            while (position < end) {
+                byte b = data.get(ValueLayout.JAVA_BYTE, position);
+                if (b == '.' || b == 'e' || b == 'E') {
+                    decimal = true;
+                } else if (!(b >= '0' && b <= '9') && b != '-' && b != '+') {
+                    break;
+                }
+                position++;
+            }
+            if (position == from) {
+                throw malformed();
+            }
+            String text = new String(data.asSlice(from, position - from).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.US_ASCII);
+            try {
+                if (decimal) {
+                    return Double.parseDouble(text);
+                }
+                long value = Long.parseLong(text);
+                return value == (int) value ? (Object) (int) value : (Object) value;
+            } catch (NumberFormatException e) {
+                throw malformed();
+            }
+        }
+
+        private Object literal(String text, Object value) {
+            for (int i = 0; i < text.length(); i++) {
+                if (position >= end || data.get(ValueLayout.JAVA_BYTE, position++) != text.charAt(i)) {
+                    throw malformed();
+                }
+            }
+            return value;
+        }
+
+        private void expect(char c) {
+            if (nextToken() != c) {
+                throw malformed();
+            }
+        }
+
+        private byte nextToken() {
+            byte b = peek();
+            position++;
+            return b;
+        }
+
+        private byte peek() {
+            position = skipWhitespace(data, position, end);
+            if (position >= end) {
+                throw malformed();
+            }
+            return data.get(ValueLayout.JAVA_BYTE, position);
+        }
+
+        private IllegalStateException malformed() {
+            return new IllegalStateException("Malformed JSON record near byte " + position);
+        }
+    }
+}
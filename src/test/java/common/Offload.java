@@ -0,0 +1,183 @@
+package common;
+
+import io.gatling.javaapi.core.Session;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+public class Offload {
+
+    private static final Map<String, Offload> OFFLOADS = new ConcurrentHashMap<>();
+
+    static {
+        Gauges.register("offload_queue_depth", "Blocking tasks waiting for a virtual thread slot, by offload executor.", false, out -> {
+            for (Offload offload : all()) {
+                out.sample(offload.queueDepth(), "executor", offload.name);
+            }
+        });
+        Gauges.register("offload_running", "Blocking tasks running on virtual threads, by offload executor.", false, out -> {
+            for (Offload offload : all()) {
+                out.sample(offload.running(), "executor", offload.name);
+            }
+        });
+        Gauges.register("offload_tasks_total", "Offloaded blocking tasks, by executor and outcome.", true, out -> {
+            for (Offload offload : all()) {
+                for (Map.Entry<String, Long> counter : offload.counters().entrySet()) {
+                    out.sample(counter.getValue(), "executor", offload.name, "outcome", counter.getKey());
+                }
+            }
+        });
+        Gauges.register("offload_time_ms", "Queue and run time of offloaded tasks since the start of the run.", false, out -> {
+            for (Offload offload : all()) {
+                for (Map.Entry<String, Double> time : offload.times().entrySet()) {
+                    String[] phaseAndQuantile = time.getKey().split("_p");
+                    out.sample(time.getValue(), "executor", offload.name, "phase", phaseAndQuantile[0],
+                            "quantile", "0." + phaseAndQuantile[1]);
+                }
+            }
+        });
+    }
+
+    /**
+     * One virtual thread per task; blocking in it parks the virtual thread, not a carrier thread.
+     */
+    private static final ExecutorService VIRTUAL_THREADS = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Queue and run times are recorded in microseconds, up to one hour.
+     */
+    private static final long HIGHEST_MICROS = 3_600_000_000L;
+
+    private final String name;
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Histogram queueMicros = new ConcurrentHistogram(HIGHEST_MICROS, 2);
+    private final Histogram runMicros = new ConcurrentHistogram(HIGHEST_MICROS, 2);
+
+    private Offload(String name, int maxConcurrency) {
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    /**
+     * Returns the offload executor with this name, creating it on first use.
+     *
+     * Tasks run on virtual threads, at most -Doffload.NAME.maxConcurrency (default 256) at a time,
+     * e.g. to stay within a connection pool; the others wait in line, counted as queued.
+     */
+    public static Offload named(String name) {
+        return OFFLOADS.computeIfAbsent(name, key -> new Offload(key, Integer.getInteger("offload." + key + ".maxConcurrency", 256)));
+    }
+
+    /**
+     * @return every offload executor created so far, for reporting
+     */
+    public static Collection<Offload> all() {
+        return OFFLOADS.values();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Runs blocking work for a virtual user on a virtual thread.
+     *
+     * Use it through SessionFutures.offload, which waits for the result without blocking the event loop.
+     *
+     * @param session  the virtual user's session, as it was when the work was submitted
+     * @param blocking the work, e.g. a database lookup or a signature; it may block
+     * @return the work's result
+     */
+    public <T> CompletableFuture<T> submit(Session session, Function<Session, T> blocking) {
+        long submitted = System.nanoTime();
+        queued.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> {
+            permits.acquireUninterruptibly();
+            long started = System.nanoTime();
+            queued.decrementAndGet();
+            running.incrementAndGet();
+            queueMicros.recordValue(Math.min(HIGHEST_MICROS, (started - submitted) / 1000));
+            boolean ok = false;
+            try {
+                T result = blocking.apply(session);
+                ok = true;
+                return result;
+            } finally {
+                runMicros.recordValue(Math.min(HIGHEST_MICROS, (System.nanoTime() - started) / 1000));
+                running.decrementAndGet();
+                permits.release();
+                (ok ? completed : failed).increment();
+            }
+        }, VIRTUAL_THREADS);
+    }
+
+    /**
+     * @return tasks waiting for a free slot
+     */
+    public int queueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * @return tasks running now
+     */
+    public int running() {
+        return running.get();
+    }
+
+    /**
+     * @return counters since the start of the run: completed, failed
+     */
+    public Map<String, Long> counters() {
+        return Map.of("completed", completed.sum(), "failed", failed.sum());
+    }
+
+    /**
+     * @return queue and run time percentiles in milliseconds: queue_p50, queue_p99, run_p50, run_p99
+     */
+    public Map<String, Double> times() {
+        Histogram queue = queueMicros.copy();
+        Histogram run = runMicros.copy();
+        return Map.of(
+                "queue_p50", queue.getValueAtPercentile(50) / 1000.0,
+                "queue_p99", queue.getValueAtPercentile(99) / 1000.0,
+                "run_p50", run.getValueAtPercentile(50) / 1000.0,
+                "run_p99", run.getValueAtPercentile(99) / 1000.0);
+    }
+
+    /**
+     * Zeroes the counters and times, so the next simulation run in the same JVM starts from nothing
+     * (see launcher.SimulationBatch). Only call it while no task is queued or running.
+     */
+    public void reset() {
+        completed.reset();
+        failed.reset();
+        queueMicros.reset();
+        runMicros.reset();
+    }
+
+    public String stats() {
+        Map<String, Double> times = times();
+        return String.format(Locale.ROOT,
+                "%s: completed=%d failed=%d queued=%d running=%d/%d queue p50 %.2f p99 %.2f ms, run p50 %.2f p99 %.2f ms",
+                name, completed.sum(), failed.sum(), queued.get(), running.get(), maxConcurrency,
+                times.get("queue_p50"), times.get("queue_p99"), times.get("run_p50"), times.get("run_p99"));
+    }
+}
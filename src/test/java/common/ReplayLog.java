@@ -0,0 +1,181 @@
+package common;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class ReplayLog implements Closeable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final BufferedReader lines;
+    private final JsonParser har;
+    private long sequence;
+
+    private ReplayLog(BufferedReader lines, JsonParser har) {
+        this.lines = lines;
+        this.har = har;
+    }
+
+    /**
+     * One recorded request.
+     *
+     * @param sequence        position in the log, from 0
+     * @param timestampMillis when the request was sent, in epoch milliseconds
+     * @param path            path and query, without scheme and host
+     * @param headers         header values by lower-case name
+     * @param body            the request body, or null
+     */
+    public record Entry(long sequence, long timestampMillis, String method, String path, Map<String, String> headers, String body) {
+
+        public String header(String name) {
+            return headers.get(name.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Opens a recorded traffic log for streaming: entries are read one at a time, so the size
+     * of the log does not matter.
+     *
+     * Two formats are read, chosen by extension:
+     * - .har: an HTTP Archive as exported by browsers and proxies (log.entries[].request)
+     * - anything else: JSON Lines, one request per line, e.g.
+     *   {"timestamp": "2025-03-01T10:15:30.120Z", "method": "PUT", "url": "/posts/7",
+     *    "headers": {"Content-Type": "application/json"}, "body": {"id": 7, "title": "..."}}
+     *   timestamp is an ISO-8601 instant or epoch milliseconds; url may be absolute;
+     *   headers and body are optional, and body may be a string or any JSON value.
+     *
+     * @param file the log to read
+     * @return a reader positioned on the first entry
+     */
+    public static ReplayLog open(Path file) {
+        try {
+            if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".har")) {
+                JsonParser parser = MAPPER.getFactory().createParser(file.toFile());
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IllegalArgumentException("Not a HAR file: " + file);
+                }
+                seekField(parser, "log", file);
+                seekField(parser, "entries", file);
+                if (parser.currentToken() != JsonToken.START_ARRAY) {
+                    throw new IllegalArgumentException("HAR log.entries is not an array: " + file);
+                }
+                return new ReplayLog(null, parser);
+            }
+            return new ReplayLog(Files.newBufferedReader(file, StandardCharsets.UTF_8), null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open replay log " + file, e);
+        }
+    }
+
+    /**
+     * Moves the parser from the start of an object to the value of one of its fields.
+     */
+    private static void seekField(JsonParser parser, String name, Path file) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (field.equals(name)) {
+                return;
+            }
+            parser.skipChildren();
+        }
+        throw new IllegalArgumentException("No \"" + name + "\" in HAR file " + file);
+    }
+
+    /**
+     * @return the next entry, or null at the end of the log
+     */
+    public Entry next() {
+        try {
+            if (har != null) {
+                if (har.nextToken() != JsonToken.START_OBJECT) {
+                    return null;
+                }
+                return fromHar(MAPPER.readTree(har));
+            }
+            String line;
+            do {
+                line = lines.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+            return fromJsonLine(MAPPER.readTree(line));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read replay log entry " + sequence, e);
+        }
+    }
+
+    private Entry fromHar(JsonNode entry) {
+        JsonNode request = entry.path("request");
+        Map<String, String> headers = new HashMap<>();
+        for (JsonNode header : request.path("headers")) {
+            headers.put(header.path("name").asText().toLowerCase(Locale.ROOT), header.path("value").asText());
+        }
+        JsonNode text = request.path("postData").path("text");
+        return new Entry(sequence++, timestamp(entry.path("startedDateTime")), request.path("method").asText("GET"),
+                path(request.path("url").asText("/")), headers, text.isMissingNode() ? null : text.asText());
+    }
+
+    private Entry fromJsonLine(JsonNode line) {
+        Map<String, String> headers = new HashMap<>();
+        for (Map.Entry<String, JsonNode> header : line.path("headers").properties()) {
+            headers.put(header.getKey().toLowerCase(Locale.ROOT), header.getValue().asText());
+        }
+        JsonNode body = line.path("body");
+        JsonNode url = line.has("url") ? line.get("url") : line.path("path");
+        JsonNode timestamp = line.has("timestamp") ? line.get("timestamp") : line.path("startedDateTime");
+        return new Entry(sequence++, timestamp(timestamp), line.path("method").asText("GET"), path(url.asText("/")), headers,
+                body.isMissingNode() || body.isNull() ? null : body.isTextual() ? body.asText() : body.toString());
+    }
+
+    private long timestamp(JsonNode value) {
+        if (value.isNumber()) {
+            return value.asLong();
+        }
+        if (value.isTextual()) {
+            return OffsetDateTime.parse(value.asText()).toInstant().toEpochMilli();
+        }
+        throw new IllegalArgumentException("Replay log entry " + sequence + " has no timestamp");
+    }
+
+    /**
+     * @return the path and query of a URL, so the request is sent to the target under test, not the recorded host
+     */
+    private static String path(String url) {
+        if (!url.startsWith("http://") && !url.startsWith("https://")) {
+            return url;
+        }
+        URI uri = URI.create(url);
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        return uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery();
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (har != null) {
+                har.close();
+            } else {
+                lines.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
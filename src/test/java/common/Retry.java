@@ -0,0 +1,100 @@
+package common;
+
+import io.gatling.javaapi.core.ChainBuilder;
+import io.gatling.javaapi.core.Session;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+import static io.gatling.javaapi.core.CoreDsl.*;
+
+public class Retry {
+
+    private static final String ATTEMPT = "retry.attempt";
+    private static final String FAILED_BEFORE = "retry.failedBefore";
+
+    private final int maxAttempts;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final RetryBudget budget;
+
+    private Retry(int maxAttempts, Duration baseDelay, Duration maxDelay, RetryBudget budget) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.budget = budget;
+    }
+
+    /**
+     * A retry policy for the api chains: up to 3 attempts, backing off exponentially from 200 ms
+     * up to 5 s with full jitter, within the "default" retry budget.
+     *
+     * Example:
+     *   Retry.policy().maxAttempts(4).budget(RetryBudget.named("posts"))
+     *           .on("[GET] All Posts", attempt -> RequestMetrics.timed(attempt, name -> http(name).get("/posts")))
+     */
+    public static Retry policy() {
+        return new Retry(3, Duration.ofMillis(200), Duration.ofSeconds(5), RetryBudget.named("default"));
+    }
+
+    /**
+     * @param maxAttempts attempts in total, the first one included
+     */
+    public Retry maxAttempts(int maxAttempts) {
+        return new Retry(maxAttempts, baseDelay, maxDelay, budget);
+    }
+
+    /**
+     * @param baseDelay the upper bound of the first backoff; it doubles with every retry, up to maxDelay
+     */
+    public Retry backoff(Duration baseDelay, Duration maxDelay) {
+        return new Retry(maxAttempts, baseDelay, maxDelay, budget);
+    }
+
+    public Retry budget(RetryBudget budget) {
+        return new Retry(maxAttempts, baseDelay, maxDelay, budget);
+    }
+
+    /**
+     * Sends a request, and retries it while it fails, the policy allows another attempt and the budget has a token.
+     *
+     * - Backoff before retry N is drawn uniformly from [0, min(maxDelay, baseDelay * 2^(N-1))] ("full jitter"),
+     *   so users that failed together do not retry together.
+     * - Retries are built with name + " (retry)", so they appear as a separate request in the reports
+     *   and in RequestMetrics, and do not skew the primary request's latencies.
+     * - Like tryMax, the failure status is reset before each attempt; the session stays failed if the
+     *   last attempt failed. A failure from before the block is restored after it,
+     *   so a later exitHereIfFailed still stops the user.
+     *
+     * @param name    the request name of the first attempt
+     * @param request builds the request chain for a given request name
+     * @return a ChainBuilder that performs the request with retries
+     */
+    public ChainBuilder on(String name, Function<String, ChainBuilder> request) {
+        return exec(session -> {
+            budget.onAttempt();
+            return session.set(FAILED_BEFORE, session.isFailed()).markAsSucceeded().set(ATTEMPT, 1);
+        })
+                .exec(request.apply(name))
+                .asLongAs(this::shouldRetry).on(
+                        exec(SendSchedule.pauseFor(this::delay))
+                                .exec(session -> session.markAsSucceeded().set(ATTEMPT, session.getInt(ATTEMPT) + 1))
+                                .exec(request.apply(name + " (retry)"))
+                )
+                .exec(session -> {
+                    Session done = session.remove(ATTEMPT).remove(FAILED_BEFORE);
+                    return session.getBoolean(FAILED_BEFORE) ? done.markAsFailed() : done;
+                });
+    }
+
+    private boolean shouldRetry(Session session) {
+        return session.isFailed() && session.getInt(ATTEMPT) < maxAttempts && budget.tryRetry();
+    }
+
+    private Duration delay(Session session) {
+        int retry = session.getInt(ATTEMPT);
+        long ceiling = Math.min(maxDelay.toMillis(), baseDelay.toMillis() << Math.min(30, retry - 1));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+}
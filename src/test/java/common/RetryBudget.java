@@ -0,0 +1,123 @@
+package common;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class RetryBudget {
+
+    private static final Map<String, RetryBudget> BUDGETS = new ConcurrentHashMap<>();
+
+    static {
+        Gauges.register("retries_total", "Retry budget counters: first attempts, retries sent and retries denied by the budget.", true, out -> {
+            for (RetryBudget budget : all()) {
+                for (Map.Entry<String, Long> counter : budget.counters().entrySet()) {
+                    out.sample(counter.getValue(), "budget", budget.name, "outcome", counter.getKey());
+                }
+            }
+        });
+    }
+
+    /**
+     * Tokens are counted in thousandths, so fractional deposits need no floating-point CAS.
+     */
+    private static final long ONE = 1000;
+
+    private final String name;
+    private final long deposit;
+    private final long capacity;
+    private final AtomicLong tokens;
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder denied = new LongAdder();
+
+    private RetryBudget(String name, double ratio, double maxTokens) {
+        this.name = name;
+        this.deposit = Math.round(ratio * ONE);
+        this.capacity = Math.round(maxTokens * ONE);
+        this.tokens = new AtomicLong(capacity);
+    }
+
+    /**
+     * Returns the budget with this name, shared by every virtual user, creating it on first use.
+     *
+     * A token bucket: each first attempt of a request adds ratio tokens, each retry takes one.
+     * Retries are therefore capped at ratio times the base traffic (plus the initial burst of maxTokens),
+     * however badly the target degrades, instead of multiplying the load by the number of attempts.
+     *
+     * - ratio: -Dretry.NAME.ratio (default 0.1, i.e. at most 10% extra requests)
+     * - maxTokens: -Dretry.NAME.maxTokens (default 100)
+     */
+    public static RetryBudget named(String name) {
+        return BUDGETS.computeIfAbsent(name, key -> new RetryBudget(key,
+                Double.parseDouble(System.getProperty("retry." + key + ".ratio", "0.1")),
+                Double.parseDouble(System.getProperty("retry." + key + ".maxTokens", "100"))));
+    }
+
+    /**
+     * @return every budget created so far, for reporting
+     */
+    public static Collection<RetryBudget> all() {
+        return BUDGETS.values();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Records a first attempt, earning the budget its share of a retry.
+     */
+    public void onAttempt() {
+        attempts.increment();
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= capacity) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(capacity, current + deposit)));
+    }
+
+    /**
+     * @return true if a retry may be sent, in which case one token has been taken
+     */
+    public boolean tryRetry() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < ONE) {
+                denied.increment();
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - ONE));
+        retries.increment();
+        return true;
+    }
+
+    /**
+     * @return counters since the start of the run: attempts (first tries), retries, denied (retries refused by the budget)
+     */
+    public Map<String, Long> counters() {
+        return Map.of("attempts", attempts.sum(), "retries", retries.sum(), "denied", denied.sum());
+    }
+
+    /**
+     * Refills the budget and zeroes its counters, so the next simulation run in the same JVM starts from nothing
+     * (see launcher.SimulationBatch). Only call it while no virtual user is running.
+     */
+    public void reset() {
+        tokens.set(capacity);
+        attempts.reset();
+        retries.reset();
+        denied.reset();
+    }
+
+    public String stats() {
+        return name + ": attempts=" + attempts.sum() + " retries=" + retries.sum() + " denied=" + denied.sum()
+                + " tokens=" + tokens.get() / ONE + "/" + capacity / ONE;
+    }
+}
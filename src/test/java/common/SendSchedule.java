@@ -0,0 +1,82 @@
+package common;
+
+import io.gatling.javaapi.core.ChainBuilder;
+import io.gatling.javaapi.core.Session;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+import static io.gatling.javaapi.core.CoreDsl.*;
+
+public class SendSchedule {
+
+    private static final String SCHEDULE = "schedule.due";
+    private static final String PAUSE = "schedule.pause";
+
+    private SendSchedule() {
+    }
+
+    /**
+     * Pauses like pause(duration), and records when the pause should end as the scheduled send time
+     * of the request that follows.
+     *
+     * If the injector is overloaded (CPU, GC, a blocked event loop), that request goes out late;
+     * metrics.RequestMetrics.timed then sees both times, so the delay can be reported (see metrics.InjectorHealth)
+     * and the request's latency also recorded from its scheduled time, corrected for coordinated omission.
+     *
+     * Use it for the think times between the steps of a scenario, instead of pause(...).
+     *
+     * @param duration the pause, sampled once per call
+     */
+    public static ChainBuilder pauseFor(Function<Session, Duration> duration) {
+        return exec(session -> {
+            Duration pause = duration.apply(session);
+            return dueAt(session, System.currentTimeMillis() + pause.toMillis()).set(PAUSE, pause);
+        }).pause(session -> session.<Duration>get(PAUSE));
+    }
+
+    /**
+     * @param duration the pause
+     * @see #pauseFor(Function)
+     */
+    public static ChainBuilder pauseFor(Duration duration) {
+        return pauseFor(session -> duration);
+    }
+
+    /**
+     * Schedules the user's first request at the moment the user starts, so it is recorded from then on,
+     * like the requests that follow a pause. Put it at the head of a scenario or journey.
+     *
+     * Without it, the first request of every user would have no scheduled time, and in an open model,
+     * where each arrival is a user, most requests would then be missing from the corrected latencies.
+     * Gatling does not expose when a user was due to start, so a delay before the user's first action is
+     * still not seen; only the wait from that action to the send is.
+     */
+    public static ChainBuilder arrival() {
+        return exec(session -> dueAt(session, System.currentTimeMillis()));
+    }
+
+    /**
+     * Records when the user's next request is scheduled to be sent, for paced loops that compute it themselves.
+     *
+     * @param epochMillis the scheduled send time
+     */
+    public static Session dueAt(Session session, long epochMillis) {
+        return session.set(SCHEDULE, epochMillis);
+    }
+
+    /**
+     * @return the scheduled send time of the user's next request in epoch milliseconds, or -1 if it has none
+     */
+    public static long scheduledAt(Session session) {
+        return session.contains(SCHEDULE) ? session.getLong(SCHEDULE) : -1;
+    }
+
+    /**
+     * Forgets the scheduled send time once a request has used it: the requests that follow it in the same
+     * step were not scheduled, they simply came next.
+     */
+    public static Session sent(Session session) {
+        return session.remove(SCHEDULE);
+    }
+}
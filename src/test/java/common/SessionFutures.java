@@ -0,0 +1,157 @@
+package common;
+
+import com.typesafe.scalalogging.Logger;
+import io.gatling.core.action.Action;
+import io.gatling.javaapi.core.ActionBuilder;
+import io.gatling.javaapi.core.ChainBuilder;
+import io.gatling.javaapi.core.Session;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import static io.gatling.javaapi.core.CoreDsl.*;
+
+public class SessionFutures {
+
+    /**
+     * Starts asynchronous work and stores its result in the session once it completes,
+     * without ever blocking Gatling's event-loop threads.
+     *
+     * The virtual user leaves its event loop while the future is pending and is resumed on that same event loop
+     * as soon as the future completes, so waiting adds no latency beyond the hop back to the event loop.
+     * If the future is already complete (e.g. a cache hit), the user goes on right away, without the hop.
+     *
+     * If the future fails, the session is marked as failed and the attribute is left unset,
+     * the same as a failed check with saveAs.
+     *
+     * Example:
+     *   SessionFutures.await("authToken", session -> tokens.token(session.getString("email")))
+     *
+     * @param attribute the session attribute that receives the result
+     * @param start     starts the work for this virtual user
+     * @return a ChainBuilder that resumes the virtual user once the result is available
+     */
+    public static ChainBuilder await(String attribute, Function<Session, ? extends CompletableFuture<?>> start) {
+        return exec(new Await(attribute, start));
+    }
+
+    /**
+     * Runs a blocking session function (file or database I/O, crypto signing...) on a virtual thread
+     * of the "default" Offload executor, and stores its result in the session.
+     *
+     * Gatling runs session functions on the event loop shared by many virtual users, so one slow call
+     * stalls all of them and inflates their measured latencies. With offload, only this virtual user waits;
+     * it resumes on its own event loop, as with await. The work always completes on another thread, so the user
+     * always pays the hop back to its event loop; give work that can often be done without blocking a fast path.
+     *
+     * Example:
+     *   SessionFutures.offload("signature", session -> signer.sign(session.getString("payload")))
+     *
+     * @param attribute the session attribute that receives the result, which must not be null
+     * @param blocking  the blocking work; it sees the session as it was when the work started
+     * @return a ChainBuilder that resumes the virtual user once the result is available
+     */
+    public static ChainBuilder offload(String attribute, Function<Session, ?> blocking) {
+        return offload(attribute, Offload.named("default"), blocking);
+    }
+
+    /**
+     * Same as offload(attribute, blocking), on the given executor, e.g. one per resource
+     * with its own concurrency limit and metrics.
+     */
+    public static ChainBuilder offload(String attribute, Offload executor, Function<Session, ?> blocking) {
+        return await(attribute, session -> executor.submit(session, blocking));
+    }
+
+    /**
+     * Same as offload(attribute, executor, blocking), with a fast path that completes synchronously:
+     * nonBlocking runs first, on the event loop, and when it returns a result (e.g. a fresh cache entry),
+     * that result is stored right away, with no hop to a virtual thread and back.
+     * Only when it returns null does blocking run on the executor.
+     *
+     * Example:
+     *   SessionFutures.offload("stream", FILE_IO,
+     *           session -> cache.openStreamIfFresh(file),
+     *           session -> cache.openStream(file))
+     *
+     * @param nonBlocking the result if it can be had without blocking, null otherwise
+     */
+    public static ChainBuilder offload(String attribute, Offload executor, Function<Session, ?> nonBlocking,
+                                       Function<Session, ?> blocking) {
+        return exec(session -> {
+            Session cleared = session.remove(attribute);
+            Object result = nonBlocking.apply(cleared);
+            return result == null ? cleared : cleared.set(attribute, result);
+        }).doIf(session -> !session.contains(attribute)).then(
+                offload(attribute, executor, blocking)
+        );
+    }
+
+    /**
+     * The action behind await: starts the future and hands the session to the next action once it completes.
+     */
+    private record Await(String attribute, Function<Session, ? extends CompletableFuture<?>> start) implements ActionBuilder {
+
+        @Override
+        public io.gatling.core.action.builder.ActionBuilder asScala() {
+            return (ctx, next) -> new Resume(this, next);
+        }
+    }
+
+    private static final class Resume implements Action {
+
+        private static final Logger LOGGER = Logger.apply(SessionFutures.class);
+
+        private final Await await;
+        private final Action next;
+
+        private Resume(Await await, Action next) {
+            this.await = await;
+            this.next = next;
+        }
+
+        @Override
+        public String name() {
+            return "await " + await.attribute();
+        }
+
+        @Override
+        public void execute(io.gatling.core.session.Session session) {
+            CompletableFuture<?> future = start(session);
+            if (future.isDone()) {
+                next.$bang(resumed(session, future));
+            } else {
+                // completes on whatever thread finished the work: go back to the user's own event loop
+                future.whenComplete((result, error) -> session.eventLoop().execute(() -> next.$bang(resumed(session, future))));
+            }
+        }
+
+        private CompletableFuture<?> start(io.gatling.core.session.Session session) {
+            try {
+                return await.start().apply(new Session(session));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        private io.gatling.core.session.Session resumed(io.gatling.core.session.Session session, CompletableFuture<?> future) {
+            try {
+                return session.set(await.attribute(), future.join());
+            } catch (CompletionException | CancellationException e) {
+                return session.markAsFailed();
+            }
+        }
+
+        @Override
+        public Logger logger() {
+            return LOGGER;
+        }
+
+        @Override
+        public void com$typesafe$scalalogging$StrictLogging$_setter_$logger_$eq(Logger logger) {
+            // LOGGER is a constant; Scala would only set it from the trait's initializer
+        }
+    }
+}
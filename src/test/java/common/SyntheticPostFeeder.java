@@ -0,0 +1,216 @@
+package common;
+
+import io.gatling.javaapi.core.ChainBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.gatling.javaapi.core.CoreDsl.exec;
+
+public class SyntheticPostFeeder {
+
+    /**
+     * Records reserved per virtual user by forEachUser(): user N draws indexes
+     * N * USER_STRIDE, N * USER_STRIDE + 1, ... so users never share a record.
+     */
+    static final long USER_STRIDE = 1L << 24;
+
+    private static final String COUNTER = "synthetic.posts.counter";
+    private static final byte[] LETTERS = "etaoinshrdlcumwfgypbvkjxqz".getBytes(StandardCharsets.US_ASCII);
+    private static final ThreadLocal<byte[]> TEXT = ThreadLocal.withInitial(() -> new byte[1024]);
+
+    private final long seed;
+    private final long cardinality;
+    private final long firstId;
+    private final int users;
+    private final LengthDistribution titleLength;
+    private final LengthDistribution bodyLength;
+
+    private final AtomicLong nextIndex = new AtomicLong();
+
+    private SyntheticPostFeeder(long seed, long cardinality, long firstId, int users,
+                                LengthDistribution titleLength, LengthDistribution bodyLength) {
+        this.seed = seed;
+        this.cardinality = cardinality;
+        this.firstId = firstId;
+        this.users = users;
+        this.titleLength = titleLength;
+        this.bodyLength = bodyLength;
+    }
+
+    /**
+     * Generates post records with the fields JsonPlaceholderApi needs: id, title, body and userId.
+     *
+     * Every field is a pure function of (seed, record index), so the same seed always yields
+     * the same records and no data file is needed. Defaults: seed 1, unbounded cardinality,
+     * ids from 1, 10 distinct users, titles of 10-60 and bodies of 40-400 characters.
+     *
+     * Example:
+     *   .feed(SyntheticPostFeeder.posts().seed(42).cardinality(5_000_000).feeder())
+     */
+    public static SyntheticPostFeeder posts() {
+        return new SyntheticPostFeeder(1, 0, 1, 10, LengthDistribution.uniform(10, 60), LengthDistribution.uniform(40, 400));
+    }
+
+    public SyntheticPostFeeder seed(long seed) {
+        return new SyntheticPostFeeder(seed, cardinality, firstId, users, titleLength, bodyLength);
+    }
+
+    /**
+     * @param cardinality number of distinct records before they repeat, or 0 for unbounded
+     */
+    public SyntheticPostFeeder cardinality(long cardinality) {
+        return new SyntheticPostFeeder(seed, cardinality, firstId, users, titleLength, bodyLength);
+    }
+
+    /**
+     * @param firstId id of the first record; choose one above the target's existing ids to avoid collisions
+     */
+    public SyntheticPostFeeder firstId(long firstId) {
+        return new SyntheticPostFeeder(seed, cardinality, firstId, users, titleLength, bodyLength);
+    }
+
+    /**
+     * @param users number of distinct userId values (1..users)
+     */
+    public SyntheticPostFeeder users(int users) {
+        return new SyntheticPostFeeder(seed, cardinality, firstId, users, titleLength, bodyLength);
+    }
+
+    public SyntheticPostFeeder titleLength(LengthDistribution titleLength) {
+        return new SyntheticPostFeeder(seed, cardinality, firstId, users, titleLength, bodyLength);
+    }
+
+    public SyntheticPostFeeder bodyLength(LengthDistribution bodyLength) {
+        return new SyntheticPostFeeder(seed, cardinality, firstId, users, titleLength, bodyLength);
+    }
+
+    /**
+     * Returns an endless feeder handing out records 0, 1, 2, ... in arrival order.
+     * In a multi-injector run, injector i of n takes records i, i + n, i + 2n, ... instead.
+     *
+     * Claiming an index is a single atomic increment, and generation touches no shared state,
+     * so Gatling's event-loop threads never block each other.
+     */
+    public Iterator<Map<String, Object>> feeder() {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                return record(nextIndex.getAndIncrement() * Injectors.count() + Injectors.index());
+            }
+        };
+    }
+
+    /**
+     * Returns a chain that sets a fresh record in the session, seeded by the virtual user's id.
+     *
+     * Each call draws the user's next record, so a given user id always sees the same sequence
+     * regardless of how users are scheduled across threads. Nothing is shared between users.
+     *
+     * Example:
+     *   scenario("...").exec(SyntheticPostFeeder.posts().forEachUser()).exec(JsonPlaceholderApi.createPost)
+     */
+    public ChainBuilder forEachUser() {
+        return exec(session -> {
+            long drawn = session.contains(COUNTER) ? session.getLong(COUNTER) : 0;
+            // user ids restart at 1 in every injector JVM, so the injector index is part of the seed
+            long user = session.userId() * Injectors.count() + Injectors.index();
+            Map<String, Object> record = record(user * USER_STRIDE + drawn % USER_STRIDE);
+            return session.setAll(record).set(COUNTER, drawn + 1);
+        });
+    }
+
+    /**
+     * Builds the record for a given index. With a bounded cardinality, indexes wrap around
+     * and the same record is produced again.
+     */
+    public Map<String, Object> record(long index) {
+        long key = cardinality > 0 ? Math.floorMod(index, cardinality) : index;
+        long hash = mix(seed ^ mix(key));
+        long id = firstId + key;
+        int userId = (int) Math.floorMod(hash, (long) users) + 1;
+        String title = text(mix(hash + 1), titleLength.length(mix(hash + 2)));
+        String body = text(mix(hash + 3), bodyLength.length(mix(hash + 4)));
+        return Map.of("id", id, "title", title, "body", body, "userId", userId);
+    }
+
+    /**
+     * Generates lowercase words of 2-9 letters, separated by spaces, into a reused per-thread buffer.
+     */
+    private static String text(long hash, int length) {
+        byte[] buffer = TEXT.get();
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+            TEXT.set(buffer);
+        }
+        long state = hash;
+        long bits = 0;
+        int word = 0;
+        for (int i = 0; i < length; i++) {
+            if ((i & 7) == 0) {
+                state += 0x9E3779B97F4A7C15L;
+                bits = mix(state);
+            }
+            if (word > 1 && (word == 9 || (bits & 7) == 0) && i < length - 1) {
+                buffer[i] = ' ';
+                word = 0;
+            } else {
+                buffer[i] = LETTERS[(int) ((bits & 0xFF) % LETTERS.length)];
+                word++;
+            }
+            bits >>>= 8;
+        }
+        return new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * SplitMix64 finalizer: a cheap, well-distributed 64-bit hash.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Maps a uniformly distributed 64-bit hash to a string length.
+     */
+    @FunctionalInterface
+    public interface LengthDistribution {
+
+        int length(long hash);
+
+        static LengthDistribution fixed(int length) {
+            return hash -> length;
+        }
+
+        /**
+         * @return lengths uniformly distributed in [min, max]
+         */
+        static LengthDistribution uniform(int min, int max) {
+            return hash -> min + (int) Math.floorMod(hash, (long) (max - min + 1));
+        }
+
+        /**
+         * Approximately normal lengths (sum of four uniforms), clamped to [min, max].
+         */
+        static LengthDistribution normal(int mean, int stdDev, int min, int max) {
+            return hash -> {
+                double sum = 0;
+                for (int i = 0; i < 4; i++) {
+                    sum += ((hash >>> (i * 16)) & 0xFFFF) / 65535.0;
+                }
+                // the sum of 4 U(0,1) has mean 2 and variance 1/3
+                double z = (sum - 2) * Math.sqrt(3);
+                return (int) Math.max(min, Math.min(max, Math.round(mean + z * stdDev)));
+            };
+        }
+    }
+}
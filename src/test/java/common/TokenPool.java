@@ -0,0 +1,181 @@
+package common;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+public class TokenPool<K> {
+
+    private static final Collection<TokenPool<?>> POOLS = new ConcurrentLinkedQueue<>();
+
+    private final ConcurrentHashMap<K, Entry> entries = new ConcurrentHashMap<>();
+    private final Function<K, CompletableFuture<String>> fetch;
+    private final long ttlNanos;
+    private final long refreshAheadNanos;
+    private final long retryAfterNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Creates a token cache shared by every virtual user.
+     *
+     * @param ttl          how long a token stays valid after it was obtained
+     * @param refreshAhead how long before expiry a background refresh is started;
+     *                     callers keep getting the current token while it runs
+     * @param retryAfter   how long after a failed login the credential is not tried again
+     * @param fetch        performs one login for a credential and completes with its token
+     */
+    public TokenPool(Duration ttl, Duration refreshAhead, Duration retryAfter,
+                     Function<K, CompletableFuture<String>> fetch) {
+        if (refreshAhead.compareTo(ttl) >= 0) {
+            throw new IllegalArgumentException("refreshAhead (" + refreshAhead + ") must be shorter than ttl (" + ttl + ")");
+        }
+        this.fetch = fetch;
+        this.ttlNanos = ttl.toNanos();
+        this.refreshAheadNanos = refreshAhead.toNanos();
+        this.retryAfterNanos = retryAfter.toNanos();
+        POOLS.add(this);
+    }
+
+    /**
+     * @return every pool created so far, e.g. to reset them between simulations sharing a JVM
+     */
+    public static Collection<TokenPool<?>> all() {
+        return Collections.unmodifiableCollection(POOLS);
+    }
+
+    /**
+     * Returns the token for a credential.
+     *
+     * - A valid cached token completes immediately.
+     * - If a login for this credential is already in flight, callers share it (single flight).
+     * - Once a token is within refreshAhead of expiry, one background login replaces it
+     *   while everyone keeps using the current one.
+     * - Expired tokens are fetched again on the next call.
+     * - After a failed login, callers get the failure (or, for a failed refresh, the current token)
+     *   until retryAfter has passed; only then is the credential tried again, so a down login endpoint
+     *   is not hit on every call.
+     *
+     * @param key the credential
+     * @return a future completed with the token, or exceptionally if the login failed
+     */
+    public CompletableFuture<String> token(K key) {
+        while (true) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                Entry created = new Entry();
+                if (entries.putIfAbsent(key, created) == null) {
+                    return start(key, created);
+                }
+                continue;
+            }
+            if (!entry.future.isDone()) {
+                hits.increment();
+                return entry.future;
+            }
+            long now = System.nanoTime();
+            if (entry.future.isCompletedExceptionally()) {
+                if (now - entry.retryAt < 0) {
+                    return entry.future; // backing off: fail fast instead of logging in again
+                }
+            } else if (now - entry.expiresAt < 0) {
+                hits.increment();
+                if (now - entry.refreshAt >= 0 && now - entry.retryAt >= 0) {
+                    refresh(key, entry);
+                }
+                return entry.future;
+            }
+            Entry created = new Entry();
+            if (entries.replace(key, entry, created)) {
+                return start(key, created);
+            }
+        }
+    }
+
+    /**
+     * Drops every cached token and zeroes the counters, so the next simulation run in the same JVM logs in
+     * again and only counts its own logins (see launcher.SimulationBatch). Only call it while no virtual user
+     * is running; a refresh still in flight is then dropped when it completes.
+     */
+    public void reset() {
+        entries.clear();
+        hits.reset();
+        fetches.reset();
+        refreshes.reset();
+        failures.reset();
+    }
+
+    /**
+     * @return a compact one-line summary of cache activity
+     */
+    public String stats() {
+        return "tokens=" + entries.size() + " hits=" + hits.sum() + " logins=" + fetches.sum()
+                + " refreshes=" + refreshes.sum() + " failures=" + failures.sum();
+    }
+
+    private CompletableFuture<String> start(K key, Entry entry) {
+        fetches.increment();
+        fetch(key).whenComplete((token, error) -> {
+            if (error != null) {
+                failures.increment();
+                entry.retryAt = System.nanoTime() + retryAfterNanos;
+                entry.future.completeExceptionally(error);
+            } else {
+                entry.validFrom(System.nanoTime());
+                entry.future.complete(token);
+            }
+        });
+        return entry.future;
+    }
+
+    private void refresh(K key, Entry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refreshes.increment();
+        fetch(key).whenComplete((token, error) -> {
+            if (error != null) {
+                // keep the current token until it expires; a caller after retryAfter may try again
+                failures.increment();
+                entry.retryAt = System.nanoTime() + retryAfterNanos;
+                entry.refreshing.set(false);
+                return;
+            }
+            Entry fresh = new Entry();
+            fresh.validFrom(System.nanoTime());
+            fresh.future.complete(token);
+            entries.replace(key, entry, fresh);
+        });
+    }
+
+    private CompletableFuture<String> fetch(K key) {
+        try {
+            return fetch.apply(key);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private final class Entry {
+
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long expiresAt;
+        private volatile long refreshAt;
+        private volatile long retryAt = System.nanoTime();
+
+        private void validFrom(long now) {
+            expiresAt = now + ttlNanos;
+            refreshAt = expiresAt - refreshAheadNanos;
+        }
+    }
+}
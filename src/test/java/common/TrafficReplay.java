@@ -0,0 +1,234 @@
+package common;
+
+import io.gatling.javaapi.core.ChainBuilder;
+import io.gatling.javaapi.core.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static io.gatling.javaapi.core.CoreDsl.*;
+
+public class TrafficReplay {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficReplay.class);
+
+    /**
+     * A request sent later than this after its scheduled time counts as late.
+     */
+    private static final long LATE_NANOS = Duration.ofMillis(Long.getLong("replay.lateMillis", 20)).toNanos();
+
+    /**
+     * How many entries the reader parses ahead of the virtual users.
+     */
+    private static final int READ_AHEAD = Integer.getInteger("replay.readAhead", 1024);
+
+    /**
+     * How long a free user waits before asking again when the reader has not caught up yet.
+     */
+    private static final Duration READER_WAIT = Duration.ofMillis(1);
+
+    private static final String DUE = "replay.due";
+    private static final String DONE = "replay.done";
+    private static final String ATTRIBUTES = "replay.attributes";
+
+    private final Path file;
+    private final double speedup;
+    private final Predicate<ReplayLog.Entry> accept;
+    private final Function<ReplayLog.Entry, Map<String, Object>> attributes;
+    private final Origin origin;
+
+    private final BlockingQueue<Map<String, Object>> ahead = new ArrayBlockingQueue<>(READ_AHEAD);
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean read;
+    private volatile RuntimeException failure;
+
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder late = new LongAdder();
+    private final LongAccumulator maxLagNanos = new LongAccumulator(Math::max, 0);
+
+    private TrafficReplay(Path file, double speedup, Predicate<ReplayLog.Entry> accept,
+                          Function<ReplayLog.Entry, Map<String, Object>> attributes, Origin origin) {
+        this.file = file;
+        this.speedup = speedup;
+        this.accept = accept;
+        this.attributes = attributes;
+        this.origin = origin;
+    }
+
+    /**
+     * Replays the entries of a recorded log (see ReplayLog) at their original pace, divided by speedup.
+     *
+     * Entry N is sent (t(N) - t(first)) / speedup after the replay started, where t is the recorded
+     * timestamp and "first" is the first entry of the log, whether accepted or not. A day of traffic
+     * replays in an hour with speedup 24. Other replays of the same log, e.g. one per target API, are
+     * created with alongside(...) so that they share the start of this one and stay in step.
+     *
+     * The log is streamed by a reader thread of its own, which parses up to -Dreplay.readAhead entries
+     * (default 1024) ahead of the virtual users: only those and the entries users are waiting to send
+     * are in memory, and no user reads or parses the file on its event loop.
+     * In a multi-injector run, each injector replays every Injectors.count()-th entry.
+     *
+     * @param file       the log
+     * @param speedup    1 for the recorded pace, greater to compress time
+     * @param accept     which entries this replay sends
+     * @param attributes the session attributes an entry needs, e.g. "id" and "title" for JsonPlaceholderApi.updatePost
+     * @return a replay whose loop(...) feeds entries to virtual users
+     */
+    public static TrafficReplay of(Path file, double speedup, Predicate<ReplayLog.Entry> accept,
+                                   Function<ReplayLog.Entry, Map<String, Object>> attributes) {
+        if (speedup <= 0) {
+            throw new IllegalArgumentException("speedup must be positive: " + speedup);
+        }
+        return new TrafficReplay(file, speedup, accept, attributes, new Origin());
+    }
+
+    /**
+     * Replays other entries of the same log, at the same pace and in step with this replay: whichever of the two
+     * starts first starts the clock of both, so an entry is due at the same time in either.
+     *
+     * @param accept     the entries the other replay sends
+     * @param attributes the session attributes of one of its entries
+     */
+    public TrafficReplay alongside(Predicate<ReplayLog.Entry> accept, Function<ReplayLog.Entry, Map<String, Object>> attributes) {
+        return new TrafficReplay(file, speedup, accept, attributes, origin);
+    }
+
+    /**
+     * Returns the chain of one replaying virtual user: until the log is exhausted, take the next entry,
+     * wait for its scheduled time, then run dispatch with the entry's attributes in the session.
+     *
+     * Entries are handed out in log order to whichever user is free, so inject enough users to cover the
+     * recorded concurrency (e.g. atOnceUsers(200)); entries that find no free user are sent late, and
+     * counted in summary(). A free user that finds no entry read yet waits READER_WAIT and asks again.
+     */
+    public ChainBuilder loop(ChainBuilder dispatch) {
+        return asLongAs(session -> !session.contains(DONE)).on(
+                exec(this::take)
+                        .doIf(session -> !session.contains(DUE) && !session.contains(DONE)).then(
+                                pause(READER_WAIT)
+                        )
+                        .doIf(session -> session.contains(DUE)).then(
+                                pause(session -> Duration.ofNanos(Math.max(0, session.getLong(DUE) - System.nanoTime())))
+                                        .exec(session -> {
+                                            long due = session.getLong(DUE);
+                                            recordLag(due);
+                                            return SendSchedule.dueAt(session, System.currentTimeMillis() - (System.nanoTime() - due) / 1_000_000);
+                                        })
+                                        .exec(dispatch)
+                        )
+        );
+    }
+
+    /**
+     * Replaces the previous entry's attributes with the next entry read ahead, if there is one yet,
+     * or marks the user done once the log is exhausted (and failed if it could not be read).
+     */
+    private Session take(Session session) {
+        if (session.contains(ATTRIBUTES)) {
+            session = session.removeAll(session.<List<String>>get(ATTRIBUTES).toArray(String[]::new));
+        }
+        if (started.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("replay-" + file.getFileName()).start(this::read);
+        }
+        Map<String, Object> next = ahead.poll();
+        if (next != null) {
+            return session.setAll(next).set(ATTRIBUTES, List.copyOf(next.keySet()));
+        }
+        if (!exhausted()) {
+            return session;
+        }
+        return failure == null ? session.set(DONE, true) : session.set(DONE, true).markAsFailed();
+    }
+
+    /**
+     * Runs on the reader thread: parses the log and queues the accepted entries, waiting whenever
+     * READ_AHEAD of them are queued.
+     */
+    private void read() {
+        try (ReplayLog log = ReplayLog.open(file)) {
+            ReplayLog.Entry entry;
+            while ((entry = log.next()) != null) {
+                if (entry.sequence() == 0) {
+                    origin.startIfFirst(entry.timestampMillis());
+                }
+                if (entry.sequence() % Injectors.count() == Injectors.index() && accept.test(entry)) {
+                    Map<String, Object> next = new HashMap<>(attributes.apply(entry));
+                    next.put(DUE, origin.due(entry.timestampMillis(), speedup));
+                    ahead.put(next);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Cannot read replay log {}: the replay ends here", file, e);
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            read = true;
+        }
+    }
+
+    /**
+     * @return true once every entry of the log has been handed out to a user
+     */
+    public boolean exhausted() {
+        return read && ahead.isEmpty();
+    }
+
+    private void recordLag(long due) {
+        long lag = System.nanoTime() - due;
+        dispatched.increment();
+        if (lag > LATE_NANOS) {
+            late.increment();
+            maxLagNanos.accumulate(lag);
+        }
+    }
+
+    /**
+     * @return how many entries were sent, and how many of them late
+     */
+    public String summary() {
+        return String.format("replayed %d entries of %s at x%s, %d late (> %d ms, max %d ms)",
+                dispatched.sum(), file.getFileName(), speedup, late.sum(),
+                Duration.ofNanos(LATE_NANOS).toMillis(), Duration.ofNanos(maxLagNanos.get()).toMillis());
+    }
+
+    /**
+     * When a log was recorded and replayed from, shared by the replays of the same log.
+     */
+    private static final class Origin {
+
+        private long recordedMillis;
+        private long replayNanos;
+        private boolean started;
+
+        /**
+         * Starts the replay clock with the log's first entry, unless another replay of the log already has.
+         */
+        private synchronized void startIfFirst(long firstTimestampMillis) {
+            if (!started) {
+                recordedMillis = firstTimestampMillis;
+                replayNanos = System.nanoTime();
+                started = true;
+            }
+        }
+
+        /**
+         * @return the System.nanoTime() at which an entry recorded at the given time is due
+         */
+        private synchronized long due(long timestampMillis, double speedup) {
+            return replayNanos + (long) ((timestampMillis - recordedMillis) * 1_000_000 / speedup);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.gatling.javaapi.core.ChainBuilder;
+import io.gatling.javaapi.core.Choice;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static io.gatling.javaapi.core.CoreDsl.*;
+
+public class WorkloadModel {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Outcome of a transition that ends the virtual user's session.
+     */
+    private static final int EXIT = -1;
+
+    private static final String STATE = "workload.state";
+    private static final String STEPS = "workload.steps";
+
+    private final String[] names;
+    private final ChainBuilder[] actions;
+    private final ThinkTime[] thinkTimes;
+    private final Transitions start;
+    private final Transitions[] transitions;
+    private final int maxSteps;
+
+    private WorkloadModel(String[] names, ChainBuilder[] actions, ThinkTime[] thinkTimes,
+                          Transitions start, Transitions[] transitions, int maxSteps) {
+        this.names = names;
+        this.actions = actions;
+        this.thinkTimes = thinkTimes;
+        this.start = start;
+        this.transitions = transitions;
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Loads a workload model from the 'data' directory.
+     *
+     * A model is a Markov chain whose states are the public static ChainBuilder fields of an API class:
+     * {
+     *   "api": "api.JsonPlaceholderApi",
+     *   "maxSteps": 50,
+     *   "start": { "getPosts": 0.6, "getPostById": 0.4 },
+     *   "states": {
+     *     "getPosts": {
+     *       "thinkTime": { "type": "exponential", "meanMillis": 1000 },
+     *       "next": { "getPostById": 0.6, "createPost": 0.25, "exit": 0.15 }
+     *     },
+     *     ...
+     *   }
+     * }
+     *
+     * - start: where sessions begin; next: where they go after a state; "exit" ends the session
+     * - weights are relative and need not add up to 1
+     * - thinkTime (pause after the state's requests, default none):
+     *   constant {millis}, uniform {minMillis, maxMillis}, exponential {meanMillis},
+     *   lognormal {medianMillis, sigma}; any of them may add maxMillis as a cap
+     * - maxSteps (default 100) ends sessions that never reach "exit"
+     *
+     * Every distribution is compiled into an alias table, so each transition is sampled in O(1)
+     * whatever the number of states. Retune a workload by editing the file; no recompilation needed.
+     *
+     * @param fileName The name of the model file (relative to the 'data' folder)
+     * @return the compiled model
+     * @throws IllegalArgumentException if the model refers to unknown states or chains
+     */
+    public static WorkloadModel load(String fileName) {
+        Path file = DataFeeder.resolveDataFile(fileName);
+        JsonNode model;
+        try {
+            model = MAPPER.readTree(file.toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read workload model " + file, e);
+        }
+        Class<?> api;
+        try {
+            api = Class.forName(model.path("api").asText("api.JsonPlaceholderApi"));
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown api class in workload model " + file, e);
+        }
+
+        JsonNode states = model.path("states");
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, JsonNode> state : states.properties()) {
+            names.add(state.getKey());
+        }
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("Workload model " + file + " has no states");
+        }
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            indexes.put(names.get(i), i);
+        }
+
+        ChainBuilder[] actions = new ChainBuilder[names.size()];
+        ThinkTime[] thinkTimes = new ThinkTime[names.size()];
+        Transitions[] transitions = new Transitions[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            JsonNode state = states.get(name);
+            try {
+                actions[i] = (ChainBuilder) api.getField(name).get(null);
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                throw new IllegalArgumentException("State " + name + " is not a public static ChainBuilder of " + api.getName(), e);
+            }
+            thinkTimes[i] = ThinkTime.of(state.path("thinkTime"), name);
+            transitions[i] = Transitions.of(state.path("next"), indexes, name);
+        }
+        return new WorkloadModel(names.toArray(String[]::new), actions, thinkTimes,
+                Transitions.of(model.path("start"), indexes, "start"), transitions, model.path("maxSteps").asInt(100));
+    }
+
+    /**
+     * Returns the chain of one session through the model: starting from a sampled state,
+     * run the state's chain, pause for its think time and move to a sampled next state,
+     * until "exit" or maxSteps.
+     *
+     * @param everyStep run before each state's chain, e.g. a feed(...) for fresh data on every step
+     */
+    public ChainBuilder chain(ChainBuilder everyStep) {
+        List<Choice.WithKey> cases = new ArrayList<>();
+        for (int i = 0; i < actions.length; i++) {
+            cases.add(onCase(i).then(actions[i]));
+        }
+        return exec(session -> session.set(STATE, start.sample()).set(STEPS, 0))
+                .asLongAs(session -> session.getInt(STATE) != EXIT && session.getInt(STEPS) < maxSteps).on(
+                        exec(everyStep)
+                                .doSwitch(session -> session.getInt(STATE)).on(cases)
+                                .exec(SendSchedule.pauseFor(session -> thinkTimes[session.getInt(STATE)].sample()))
+                                .exec(session -> session
+                                        .set(STATE, transitions[session.getInt(STATE)].sample())
+                                        .set(STEPS, session.getInt(STEPS) + 1))
+                );
+    }
+
+    /**
+     * @return the model's states, in file order
+     */
+    public List<String> states() {
+        return List.of(names);
+    }
+
+    /**
+     * The weighted outcomes of one state (state indexes, or EXIT), sampled with Vose's alias method:
+     * one uniform column pick and one biased coin flip per sample.
+     */
+    static final class Transitions {
+
+        private final int[] outcomes;
+        private final double[] probability;
+        private final int[] alias;
+
+        Transitions(int[] outcomes, double[] weights) {
+            int n = weights.length;
+            this.outcomes = outcomes;
+            this.probability = new double[n];
+            this.alias = new int[n];
+            double total = 0;
+            for (double weight : weights) {
+                if (weight < 0 || Double.isNaN(weight)) {
+                    throw new IllegalArgumentException("Transition weights must be positive: " + weight);
+                }
+                total += weight;
+            }
+            if (total <= 0) {
+                throw new IllegalArgumentException("Transition weights add up to 0");
+            }
+            double[] scaled = new double[n];
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int smallCount = 0;
+            int largeCount = 0;
+            for (int i = 0; i < n; i++) {
+                scaled[i] = weights[i] * n / total;
+                if (scaled[i] < 1) {
+                    small[smallCount++] = i;
+                } else {
+                    large[largeCount++] = i;
+                }
+            }
+            while (smallCount > 0 && largeCount > 0) {
+                int less = small[--smallCount];
+                int more = large[--largeCount];
+                probability[less] = scaled[less];
+                alias[less] = more;
+                scaled[more] = scaled[more] + scaled[less] - 1;
+                if (scaled[more] < 1) {
+                    small[smallCount++] = more;
+                } else {
+                    large[largeCount++] = more;
+                }
+            }
+            // what is left is 1 up to rounding errors
+            while (largeCount > 0) {
+                probability[large[--largeCount]] = 1;
+            }
+            while (smallCount > 0) {
+                probability[small[--smallCount]] = 1;
+            }
+        }
+
+        static Transitions of(JsonNode weights, Map<String, Integer> indexes, String from) {
+            List<Map.Entry<String, JsonNode>> entries = new ArrayList<>(weights.properties());
+            if (entries.isEmpty()) {
+                throw new IllegalArgumentException("No transitions from " + from);
+            }
+            int[] outcomes = new int[entries.size()];
+            double[] values = new double[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                String to = entries.get(i).getKey();
+                Integer index = "exit".equals(to) ? Integer.valueOf(EXIT) : indexes.get(to);
+                if (index == null) {
+                    throw new IllegalArgumentException("Transition from " + from + " to unknown state " + to);
+                }
+                outcomes[i] = index;
+                values[i] = entries.get(i).getValue().asDouble();
+            }
+            return new Transitions(outcomes, values);
+        }
+
+        int sample() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int column = random.nextInt(outcomes.length);
+            return outcomes[random.nextDouble() < probability[column] ? column : alias[column]];
+        }
+    }
+
+    /**
+     * Pause after a state, sampled from a distribution.
+     */
+    @FunctionalInterface
+    interface ThinkTime {
+
+        Duration sample();
+
+        static ThinkTime of(JsonNode spec, String state) {
+            if (spec.isMissingNode() || spec.isNull()) {
+                return () -> Duration.ZERO;
+            }
+            double cap = spec.path("maxMillis").asDouble(Double.MAX_VALUE);
+            String type = spec.path("type").asText("constant");
+            return switch (type) {
+                case "constant" -> {
+                    Duration constant = Duration.ofMillis(spec.path("millis").asLong());
+                    yield () -> constant;
+                }
+                case "uniform" -> {
+                    long min = spec.path("minMillis").asLong();
+                    long max = spec.path("maxMillis").asLong();
+                    if (max < min) {
+                        throw new IllegalArgumentException("Think time of " + state + ": maxMillis < minMillis");
+                    }
+                    yield () -> Duration.ofMillis(ThreadLocalRandom.current().nextLong(min, max + 1));
+                }
+                case "exponential" -> {
+                    double mean = spec.path("meanMillis").asDouble();
+                    yield () -> millis(-mean * Math.log(1 - ThreadLocalRandom.current().nextDouble()), cap);
+                }
+                case "lognormal" -> {
+                    double mu = Math.log(spec.path("medianMillis").asDouble());
+                    double sigma = spec.path("sigma").asDouble(0.5);
+                    yield () -> millis(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()), cap);
+                }
+                default -> throw new IllegalArgumentException("Think time of " + state + ": unknown type " + type);
+            };
+        }
+
+        private static Duration millis(double value, double cap) {
+            return Duration.ofNanos((long) (Math.min(value, cap) * 1_000_000));
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package launcher;
+
+import metrics.LatencyReport;
+import metrics.RequestMetrics;
+import server.LocalStandInServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds the highest arrival rate an existing scenario sustains within a latency and error SLO.
+ *
+ * Gatling's injection profile is fixed once a run starts, so the search runs one short Gatling
+ * process per step (simulations.CapacityStepSimulation) at a constant arrival rate, and decides
+ * the next rate from that step's p99 and error rate, measured after a warm-up:
+ * 1. step up: multiply the rate by --factor until a step breaks the SLO (or --max is reached)
+ * 2. binary search between the last passing and the first failing rate, until they are
+ *    within --resolution of each other
+ *
+ * The highest passing step is reported as the maximum sustainable throughput, with every step's
+ * latency table in capacity-summary.txt.
+ *
+ * Usage:
+ *   mvn -Pcapacity test-compile exec:exec -Dcapacity.scenario=scenarios.ReqResScenarios.loginAndGetUsers
+ * or, with the test classpath at hand:
+ *   java -cp ... launcher.CapacitySearch --scenario scenarios.JsonPlaceholderScenarios.fullCrudFlow --p99 500 [--local]
+ *
+ * Options:
+ * - --scenario   : static ScenarioBuilder field to drive (default scenarios.JsonPlaceholderScenarios.fullCrudFlow)
+ * - --p99        : p99 latency SLO in ms, over all requests (default 500)
+ * - --errors     : failed requests SLO in percent (default 1.0)
+ * - --start      : first arrival rate in users per second (default 1)
+ * - --max        : highest arrival rate to try (default 1000)
+ * - --factor     : step-up multiplier (default 2)
+ * - --resolution : stop the binary search when the bounds are this close, relative (default 0.05)
+ * - --warmup     : seconds of each step excluded from its measurement (default 10)
+ * - --duration   : measured seconds per step (default 30)
+ * - --results    : output folder (default: target/capacity/ScenarioField-timestamp)
+ * - --local      : start the stand-in server here and search against it (a self-test of the search)
+ * - other JVM options (-D..., -X..., --add-opens ...) are passed on to every step JVM
+ */
+public class CapacitySearch {
+
+    private static final String STEP_SIMULATION = "simulations.CapacityStepSimulation";
+
+    public static void main(String[] args) throws Exception {
+        String scenario = "scenarios.JsonPlaceholderScenarios.fullCrudFlow";
+        long p99Slo = 500;
+        double errorSlo = 1.0;
+        double start = 1;
+        double max = 1000;
+        double factor = 2;
+        double resolution = 0.05;
+        long warmup = 10;
+        long duration = 30;
+        Path results = null;
+        boolean local = false;
+        List<String> jvmArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--scenario" -> scenario = args[++i];
+                case "--p99" -> p99Slo = Long.parseLong(args[++i]);
+                case "--errors" -> errorSlo = Double.parseDouble(args[++i]);
+                case "--start" -> start = Double.parseDouble(args[++i]);
+                case "--max" -> max = Double.parseDouble(args[++i]);
+                case "--factor" -> factor = Double.parseDouble(args[++i]);
+                case "--resolution" -> resolution = Double.parseDouble(args[++i]);
+                case "--warmup" -> warmup = Long.parseLong(args[++i]);
+                case "--duration" -> duration = Long.parseLong(args[++i]);
+                case "--results" -> results = Path.of(args[++i]);
+                case "--local" -> local = true;
+                default -> {
+                    if (!args[i].isBlank()) {
+                        i = GatlingJvm.option(args, i, jvmArgs);
+                    }
+                }
+            }
+        }
+        if (factor <= 1 || start <= 0 || max < start) {
+            throw new IllegalArgumentException("Expected 0 < --start <= --max and --factor > 1");
+        }
+        if (results == null) {
+            results = Path.of("target", "capacity",
+                    scenario.substring(scenario.lastIndexOf('.') + 1) + "-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        }
+        Files.createDirectories(results);
+
+        LocalStandInServer standIn = null;
+        if (local) {
+            standIn = new LocalStandInServer(0);
+            standIn.start();
+            jvmArgs.add("-Dtarget=local");
+            jvmArgs.add("-Dlocal.baseUrl=" + standIn.baseUrl());
+            System.out.println("Stand-in server listening on " + standIn.baseUrl());
+        }
+
+        Search search = new Search(scenario, p99Slo, errorSlo, warmup, duration, results, jvmArgs);
+        try {
+            // 1. step up until the SLO breaks
+            Step passed = null;
+            Step failed = null;
+            double rate = start;
+            while (true) {
+                Step step = search.run(rate);
+                if (!step.passed()) {
+                    failed = step;
+                    break;
+                }
+                passed = step;
+                if (rate >= max) {
+                    break;
+                }
+                rate = Math.min(max, rate * factor);
+            }
+
+            // 2. binary search between the last passing and the first failing rate;
+            //    none if the start rate already failed, as there is no lower bound to search from
+            if (failed != null && passed != null) {
+                double low = passed.rate();
+                double high = failed.rate();
+                while (high - low > resolution * high) {
+                    Step step = search.run((low + high) / 2);
+                    if (step.passed()) {
+                        passed = step;
+                        low = step.rate();
+                    } else {
+                        high = step.rate();
+                    }
+                }
+            }
+
+            String report = search.report(passed, failed == null);
+            Files.writeString(results.resolve("capacity-summary.txt"), report);
+            System.out.println(report);
+        } finally {
+            if (standIn != null) {
+                standIn.stop();
+            }
+        }
+    }
+
+    private record Step(double rate, Map<String, RequestMetrics.Snapshot> window, long p99, double errorPercent,
+                        double throughput, int exitCode, boolean passed) {
+    }
+
+    private static final class Search {
+
+        private final String scenario;
+        private final long p99Slo;
+        private final double errorSlo;
+        private final long warmup;
+        private final long duration;
+        private final Path results;
+        private final List<String> jvmArgs;
+        private final List<Step> steps = new ArrayList<>();
+
+        private Search(String scenario, long p99Slo, double errorSlo, long warmup, long duration, Path results, List<String> jvmArgs) {
+            this.scenario = scenario;
+            this.p99Slo = p99Slo;
+            this.errorSlo = errorSlo;
+            this.warmup = warmup;
+            this.duration = duration;
+            this.results = results;
+            this.jvmArgs = jvmArgs;
+        }
+
+        private Step run(double rate) throws IOException, InterruptedException {
+            String name = String.format("step-%02d-%.2f", steps.size() + 1, rate);
+            Path log = results.resolve(name + ".hlog").toAbsolutePath();
+            System.out.printf("Step %d: %.2f users/s for %d s (+%d s warm-up)%n", steps.size() + 1, rate, duration, warmup);
+
+            List<String> command = GatlingJvm.command();
+            command.addAll(jvmArgs);
+            command.add("-Dcapacity.scenario=" + scenario);
+            command.add("-Dcapacity.rate=" + rate);
+            command.add("-Dcapacity.warmupSeconds=" + warmup);
+            command.add("-Dcapacity.stepSeconds=" + duration);
+            command.add("-Dcapacity.histogramLog=" + log);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add("io.gatling.app.Gatling");
+            command.add("-s");
+            command.add(STEP_SIMULATION);
+            command.add("-rf");
+            command.add(results.resolve(name).toAbsolutePath().toString());
+            command.add("-nr");
+            int exitCode = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(results.resolve(name + ".log").toFile())
+                    .start()
+                    .waitFor();
+
+            Map<String, RequestMetrics.Snapshot> window = new TreeMap<>();
+            RequestMetrics.Period period = Files.exists(log) ? RequestMetrics.readLog(log, window) : null;
+            RequestMetrics.Snapshot total = LatencyReport.total(window);
+            long p99 = total.count() == 0 ? 0 : total.all().getValueAtPercentile(99);
+            double errorPercent = total.count() == 0 ? 0 : 100.0 * total.errors() / total.count();
+            boolean passed = exitCode == 0 && total.count() > 0 && p99 <= p99Slo && errorPercent <= errorSlo;
+            // the requests completed within the measurement window, over that window's actual length
+            double throughput = period == null ? 0 : total.count() / period.seconds();
+            Step step = new Step(rate, window, p99, errorPercent, throughput, exitCode, passed);
+            steps.add(step);
+            System.out.printf("  %s: %.1f req/s, p99 %d ms, %.2f%% failed%s%n", passed ? "PASS" : "FAIL",
+                    step.throughput(), p99, errorPercent, exitCode == 0 ? "" : " (run failed, exit " + exitCode + ", see " + name + ".log)");
+            return step;
+        }
+
+        private String report(Step best, boolean reachedMax) {
+            StringBuilder report = new StringBuilder()
+                    .append("Capacity search for ").append(scenario)
+                    .append(" (SLO: p99 <= ").append(p99Slo).append(" ms, failed <= ").append(errorSlo).append("%)\n\n");
+            for (int i = 0; i < steps.size(); i++) {
+                Step step = steps.get(i);
+                report.append(String.format("Step %d: %.2f users/s -> %.1f req/s, p99 %d ms, %.2f%% failed: %s%n",
+                        i + 1, step.rate(), step.throughput(), step.p99(), step.errorPercent(), step.passed() ? "PASS" : "FAIL"));
+                if (!step.window().isEmpty()) {
+                    report.append(LatencyReport.table(step.window()));
+                }
+                report.append('\n');
+            }
+            if (best == null) {
+                report.append("No step met the SLO; lower --start.\n");
+            } else {
+                report.append(String.format("Maximum sustainable throughput: %.2f users/s (%.1f req/s, p99 %d ms)%s%n",
+                        best.rate(), best.throughput(), best.p99(), reachedMax ? ", the --max limit: the knee is higher" : ""));
+            }
+            return report.toString();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Runs simulations from the packaged test classes without Maven, in one JVM started from a class-data-sharing archive.
+ *
+ * Package once (and again after changing the simulations):
+ *   mvn -Pfast package
+ * which puts the compiled simulations in target/fast/playground-*-tests.jar and their dependencies in target/fast/lib.
+ * Then, as often as needed:
+ *   java -cp target/fast/playground-1.0-SNAPSHOT-tests.jar launcher.FastLauncher simulations.JsonPlaceholderSimulation simulations.ReqResSimulation
+ *
+ * The simulations run back-to-back in a single JVM (see SimulationBatch), started with
+ * -XX:SharedArchiveFile=target/fast/playground.jsa -XX:+AutoCreateSharedArchive: the first launch writes the
+ * archive of every class it loaded when it exits (the JDK, Gatling, Scala, Netty and our api, scenarios and
+ * protocol classes), the next ones map it instead of loading and verifying those classes again. The JVM
+ * recreates the archive by itself when the jars have changed.
+ *
+ * Options:
+ * - --archive : the archive file (default target/fast/playground.jsa)
+ * - --no-archive : run without class-data sharing, to compare startup times
+ * - --results, --reports : see SimulationBatch
+ * - other JVM options (-D..., -X..., --add-opens ...) are passed on to the simulation JVM, e.g. -Dtarget=local -Dphase.warmUpSeconds=0
+ *
+ * This JVM's start time is passed on as -Dfast.launchedAt, so the first simulation's startup is timed from the
+ * launch command, the fork of the simulation JVM included.
+ */
+public class FastLauncher {
+
+    private static final Path PACKAGE = Path.of("target", "fast");
+
+    public static void main(String[] args) throws Exception {
+        Path archive = PACKAGE.resolve("playground.jsa");
+        boolean sharing = true;
+        List<String> jvmArgs = new ArrayList<>();
+        List<String> batchArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--archive" -> archive = Path.of(args[++i]);
+                case "--no-archive" -> sharing = false;
+                case "--results" -> {
+                    batchArgs.add(args[i]);
+                    batchArgs.add(args[++i]);
+                }
+                case "--reports" -> batchArgs.add(args[i]);
+                default -> {
+                    if (args[i].startsWith("-")) {
+                        i = GatlingJvm.option(args, i, jvmArgs);
+                    } else if (!args[i].isBlank()) {
+                        batchArgs.add(args[i]);
+                    }
+                }
+            }
+        }
+
+        Path testsJar = testsJar();
+        warnIfStale(testsJar);
+
+        List<String> command = GatlingJvm.command();
+        FileTime archivedAt = Files.exists(archive) ? Files.getLastModifiedTime(archive) : null;
+        if (sharing) {
+            // class-data sharing only covers classes loaded from jars, hence the packaged classpath
+            command.add("-XX:SharedArchiveFile=" + archive);
+            command.add("-XX:+AutoCreateSharedArchive");
+            command.add("-Dfast.archive=" + (archivedAt == null ? "creating" : "reused"));
+        } else {
+            command.add("-Xshare:off");
+            command.add("-Dfast.archive=off");
+        }
+        command.add("-Dfast.launchedAt=" + ManagementFactory.getRuntimeMXBean().getStartTime());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(classpath(testsJar));
+        // by name: this JVM has no Gatling on its classpath
+        command.add("launcher.SimulationBatch");
+        command.addAll(batchArgs);
+
+        int exit = new ProcessBuilder(command).inheritIO().start().waitFor();
+
+        if (sharing && Files.exists(archive)) {
+            FileTime now = Files.getLastModifiedTime(archive);
+            if (archivedAt == null) {
+                System.out.println("Class-data-sharing archive created: " + archive + "; the next launches start from it");
+            } else if (!now.equals(archivedAt)) {
+                System.out.println("Class-data-sharing archive did not match the jars and was recreated: " + archive);
+            }
+        }
+        System.exit(exit);
+    }
+
+    private static Path testsJar() throws IOException {
+        if (!Files.isDirectory(PACKAGE.resolve("lib"))) {
+            throw new IllegalStateException("No packaged simulations in " + PACKAGE + ", run: mvn -Pfast package");
+        }
+        try (Stream<Path> files = Files.list(PACKAGE)) {
+            return files.filter(file -> file.getFileName().toString().endsWith("-tests.jar")).findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No packaged simulations in " + PACKAGE + ", run: mvn -Pfast package"));
+        }
+    }
+
+    /**
+     * @return the packaged tests jar and every dependency jar, in a stable order, as the archive requires
+     */
+    private static String classpath(Path testsJar) throws IOException {
+        List<String> jars = new ArrayList<>();
+        jars.add(testsJar.toString());
+        try (Stream<Path> files = Files.list(PACKAGE.resolve("lib"))) {
+            files.filter(file -> file.getFileName().toString().endsWith(".jar")).sorted().forEach(file -> jars.add(file.toString()));
+        }
+        return String.join(File.pathSeparator, jars);
+    }
+
+    /**
+     * Warns if a source file is newer than the packaged simulations, which would then not be the ones edited.
+     */
+    private static void warnIfStale(Path testsJar) throws IOException {
+        Path sources = Path.of("src", "test");
+        if (!Files.isDirectory(sources)) {
+            return;
+        }
+        FileTime packagedAt = Files.getLastModifiedTime(testsJar);
+        try (Stream<Path> files = Files.walk(sources)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file) && Files.getLastModifiedTime(file).compareTo(packagedAt) > 0) {
+                    System.err.println("Warning: " + file + " changed since packaging, run mvn -Pfast package to pick it up");
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package launcher;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The command line of a JVM forked to run Gatling.
+ */
+final class GatlingJvm {
+
+    /**
+     * Gatling reads String internals by reflection (StringInternals) and fails at startup on JDK 17+ without it;
+     * the gatling-maven-plugin adds it to the JVMs it forks, so the launchers have to as well.
+     */
+    private static final String OPEN_JAVA_LANG = "--add-opens=java.base/java.lang=ALL-UNNAMED";
+
+    /**
+     * java's options that may take their value as the next argument rather than after '='.
+     */
+    private static final Set<String> SEPARATE_VALUE = Set.of("--add-opens", "--add-exports", "--add-reads", "--add-modules",
+            "--limit-modules", "--patch-module", "--enable-native-access");
+
+    private GatlingJvm() {
+    }
+
+    /**
+     * @return a mutable command starting with this JVM's java executable and the options Gatling needs,
+     *         to which the caller adds its own options, the classpath and the main class
+     */
+    static List<String> command() {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add(OPEN_JAVA_LANG);
+        return command;
+    }
+
+    /**
+     * Passes args[i] on to the forked JVMs unchanged if it is a JVM option (-D..., -X..., --add-opens ...),
+     * with its value if java takes it as the next argument.
+     *
+     * @return the index of the last argument used
+     * @throws IllegalArgumentException if args[i] is not an option
+     */
+    static int option(String[] args, int i, List<String> jvmArgs) {
+        if (!args[i].startsWith("-")) {
+            throw new IllegalArgumentException("Unknown argument: " + args[i]);
+        }
+        jvmArgs.add(args[i]);
+        if (SEPARATE_VALUE.contains(args[i]) && i + 1 < args.length) {
+            jvmArgs.add(args[++i]);
+        }
+        return i;
+    }
+}
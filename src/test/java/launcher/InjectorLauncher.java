@@ -0,0 +1,281 @@
+package launcher;
+
+import metrics.Baseline;
+import metrics.LatencyReport;
+import metrics.Phases;
+import metrics.RequestMetrics;
+import metrics.Slo;
+import server.LocalStandInServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs one simulation class in several injector JVMs on this host and merges their results.
+ *
+ * Each injector is a separate Gatling process that:
+ * - gets -Dinjector.index / -Dinjector.count, so Injectors.users(...) gives it its share of
+ *   every injection profile and partitioned feeders give it its own slice of the data
+ * - waits at a shared start barrier in before(), so all injectors start injecting together
+ * - writes its per-request latency histograms to an HdrHistogram log in after()
+ *
+ * Once all injectors have exited, the logs are merged into one latency table and one verdict: the simulation's
+ * objectives (its public static List<Slo> SLOS, if any) are checked on the merged histograms of the measured
+ * requests (without the warm-up, see Phases.measured), since each injector only sees its own share of the
+ * traffic and skips them (see Slo.assertions()). Throughput objectives are checked on the steady phase, which
+ * each injector logs with its start and end (see Phases), or, without phases, on the period the injectors' logs
+ * cover; never on the launcher's own clock, which includes the JVMs' start and shutdown. The baseline, too, is checked and updated on those. The run fails if an
+ * objective is missed, the baseline regressed, or an injector failed (e.g. a Gatling assertion of its own).
+ *
+ * Usage:
+ *   mvn -Pinjectors test-compile exec:exec -Dgatling.simulationClass=simulations.JsonPlaceholderSimulation -Dinjectors=3
+ * or, with the test classpath at hand:
+ *   java -cp ... launcher.InjectorLauncher --simulation simulations.JsonPlaceholderSimulation --injectors 3 [--local] [-Dkey=value ...]
+ *
+ * Options:
+ * - --simulation : the simulation class to run (required)
+ * - --injectors  : number of injector JVMs (default: half the available processors, at least 2)
+ * - --results    : output folder (default: target/injectors/SimulationName-timestamp)
+ * - --local      : start one stand-in server here and point every injector at it
+ * - other JVM options (-D..., -X..., --add-opens ...) are passed on to every injector JVM, except -Dbaseline.* (see metrics.Baseline),
+ *   which apply to the merged results
+ */
+public class InjectorLauncher {
+
+    /**
+     * Gatling's exit status when the run completed but assertions failed.
+     */
+    private static final int ASSERTIONS_FAILED = 2;
+
+    public static void main(String[] args) throws Exception {
+        String simulation = null;
+        int injectors = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        Path results = null;
+        boolean local = false;
+        List<String> jvmArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--simulation" -> simulation = args[++i];
+                case "--injectors" -> injectors = Integer.parseInt(args[++i]);
+                case "--results" -> results = Path.of(args[++i]);
+                case "--local" -> local = true;
+                default -> {
+                    if (args[i].startsWith("-Dbaseline.")) {
+                        // the baseline is checked here, on the merged results
+                        String[] property = args[i].substring(2).split("=", 2);
+                        System.setProperty(property[0], property.length > 1 ? property[1] : "");
+                    } else if (!args[i].isBlank()) {
+                        i = GatlingJvm.option(args, i, jvmArgs);
+                    }
+                }
+            }
+        }
+        if (simulation == null) {
+            throw new IllegalArgumentException("--simulation is required");
+        }
+        if (results == null) {
+            String simpleName = simulation.substring(simulation.lastIndexOf('.') + 1);
+            results = Path.of("target", "injectors",
+                    simpleName + "-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        }
+        Files.createDirectories(results);
+
+        LocalStandInServer standIn = null;
+        if (local) {
+            standIn = new LocalStandInServer(0);
+            standIn.start();
+            jvmArgs.add("-Dtarget=local");
+            jvmArgs.add("-Dlocal.baseUrl=" + standIn.baseUrl());
+            System.out.println("Stand-in server listening on " + standIn.baseUrl());
+        }
+
+        int exitCode;
+        try (ServerSocket barrier = new ServerSocket(0, injectors, InetAddress.getLoopbackAddress())) {
+            List<Process> processes = new ArrayList<>();
+            for (int index = 0; index < injectors; index++) {
+                processes.add(fork(simulation, index, injectors, barrier.getLocalPort(), results, jvmArgs));
+            }
+            System.out.println("Started " + injectors + " injectors for " + simulation + ", results in " + results);
+
+            releaseWhenReady(barrier, processes);
+            long startedAt = System.currentTimeMillis();
+            System.out.println("All injectors ready, injection started");
+
+            int worstExit = 0;
+            List<String> verdicts = new ArrayList<>();
+            for (int index = 0; index < injectors; index++) {
+                int exit = processes.get(index).waitFor();
+                worstExit = Math.max(worstExit, exit);
+                verdicts.add("injector-" + index + ": " + (exit == 0 ? "completed"
+                        : exit == ASSERTIONS_FAILED ? "assertions FAILED" : "run FAILED (exit " + exit + ", see injector-" + index + ".log)"));
+            }
+            long endedAt = System.currentTimeMillis();
+
+            Map<String, RequestMetrics.Snapshot> merged = new TreeMap<>();
+            RequestMetrics.Period run = merge(results, injectors, ".hlog", merged, true);
+            if (run == null) {
+                run = new RequestMetrics.Period(startedAt, endedAt);
+            }
+            RequestMetrics.writeLog(results.resolve("merged.hlog"), merged, run.startedAt(), run.endedAt());
+            Map<String, RequestMetrics.Snapshot> steady = new TreeMap<>();
+            RequestMetrics.Period steadyPeriod = merge(results, injectors, ".steady.hlog", steady, false);
+            RequestMetrics.Snapshot total = LatencyReport.total(merged);
+
+            StringBuilder report = new StringBuilder()
+                    .append("Merged results of ").append(injectors).append(" injectors (latencies in ms)\n\n")
+                    .append(LatencyReport.table(merged)).append('\n');
+            report.append(String.format("Global: %d requests, %.2f%% failed, max %d ms%n",
+                    total.count(), total.count() == 0 ? 0.0 : 100.0 * total.errors() / total.count(), total.all().getMaxValue()));
+            Map<String, RequestMetrics.Snapshot> measured = Phases.measured(merged);
+            // throughput over the steady phase, the warm-up and ramps left out, if the simulation has phases
+            Map<String, RequestMetrics.Snapshot> rated = steadyPeriod == null ? measured : Phases.measured(steady);
+            double seconds = (steadyPeriod == null ? run : steadyPeriod).seconds();
+            List<Slo> objectives = objectives(simulation);
+            List<String> violations = new ArrayList<>();
+            for (Slo slo : objectives) {
+                violations.addAll(slo.violations(measured, rated, seconds));
+            }
+            if (!violations.isEmpty()) {
+                verdicts.add("objectives FAILED on the merged results:\n  " + String.join("\n  ", violations));
+                worstExit = Math.max(worstExit, ASSERTIONS_FAILED);
+            } else if (!objectives.isEmpty()) {
+                verdicts.add("objectives met on the merged results (" + objectives.size() + " checked)");
+            }
+            String simulationName = simulation.substring(simulation.lastIndexOf('.') + 1);
+            List<String> regressions = Baseline.checkIfEnabled(simulationName, measured);
+            if (!regressions.isEmpty()) {
+                verdicts.add("baseline FAILED, regressions against " + Baseline.file(simulationName) + ":\n  "
+                        + String.join("\n  ", regressions));
+                worstExit = Math.max(worstExit, ASSERTIONS_FAILED);
+            }
+            Baseline.updateIfEnabled(simulationName, measured, startedAt);
+            for (String verdict : verdicts) {
+                report.append(verdict).append('\n');
+            }
+            report.append("Overall: ").append(worstExit == 0 ? "PASSED" : "FAILED").append('\n');
+
+            Files.writeString(results.resolve("merged-summary.txt"), report);
+            System.out.println(report);
+            exitCode = worstExit;
+        } finally {
+            if (standIn != null) {
+                standIn.stop();
+            }
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * @return the objectives declared by the simulation class in a public static SLOS field, or none
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Slo> objectives(String simulation) {
+        try {
+            return (List<Slo>) Class.forName(simulation).getField("SLOS").get(null);
+        } catch (NoSuchFieldException e) {
+            return List.of();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot read the objectives of " + simulation, e);
+        }
+    }
+
+    private static Process fork(String simulation, int index, int count, int barrierPort, Path results, List<String> jvmArgs) throws IOException {
+        List<String> command = GatlingJvm.command();
+        command.addAll(jvmArgs);
+        command.add("-Dinjector.index=" + index);
+        command.add("-Dinjector.count=" + count);
+        command.add("-Dinjector.barrier=127.0.0.1:" + barrierPort);
+        command.add("-Dmetrics.histogramLog=" + results.resolve("injector-" + index + ".hlog").toAbsolutePath());
+        command.add("-Dmetrics.steadyHistogramLog=" + results.resolve("injector-" + index + ".steady.hlog").toAbsolutePath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("io.gatling.app.Gatling");
+        command.add("-s");
+        command.add(simulation);
+        command.add("-rf");
+        command.add(results.resolve("injector-" + index).toAbsolutePath().toString());
+        command.add("-nr");
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(results.resolve("injector-" + index + ".log").toFile())
+                .start();
+    }
+
+    /**
+     * Waits until every injector has reported READY, then tells them all to GO at once.
+     * If an injector exits before reaching the barrier, the others are told to ABORT.
+     */
+    private static void releaseWhenReady(ServerSocket barrier, List<Process> processes) throws IOException {
+        barrier.setSoTimeout(1000);
+        List<Socket> ready = new ArrayList<>();
+        try {
+            while (ready.size() < processes.size()) {
+                for (int index = 0; index < processes.size(); index++) {
+                    if (!processes.get(index).isAlive()) {
+                        broadcast(ready, "ABORT injector-" + index + " exited before start");
+                        throw new IllegalStateException("injector-" + index + " exited before the start barrier, see its log");
+                    }
+                }
+                try {
+                    Socket socket = barrier.accept();
+                    String hello = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+                    if (hello != null && hello.startsWith("READY")) {
+                        ready.add(socket);
+                    } else {
+                        socket.close();
+                    }
+                } catch (SocketTimeoutException e) {
+                    // check the processes again
+                }
+            }
+            broadcast(ready, "GO");
+        } finally {
+            for (Socket socket : ready) {
+                socket.close();
+            }
+        }
+    }
+
+    private static void broadcast(List<Socket> sockets, String message) throws IOException {
+        for (Socket socket : sockets) {
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            out.println(message);
+        }
+    }
+
+    /**
+     * Adds the histograms of every injector's log with the given suffix into merged.
+     *
+     * @param required whether every injector writes that log, so a missing one is reported
+     * @return the period the logs cover together, from the first start to the last end; null if none has a histogram
+     */
+    private static RequestMetrics.Period merge(Path results, int injectors, String suffix,
+                                               Map<String, RequestMetrics.Snapshot> merged, boolean required) {
+        RequestMetrics.Period period = null;
+        for (int index = 0; index < injectors; index++) {
+            Path log = results.resolve("injector-" + index + suffix);
+            if (Files.exists(log)) {
+                RequestMetrics.Period covered = RequestMetrics.readLog(log, merged);
+                period = covered == null ? period : covered.span(period);
+            } else if (required) {
+                System.err.println("No histogram log from injector-" + index);
+            }
+        }
+        return period;
+    }
+}
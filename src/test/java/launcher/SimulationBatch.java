@@ -0,0 +1,142 @@
+package launcher;
+
+import common.GeneratedBody;
+import common.IdPool;
+import common.Offload;
+import common.RetryBudget;
+import common.TokenPool;
+import io.gatling.app.Gatling$;
+import metrics.RequestMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs several simulation classes back-to-back in this JVM, and measures how long each takes to send its first request.
+ *
+ * The JVM, Gatling and our api, scenarios and protocol classes are loaded and JIT-compiled once, by the first
+ * simulation; the next ones start warm. Between simulations, the shared state is reset: RequestMetrics,
+ * so each one's baseline, phases and histogram log only see its own requests; the id pools, retry budgets,
+ * offload executors and generated bodies, so each one's final stats and live metrics only count its own run;
+ * and the shared login tokens (e.g. ReqResApi.TOKENS), so each one logs in again and counts its own logins.
+ * The registries are reached through all(), so resetting them does not load the api classes before Gatling does.
+ *
+ * Usually started by FastLauncher, with the class-data-sharing archive; it also runs on any classpath:
+ *   java -cp ... launcher.SimulationBatch [--results <folder>] [--reports] simulations.A simulations.B ...
+ *
+ * Options:
+ * - --results : Gatling results folder (default target/fast/results)
+ * - --reports : also generate Gatling's HTML reports (skipped by default, to get the verdicts sooner)
+ *
+ * Startup-to-first-request times are printed, and appended to target/fast/startup.csv:
+ * for the first simulation from the launch (-Dfast.launchedAt, the FastLauncher JVM's start, or else this JVM's),
+ * for the next ones from the start of their run.
+ */
+public class SimulationBatch {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SimulationBatch.class);
+
+    private static final Path STARTUP_LOG = Path.of("target", "fast", "startup.csv");
+
+    public static void main(String[] args) throws IOException {
+        Path results = Path.of("target", "fast", "results");
+        boolean reports = false;
+        List<String> simulations = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--results" -> results = Path.of(args[++i]);
+                case "--reports" -> reports = true;
+                default -> {
+                    if (args[i].startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    }
+                    simulations.add(args[i]);
+                }
+            }
+        }
+        if (simulations.isEmpty()) {
+            System.err.println("Usage: SimulationBatch [--results <folder>] [--reports] <simulation class>...");
+            System.exit(1);
+        }
+
+        // FastLauncher passes its own start, so its startup and the fork of this JVM are counted too
+        long coldStartedAt = Long.getLong("fast.launchedAt", ManagementFactory.getRuntimeMXBean().getStartTime());
+        String sharing = System.getProperty("fast.archive", "none");
+        StringBuilder csv = new StringBuilder();
+        StringBuilder summary = new StringBuilder(String.format(Locale.ROOT, "%-50s %16s %10s  %s%n",
+                "Simulation", "first request ms", "run s", "result"));
+        int worstExit = 0;
+        for (int index = 0; index < simulations.size(); index++) {
+            String simulation = simulations.get(index);
+            reset();
+            long launchedAt = System.currentTimeMillis();
+            List<String> gatlingArgs = new ArrayList<>(List.of("-s", simulation, "-rf", results.toAbsolutePath().toString()));
+            if (!reports) {
+                gatlingArgs.add("-nr");
+            }
+            int exit;
+            try {
+                // Gatling.main would exit the JVM; fromArgs returns the exit code
+                exit = Gatling$.MODULE$.fromArgs(gatlingArgs.toArray(String[]::new));
+            } catch (RuntimeException e) {
+                // one broken simulation must not keep the others from running
+                LOGGER.error("Simulation {} failed", simulation, e);
+                exit = 1;
+            }
+            long endedAt = System.currentTimeMillis();
+            worstExit = Math.max(worstExit, exit);
+
+            long firstRequestAt = RequestMetrics.global().firstRequestAt();
+            long from = index == 0 ? coldStartedAt : launchedAt;
+            long firstRequestMillis = firstRequestAt == 0 ? -1 : firstRequestAt - from;
+            summary.append(String.format(Locale.ROOT, "%-50s %16s %10.1f  %s%n", simulation,
+                    firstRequestMillis < 0 ? "-" : String.valueOf(firstRequestMillis), (endedAt - launchedAt) / 1000.0,
+                    exit == 0 ? "passed" : "FAILED (exit " + exit + ")"));
+            csv.append(String.format(Locale.ROOT, "%s,%s,%s,%s,%d,%d%n", Instant.ofEpochMilli(launchedAt), sharing,
+                    simulation, index == 0 ? "cold" : "warm", firstRequestMillis, exit));
+        }
+        summary.append(String.format(Locale.ROOT, "%nFirst request of the cold simulation is timed from the %s start, "
+                        + "the others from the start of their run. Class-data sharing: %s; %d classes loaded.%n",
+                System.getProperty("fast.launchedAt") != null ? "launcher" : "JVM", sharing, ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount()));
+        System.out.print(summary);
+
+        Files.createDirectories(STARTUP_LOG.getParent());
+        if (!Files.exists(STARTUP_LOG)) {
+            csv.insert(0, "time,archive,simulation,jvm,first_request_ms,exit\n");
+        }
+        Files.writeString(STARTUP_LOG, csv, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        System.exit(worstExit);
+    }
+
+    /**
+     * Forgets what the previous simulation left in the registries shared by all simulations of this JVM.
+     */
+    private static void reset() {
+        RequestMetrics.global().reset();
+        RequestMetrics.corrected().reset();
+        for (IdPool pool : IdPool.all()) {
+            pool.reset();
+        }
+        for (RetryBudget budget : RetryBudget.all()) {
+            budget.reset();
+        }
+        for (Offload offload : Offload.all()) {
+            offload.reset();
+        }
+        for (GeneratedBody body : GeneratedBody.all()) {
+            body.reset();
+        }
+        for (TokenPool<?> tokens : TokenPool.all()) {
+            tokens.reset();
+        }
+    }
+}
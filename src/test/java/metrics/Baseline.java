@@ -0,0 +1,220 @@
+package metrics;
+
+import common.Injectors;
+import io.gatling.javaapi.core.Assertion;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static io.gatling.javaapi.core.CoreDsl.details;
+
+public class Baseline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Baseline.class);
+
+    private static final double[] PERCENTILES = {50, 95, 99};
+
+    /**
+     * Below this many requests (or this many beyond a percentile), a comparison says nothing useful.
+     */
+    private static final long MIN_SAMPLES = 30;
+    private static final long MIN_TAIL_SAMPLES = 5;
+
+    private final double tolerance;
+    private final double z;
+
+    /**
+     * @param tolerance relative slowdown that is accepted even when significant, e.g. 0.10 for 10%
+     * @param z         normal quantile of the confidence level, e.g. 2.58 for 99%
+     */
+    public Baseline(double tolerance, double z) {
+        this.tolerance = tolerance;
+        this.z = z;
+    }
+
+    /**
+     * Configured with -Dbaseline.tolerance (default 0.10) and -Dbaseline.z (default 2.58).
+     */
+    public static Baseline fromSystemProperties() {
+        return new Baseline(Double.parseDouble(System.getProperty("baseline.tolerance", "0.10")),
+                Double.parseDouble(System.getProperty("baseline.z", "2.58")));
+    }
+
+    /**
+     * @return the baseline log of a simulation: -Dbaseline.dir (default "baselines") / SimulationName.hlog
+     */
+    public static Path file(String simulationName) {
+        return Path.of(System.getProperty("baseline.dir", "baselines"), simulationName + ".hlog");
+    }
+
+    /**
+     * Turns the stored baseline into Gatling assertions when the run is started with -Dbaseline.check=true,
+     * so that a regression fails the run like any other assertion, with Gatling's exit code.
+     *
+     * For every request with enough samples in the baseline, the limits are the upper bounds that compare(...)
+     * uses on the baseline side, plus the tolerance: each percentile must stay at or below the upper bound of
+     * its confidence interval, and the failure rate at or below the upper bound of its Wilson score interval.
+     * Since the limits are set before the run starts, the run's own sampling noise is not accounted for.
+     *
+     * There are none in a multi-injector run, where each injector only sees its share of the traffic:
+     * the launcher compares the merged results instead (see checkIfEnabled).
+     *
+     * @return the assertions, to pass to setUp(...).assertions(...)
+     */
+    public static List<Assertion> assertions(String simulationName) {
+        List<Assertion> assertions = new ArrayList<>();
+        Map<String, RequestMetrics.Snapshot> baseline = readIfChecked(simulationName);
+        if (baseline == null || Injectors.count() > 1) {
+            return assertions;
+        }
+        Baseline limits = fromSystemProperties();
+        for (Map.Entry<String, RequestMetrics.Snapshot> entry : baseline.entrySet()) {
+            RequestMetrics.Snapshot before = entry.getValue();
+            if (before.count() < MIN_SAMPLES) {
+                continue;
+            }
+            Histogram then = before.all();
+            for (double percentile : PERCENTILES) {
+                double q = percentile / 100;
+                if (then.getTotalCount() * (1 - q) < MIN_TAIL_SAMPLES) {
+                    continue;
+                }
+                long thenHigh = valueAtRank(then, q, limits.z);
+                assertions.add(details(entry.getKey()).responseTime().percentile(percentile)
+                        .lte((int) Math.ceil(thenHigh * (1 + limits.tolerance))));
+            }
+            assertions.add(details(entry.getKey()).failedRequests().percent()
+                    .lte(100 * limits.failureRateHigh(before) * (1 + limits.tolerance)));
+        }
+        LOGGER.info("Checking {} request statistics against baseline {}", assertions.size(), file(simulationName));
+        return assertions;
+    }
+
+    /**
+     * Compares a run with the stored baseline when requested with -Dbaseline.check=true; used by the launcher
+     * on the merged results of a multi-injector run (a single injector checks Baseline.assertions instead).
+     *
+     * @return one line per regression, empty if there is none or nothing to compare with
+     */
+    public static List<String> checkIfEnabled(String simulationName, Map<String, RequestMetrics.Snapshot> run) {
+        Map<String, RequestMetrics.Snapshot> baseline = readIfChecked(simulationName);
+        if (baseline == null) {
+            return List.of();
+        }
+        List<String> regressions = fromSystemProperties().compare(run, baseline);
+        if (regressions.isEmpty()) {
+            LOGGER.info("No regression against baseline {}", file(simulationName));
+        }
+        return regressions;
+    }
+
+    /**
+     * Stores the run's histograms as the simulation's new baseline when requested with -Dbaseline.update=true.
+     */
+    public static void updateIfEnabled(String simulationName, Map<String, RequestMetrics.Snapshot> run, long startedAt) {
+        if (Boolean.getBoolean("baseline.update")) {
+            Path file = file(simulationName);
+            RequestMetrics.writeLog(file, run, startedAt);
+            LOGGER.info("Baseline written to {}", file);
+        }
+    }
+
+    /**
+     * @return the stored baseline with -Dbaseline.check=true, null without it or if there is none yet
+     */
+    private static Map<String, RequestMetrics.Snapshot> readIfChecked(String simulationName) {
+        if (!Boolean.getBoolean("baseline.check")) {
+            return null;
+        }
+        Path file = file(simulationName);
+        if (!Files.exists(file)) {
+            LOGGER.warn("No baseline at {}, nothing to compare with; create one with -Dbaseline.update=true", file);
+            return null;
+        }
+        Map<String, RequestMetrics.Snapshot> baseline = new TreeMap<>();
+        RequestMetrics.readLog(file, baseline);
+        return baseline;
+    }
+
+    /**
+     * Compares a run with a baseline, request by request.
+     *
+     * A percentile regresses when the lower bound of its confidence interval in the run is above
+     * the upper bound in the baseline, plus the tolerance. The bounds come from the order statistics
+     * around the percentile's rank (rank n*q +/- z*sqrt(n*q*(1-q))), so a difference only counts when
+     * both runs have enough samples to tell it apart from noise.
+     * The failure rate regresses when a two-proportion z-test says it rose, by more than the tolerance
+     * times the baseline rate.
+     *
+     * Requests missing from either side are not compared.
+     *
+     * @return one line per regression, empty if there is none
+     */
+    public List<String> compare(Map<String, RequestMetrics.Snapshot> run, Map<String, RequestMetrics.Snapshot> baseline) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, RequestMetrics.Snapshot> entry : run.entrySet()) {
+            RequestMetrics.Snapshot before = baseline.get(entry.getKey());
+            if (before == null || entry.getValue().count() < MIN_SAMPLES || before.count() < MIN_SAMPLES) {
+                continue;
+            }
+            Histogram now = entry.getValue().all();
+            Histogram then = before.all();
+            for (double percentile : PERCENTILES) {
+                double q = percentile / 100;
+                if (now.getTotalCount() * (1 - q) < MIN_TAIL_SAMPLES || then.getTotalCount() * (1 - q) < MIN_TAIL_SAMPLES) {
+                    continue;
+                }
+                long nowLow = valueAtRank(now, q, -z);
+                long thenHigh = valueAtRank(then, q, z);
+                if (nowLow > thenHigh * (1 + tolerance)) {
+                    regressions.add(String.format("%s p%s: %d ms, baseline %d ms (at least %d vs at most %d ms)",
+                            entry.getKey(), LatencyReport.number(percentile), now.getValueAtPercentile(percentile),
+                            then.getValueAtPercentile(percentile), nowLow, thenHigh));
+                }
+            }
+            double nowRate = (double) entry.getValue().errors() / entry.getValue().count();
+            double thenRate = (double) before.errors() / before.count();
+            if (nowRate > thenRate * (1 + tolerance) && significantlyHigher(entry.getValue(), before)) {
+                regressions.add(String.format("%s failed: %.2f%%, baseline %.2f%%", entry.getKey(), 100 * nowRate, 100 * thenRate));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * @return the value at the rank of quantile q, moved by the given number of standard deviations
+     */
+    private static long valueAtRank(Histogram histogram, double q, double deviations) {
+        long n = histogram.getTotalCount();
+        double rank = n * q + deviations * Math.sqrt(n * q * (1 - q));
+        double percentile = Math.max(0, Math.min(100, 100 * rank / n));
+        return histogram.getValueAtPercentile(percentile);
+    }
+
+    /**
+     * @return the upper bound of the Wilson score interval of a snapshot's failure rate, as a fraction
+     */
+    private double failureRateHigh(RequestMetrics.Snapshot snapshot) {
+        double n = snapshot.count();
+        double p = snapshot.errors() / n;
+        double z2 = z * z;
+        return (p + z2 / (2 * n) + z * Math.sqrt(p * (1 - p) / n + z2 / (4 * n * n))) / (1 + z2 / n);
+    }
+
+    private boolean significantlyHigher(RequestMetrics.Snapshot now, RequestMetrics.Snapshot then) {
+        double n1 = now.count();
+        double n2 = then.count();
+        double p1 = now.errors() / n1;
+        double p2 = then.errors() / n2;
+        double pooled = (now.errors() + then.errors()) / (n1 + n2);
+        double standardError = Math.sqrt(pooled * (1 - pooled) * (1 / n1 + 1 / n2));
+        return standardError == 0 ? p1 > p2 : (p1 - p2) / standardError > z;
+    }
+}
@@ -0,0 +1,329 @@
+package metrics;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import common.Gauges;
+import io.gatling.javaapi.core.Session;
+import io.netty.channel.EventLoop;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+public class InjectorHealth {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InjectorHealth.class);
+
+    /**
+     * Fails the run if the injector has been the bottleneck so far (see Report.problems());
+     * added by PlaygroundSimulation with -Dhealth.invalidate=true.
+     */
+    public static final RunCheck CHECK = new RunCheck("injector health", () -> {
+        Report report = current();
+        return report == null ? List.of() : report.problems();
+    });
+
+    private static volatile InjectorHealth running;
+
+    static {
+        gauge("injector_cpu_ratio", "Injector process CPU load over the last interval (1 = every core busy).", false, health -> health.cpu);
+        gauge("injector_allocation_bytes_per_second", "Injector allocation rate over the last interval.", false,
+                health -> health.allocatedBytesPerSecond);
+        gauge("injector_gc_pause_seconds_total", "Time the injector spent in GC pauses since the start of the run.", true,
+                health -> health.gcPauseSum.sum() / 1000.0);
+        gauge("injector_event_loop_lag_max_ms", "Longest event-loop lag probed over the last interval.", false,
+                health -> health.loopLagMillisMax);
+    }
+
+    private final long intervalMillis;
+    private final long startedAt = System.currentTimeMillis();
+    private final ScheduledExecutorService scheduler;
+    private final com.sun.management.OperatingSystemMXBean os =
+            (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final Map<NotificationEmitter, NotificationListener> gcListeners = new ConcurrentHashMap<>();
+
+    /**
+     * Gatling's event loops, discovered from the sessions of completed requests.
+     */
+    private final Set<EventLoop> eventLoops = ConcurrentHashMap.newKeySet();
+
+    // samples and pauses, in percent, milliseconds or microseconds as named
+    private final Histogram cpuPercent = new Histogram(100, 2);
+    private final Recorder gcPauseMillis = new Recorder(RequestMetrics.HIGHEST_LATENCY_MS, 2);
+    private final Recorder loopLagMicros = new Recorder(RequestMetrics.HIGHEST_LATENCY_MS * 1000, 2);
+    private final Recorder sendDelayMillis = new Recorder(RequestMetrics.HIGHEST_LATENCY_MS, RequestMetrics.SIGNIFICANT_DIGITS);
+    private final LongAdder gcPauseSum = new LongAdder();
+    private final Histogram gcPauseTotal = new Histogram(RequestMetrics.HIGHEST_LATENCY_MS, 2);
+    private final Histogram loopLagTotal = new Histogram(RequestMetrics.HIGHEST_LATENCY_MS * 1000, 2);
+    private final Histogram sendDelayTotal = new Histogram(RequestMetrics.HIGHEST_LATENCY_MS, RequestMetrics.SIGNIFICANT_DIGITS);
+
+    // latest interval, for LiveMetrics; only written by the scheduler thread
+    private volatile double cpu;
+    private volatile double allocatedBytesPerSecond;
+    private volatile double loopLagMillisMax;
+
+    private long lastAllocatedBytes;
+    private long lastTick = System.nanoTime();
+    private double allocatedBytesPerSecondMax;
+
+    private InjectorHealth(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "injector-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts monitoring the injector JVM itself, unless the run is started with -Dhealth.enabled=false.
+     *
+     * Every -Dhealth.intervalMillis (default 1000), a background thread samples:
+     * - process CPU load
+     * - allocation rate, from the per-thread allocation counters
+     * - event-loop lag: the time a no-op task waits in each of Gatling's event loops before it runs
+     * GC pauses are recorded as they happen, from the collectors' notifications.
+     *
+     * Requests sent after a SendSchedule pause also report how long after their scheduled send time they went out
+     * (the send delay; their latency from the scheduled time is recorded per request, see RequestMetrics.corrected()).
+     *
+     * stop() turns all of it into a Report telling whether the injector, rather than the system under test,
+     * was the bottleneck.
+     */
+    public static synchronized void startIfEnabled() {
+        if (running != null || !Boolean.parseBoolean(System.getProperty("health.enabled", "true"))) {
+            return;
+        }
+        running = new InjectorHealth(Long.getLong("health.intervalMillis", 1000));
+        running.start();
+    }
+
+    /**
+     * Stops monitoring and returns what was seen.
+     *
+     * @return the report, or null if monitoring was not started
+     */
+    public static synchronized Report stop() {
+        InjectorHealth health = running;
+        if (health == null) {
+            return null;
+        }
+        running = null;
+        health.scheduler.shutdownNow();
+        health.gcListeners.forEach((emitter, listener) -> {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (Exception e) {
+                // already gone
+            }
+        });
+        synchronized (health) {
+            health.drain();
+            return health.report();
+        }
+    }
+
+    /**
+     * @return what the running monitor has seen so far, or null if monitoring is off
+     */
+    public static Report current() {
+        InjectorHealth health = running;
+        if (health == null) {
+            return null;
+        }
+        synchronized (health) {
+            health.drain();
+            return health.report();
+        }
+    }
+
+    /**
+     * Called by RequestMetrics.timed after every response, on the user's event loop.
+     */
+    static void onResponse(Session session) {
+        InjectorHealth health = running;
+        if (health == null) {
+            return;
+        }
+        EventLoop loop = session.asScala().eventLoop();
+        if (!health.eventLoops.contains(loop)) {
+            health.eventLoops.add(loop);
+        }
+    }
+
+    /**
+     * Called by RequestMetrics.timed for every request that had a scheduled send time (see common.SendSchedule).
+     *
+     * @param sendDelayMillis how long after its scheduled time the request was sent
+     */
+    static void onScheduled(long sendDelayMillis) {
+        InjectorHealth health = running;
+        if (health != null) {
+            health.sendDelayMillis.recordValue(Math.min(RequestMetrics.HIGHEST_LATENCY_MS, Math.max(0, sendDelayMillis)));
+        }
+    }
+
+    /**
+     * Registers one live value of the running monitor; nothing is exported while monitoring is off.
+     */
+    private static void gauge(String metric, String help, boolean counter, ToDoubleFunction<InjectorHealth> value) {
+        Gauges.register(metric, help, counter, out -> {
+            InjectorHealth health = running;
+            if (health != null) {
+                out.sample(value.applyAsDouble(health));
+            }
+        });
+    }
+
+    private void start() {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // concurrent cycles run alongside the application; only stop-the-world collections are pauses
+            if (collector.getName().contains("Concurrent") || collector.getName().contains("Cycles")
+                    || !(collector instanceof NotificationEmitter emitter)) {
+                continue;
+            }
+            NotificationListener listener = this::onGc;
+            emitter.addNotificationListener(listener, null, null);
+            gcListeners.put(emitter, listener);
+        }
+        lastAllocatedBytes = threads.getTotalThreadAllocatedBytes();
+        scheduler.scheduleAtFixedRate(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void onGc(Notification notification, Object handback) {
+        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            long duration = info.getGcInfo().getDuration();
+            gcPauseSum.add(duration);
+            gcPauseMillis.recordValue(Math.min(RequestMetrics.HIGHEST_LATENCY_MS, duration));
+        }
+    }
+
+    private void tick() {
+        try {
+            long now = System.nanoTime();
+            double seconds = Math.max(1e-3, (now - lastTick) / 1e9);
+            lastTick = now;
+
+            double load = os.getProcessCpuLoad();
+            if (load >= 0) {
+                cpu = load;
+            }
+            long allocated = threads.getTotalThreadAllocatedBytes();
+            if (allocated >= 0) {
+                allocatedBytesPerSecond = (allocated - lastAllocatedBytes) / seconds;
+                lastAllocatedBytes = allocated;
+            }
+            for (EventLoop loop : eventLoops) {
+                long submitted = System.nanoTime();
+                loop.execute(() -> loopLagMicros.recordValue(Math.min(RequestMetrics.HIGHEST_LATENCY_MS * 1000,
+                        (System.nanoTime() - submitted) / 1000)));
+            }
+
+            synchronized (this) {
+                if (load >= 0) {
+                    cpuPercent.recordValue(Math.round(load * 100));
+                }
+                allocatedBytesPerSecondMax = Math.max(allocatedBytesPerSecondMax, allocatedBytesPerSecond);
+                Histogram lag = loopLagMicros.getIntervalHistogram();
+                loopLagMillisMax = lag.getMaxValue() / 1000.0;
+                loopLagTotal.add(lag);
+                gcPauseTotal.add(gcPauseMillis.getIntervalHistogram());
+            }
+        } catch (RuntimeException e) {
+            // a failed tick must not cancel the schedule
+            LOGGER.warn("Injector health tick failed", e);
+        }
+    }
+
+    private void drain() {
+        gcPauseTotal.add(gcPauseMillis.getIntervalHistogram());
+        loopLagTotal.add(loopLagMicros.getIntervalHistogram());
+        sendDelayTotal.add(sendDelayMillis.getIntervalHistogram());
+    }
+
+    private Report report() {
+        long elapsed = Math.max(1, System.currentTimeMillis() - startedAt);
+        return new Report(
+                cpuPercent.getTotalCount() == 0 ? 0 : cpuPercent.getValueAtPercentile(95) / 100.0,
+                allocatedBytesPerSecondMax,
+                gcPauseTotal.getMaxValue(),
+                100.0 * gcPauseSum.sum() / elapsed,
+                loopLagTotal.getValueAtPercentile(99) / 1000.0,
+                sendDelayTotal.getTotalCount(),
+                sendDelayTotal.getValueAtPercentile(99));
+    }
+
+    /**
+     * What the injector went through during the run.
+     *
+     * @param cpuP95             process CPU load, 95th percentile of the samples (1 = every core busy)
+     * @param allocationPeak     highest allocation rate over one interval, in bytes per second
+     * @param gcPauseMaxMillis   longest GC pause
+     * @param gcPausePercent     share of the run spent in GC pauses
+     * @param loopLagP99Millis   event-loop lag, 99th percentile of the probes
+     * @param scheduledRequests  requests that had a scheduled send time
+     * @param sendDelayP99Millis delay between scheduled and actual send time, 99th percentile
+     */
+    public record Report(double cpuP95, double allocationPeak, long gcPauseMaxMillis, double gcPausePercent,
+                         double loopLagP99Millis, long scheduledRequests, long sendDelayP99Millis) {
+
+        /**
+         * Checks the report against the limits below, past which the injector is taken to have been the bottleneck:
+         * - -Dhealth.maxCpu: process CPU p95 (default 0.9)
+         * - -Dhealth.maxGcPercent: share of the run spent in GC pauses (default 5)
+         * - -Dhealth.maxLoopLagMillis: event-loop lag p99 (default 50)
+         * - -Dhealth.maxSendDelayMillis: send delay p99 (default 100)
+         *
+         * @return one line per limit exceeded; empty if the injector kept up
+         */
+        public List<String> problems() {
+            List<String> problems = new ArrayList<>();
+            double maxCpu = Double.parseDouble(System.getProperty("health.maxCpu", "0.9"));
+            double maxGcPercent = Double.parseDouble(System.getProperty("health.maxGcPercent", "5"));
+            long maxLoopLag = Long.getLong("health.maxLoopLagMillis", 50);
+            long maxSendDelay = Long.getLong("health.maxSendDelayMillis", 100);
+            if (cpuP95 > maxCpu) {
+                problems.add(String.format(Locale.ROOT, "CPU p95 %.0f%% > %.0f%%", cpuP95 * 100, maxCpu * 100));
+            }
+            if (gcPausePercent > maxGcPercent) {
+                problems.add(String.format(Locale.ROOT, "GC pauses %.1f%% of the run > %.1f%%", gcPausePercent, maxGcPercent));
+            }
+            if (loopLagP99Millis > maxLoopLag) {
+                problems.add(String.format(Locale.ROOT, "event-loop lag p99 %.1f ms > %d ms", loopLagP99Millis, maxLoopLag));
+            }
+            if (sendDelayP99Millis > maxSendDelay) {
+                problems.add("send delay p99 " + sendDelayP99Millis + " ms > " + maxSendDelay + " ms");
+            }
+            return problems;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "CPU p95 %.0f%%, allocation peak %.1f MB/s, GC pauses max %d ms (%.2f%% of the run), event-loop lag p99 %.1f ms, "
+                            + "%d scheduled requests: send delay p99 %d ms",
+                    cpuP95 * 100, allocationPeak / 1_000_000, gcPauseMaxMillis, gcPausePercent, loopLagP99Millis,
+                    scheduledRequests, sendDelayP99Millis);
+        }
+    }
+}
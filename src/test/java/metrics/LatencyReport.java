@@ -0,0 +1,56 @@
+package metrics;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+
+public class LatencyReport {
+
+    /**
+     * Formats per-request histograms as a fixed-width table, with an "All Requests" line first.
+     *
+     * Columns: request count, failed count, mean, p50, p95, p99 and max latency in milliseconds.
+     *
+     * @param snapshots histograms by request name
+     * @return the table, one line per request name
+     */
+    public static String table(Map<String, RequestMetrics.Snapshot> snapshots) {
+        int width = "All Requests".length();
+        for (String name : snapshots.keySet()) {
+            width = Math.max(width, name.length());
+        }
+        String row = "%-" + width + "s %10s %8s %8s %8s %8s %8s %8s%n";
+        StringBuilder table = new StringBuilder(String.format(row, "Request", "count", "ko", "mean", "p50", "p95", "p99", "max"));
+        table.append(line("All Requests", total(snapshots), row));
+        for (Map.Entry<String, RequestMetrics.Snapshot> entry : snapshots.entrySet()) {
+            table.append(line(entry.getKey(), entry.getValue(), row));
+        }
+        return table.toString();
+    }
+
+    /**
+     * @return the sum of every request's histograms
+     */
+    public static RequestMetrics.Snapshot total(Map<String, RequestMetrics.Snapshot> snapshots) {
+        RequestMetrics.Snapshot total = RequestMetrics.Snapshot.empty();
+        for (RequestMetrics.Snapshot snapshot : snapshots.values()) {
+            total.add(snapshot);
+        }
+        return total;
+    }
+
+    /**
+     * @return the value without a trailing ".0" when it is whole, e.g. "99" or "99.9" for a percentile
+     */
+    static String number(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    private static String line(String name, RequestMetrics.Snapshot snapshot, String row) {
+        Histogram all = snapshot.all();
+        return String.format(row, name, snapshot.count(), snapshot.errors(),
+                String.format("%.1f", all.getMean()),
+                all.getValueAtPercentile(50), all.getValueAtPercentile(95),
+                all.getValueAtPercentile(99), all.getMaxValue());
+    }
+}
@@ -0,0 +1,224 @@
+package metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import common.Gauges;
+import common.Injectors;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class LiveMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LiveMetrics.class);
+
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private static LiveMetrics running;
+
+    private final RequestMetrics metrics;
+    private final long intervalMillis;
+    private final HttpServer server;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Run totals per request name, for the Prometheus counters. Only touched by the scheduler thread.
+     */
+    private final Map<String, Totals> totals = new HashMap<>();
+    private long lastTick = System.nanoTime();
+
+    /**
+     * The latest exposition, rendered once per interval so a scrape is just a byte copy.
+     */
+    private volatile byte[] exposition = new byte[0];
+
+    private LiveMetrics(RequestMetrics metrics, InetSocketAddress address, long intervalMillis) throws IOException {
+        this.metrics = metrics;
+        this.intervalMillis = intervalMillis;
+        this.server = HttpServer.create(address, 16);
+        server.createContext("/metrics", exchange -> {
+            try (exchange) {
+                byte[] body = exposition;
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "live-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts live reporting when the run is started with -Dmetrics.live=true.
+     *
+     * Every -Dmetrics.intervalSeconds (default 5), the requests recorded by RequestMetrics during
+     * the last interval are summarised:
+     * - rolling p50/p95/p99/max, throughput and error counts per request name, served in Prometheus
+     *   text format on http://HOST:PORT/metrics, where PORT is -Dmetrics.port (default 9464) plus
+     *   the injector index, so injectors on one host don't collide
+     * - one compact log line with the same numbers for all requests combined
+     * - the families other subsystems registered with common.Gauges (id pools, retry budgets, offload executors,
+     *   uploads, the run phase, the injector's health), exported as gatling_NAME
+     *
+     * The endpoint only listens on the loopback interface, unless -Dmetrics.host names another address
+     * (e.g. 0.0.0.0 for a Prometheus server on another host).
+     *
+     * Recording itself is unchanged (one wait-free histogram update per response); all the
+     * aggregation happens on a single background thread.
+     */
+    public static synchronized void startIfEnabled() {
+        if (running != null || !Boolean.getBoolean("metrics.live")) {
+            return;
+        }
+        int port = Integer.getInteger("metrics.port", 9464) + Injectors.index();
+        String host = System.getProperty("metrics.host");
+        InetSocketAddress address = host == null
+                ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port)
+                : new InetSocketAddress(host, port);
+        long intervalMillis = TimeUnit.SECONDS.toMillis(Long.getLong("metrics.intervalSeconds", 5));
+        try {
+            running = new LiveMetrics(RequestMetrics.global(), address, intervalMillis);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot start the live metrics endpoint on " + address, e);
+        }
+        running.start();
+        LOGGER.info("Live metrics on http://{}:{}/metrics every {} ms", address.getHostString(), port, intervalMillis);
+    }
+
+    /**
+     * Stops live reporting, if it was started.
+     */
+    public static synchronized void stop() {
+        if (running != null) {
+            running.scheduler.shutdownNow();
+            running.server.stop(0);
+            running = null;
+        }
+    }
+
+    private void start() {
+        server.start();
+        scheduler.scheduleAtFixedRate(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        try {
+            long now = System.nanoTime();
+            double seconds = Math.max(1e-3, (now - lastTick) / 1e9);
+            lastTick = now;
+            Map<String, RequestMetrics.Snapshot> interval = metrics.collect();
+            exposition = render(interval, seconds).getBytes(StandardCharsets.UTF_8);
+            LOGGER.info(logLine(LatencyReport.total(interval), seconds));
+        } catch (RuntimeException e) {
+            // a failed tick must not cancel the schedule
+            LOGGER.warn("Live metrics tick failed", e);
+        }
+    }
+
+    private String render(Map<String, RequestMetrics.Snapshot> interval, double seconds) {
+        StringBuilder out = new StringBuilder(4096);
+        out.append("# HELP gatling_requests_total Completed requests by request name and outcome.\n")
+                .append("# TYPE gatling_requests_total counter\n");
+        for (Map.Entry<String, RequestMetrics.Snapshot> entry : interval.entrySet()) {
+            Totals total = totals.computeIfAbsent(entry.getKey(), name -> new Totals());
+            total.ok += entry.getValue().ok().getTotalCount();
+            total.ko += entry.getValue().ko().getTotalCount();
+            String label = label(entry.getKey());
+            out.append("gatling_requests_total{request=\"").append(label).append("\",status=\"ok\"} ").append(total.ok).append('\n');
+            out.append("gatling_requests_total{request=\"").append(label).append("\",status=\"ko\"} ").append(total.ko).append('\n');
+        }
+
+        out.append("# HELP gatling_request_latency_ms Response time over the last interval, by request name.\n")
+                .append("# TYPE gatling_request_latency_ms gauge\n");
+        for (Map.Entry<String, RequestMetrics.Snapshot> entry : interval.entrySet()) {
+            Histogram all = entry.getValue().all();
+            String label = label(entry.getKey());
+            for (double quantile : QUANTILES) {
+                out.append("gatling_request_latency_ms{request=\"").append(label).append("\",quantile=\"").append(quantile).append("\"} ")
+                        .append(all.getTotalCount() == 0 ? 0 : all.getValueAtPercentile(quantile * 100)).append('\n');
+            }
+            out.append("gatling_request_latency_ms{request=\"").append(label).append("\",quantile=\"1.0\"} ")
+                    .append(all.getMaxValue()).append('\n');
+        }
+
+        out.append("# HELP gatling_request_throughput_rps Completed requests per second over the last interval.\n")
+                .append("# TYPE gatling_request_throughput_rps gauge\n");
+        for (Map.Entry<String, RequestMetrics.Snapshot> entry : interval.entrySet()) {
+            out.append("gatling_request_throughput_rps{request=\"").append(label(entry.getKey())).append("\"} ")
+                    .append(String.format("%.2f", entry.getValue().count() / seconds)).append('\n');
+        }
+
+        out.append("# HELP gatling_request_errors Failed requests over the last interval.\n")
+                .append("# TYPE gatling_request_errors gauge\n");
+        for (Map.Entry<String, RequestMetrics.Snapshot> entry : interval.entrySet()) {
+            out.append("gatling_request_errors{request=\"").append(label(entry.getKey())).append("\"} ")
+                    .append(entry.getValue().errors()).append('\n');
+        }
+
+        for (Gauges.Family family : Gauges.all()) {
+            render(out, family);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Appends a registered family, prefixed with "gatling_"; a family that wrote no sample is left out.
+     */
+    private static void render(StringBuilder out, Gauges.Family family) {
+        String metric = "gatling_" + family.metric();
+        StringBuilder samples = new StringBuilder();
+        family.samples().accept((value, labels) -> {
+            samples.append(metric);
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                samples.append(i == 0 ? '{' : ',').append(labels[i]).append("=\"").append(label(labels[i + 1])).append('"');
+            }
+            samples.append(labels.length > 1 ? "} " : " ")
+                    .append(value == Math.rint(value) && !Double.isInfinite(value) ? String.valueOf((long) value) : String.valueOf(value))
+                    .append('\n');
+        });
+        if (!samples.isEmpty()) {
+            out.append("# HELP ").append(metric).append(' ').append(family.help()).append('\n')
+                    .append("# TYPE ").append(metric).append(family.counter() ? " counter\n" : " gauge\n")
+                    .append(samples);
+        }
+    }
+
+    private static String logLine(RequestMetrics.Snapshot total, double seconds) {
+        Histogram all = total.all();
+        if (all.getTotalCount() == 0) {
+            return "live: no requests completed";
+        }
+        return String.format("live: %.1f req/s, ko %d (%.2f%%), p50 %d p95 %d p99 %d max %d ms",
+                total.count() / seconds, total.errors(), 100.0 * total.errors() / total.count(),
+                all.getValueAtPercentile(50), all.getValueAtPercentile(95),
+                all.getValueAtPercentile(99), all.getMaxValue());
+    }
+
+    /**
+     * Escapes a request name for use as a Prometheus label value.
+     */
+    private static String label(String name) {
+        return name.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class Totals {
+        private long ok;
+        private long ko;
+    }
+}
@@ -0,0 +1,346 @@
+package metrics;
+
+import common.Gauges;
+import common.Injectors;
+import io.gatling.javaapi.core.ChainBuilder;
+import io.gatling.javaapi.core.ClosedInjectionStep;
+import io.gatling.javaapi.core.OpenInjectionStep;
+import io.gatling.javaapi.core.PopulationBuilder;
+import io.gatling.javaapi.core.ProtocolBuilder;
+import io.gatling.javaapi.core.ScenarioBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static io.gatling.javaapi.core.CoreDsl.constantConcurrentUsers;
+import static io.gatling.javaapi.core.CoreDsl.constantUsersPerSec;
+import static io.gatling.javaapi.core.CoreDsl.nothingFor;
+import static io.gatling.javaapi.core.CoreDsl.scenario;
+
+public class Phases {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Phases.class);
+
+    public static final String WARM_UP = "warm-up";
+    public static final String RAMP = "ramp";
+    public static final String STEADY = "steady";
+    public static final String RAMP_DOWN = "ramp-down";
+
+    private static final List<String> NAMES = List.of(WARM_UP, RAMP, STEADY, RAMP_DOWN);
+
+    /**
+     * Prefix of the RequestMetrics series of warm-up requests, the same as their path in Gatling's statistics.
+     */
+    private static final String WARM_UP_PREFIX = WARM_UP + " / ";
+
+    private static volatile Phases running;
+
+    static {
+        Gauges.register("run_phase", "The phase the run is in (warm-up, ramp, steady, ramp-down), see Phases.", false, out -> {
+            String phase = current();
+            if (phase != null) {
+                out.sample(1, "phase", phase);
+            }
+        });
+    }
+
+    private final Duration warmUp;
+    private final Duration ramp;
+    private final Duration steady;
+
+    // set by start(); the boundaries and statistics are then guarded by stats, as the steady check reads them
+    private ScheduledExecutorService scheduler;
+    private volatile long startedAt;
+    private Map<String, RequestMetrics.Snapshot> lastTotals;
+    private long lastBoundary;
+    private final Map<String, Map<String, RequestMetrics.Snapshot>> stats = new LinkedHashMap<>();
+    private final Map<String, RequestMetrics.Period> periods = new LinkedHashMap<>();
+
+    private Phases(Duration warmUp, Duration ramp, Duration steady) {
+        this.warmUp = warmUp;
+        this.ramp = ramp;
+        this.steady = steady;
+    }
+
+    /**
+     * Declares the timeline of a run, from the start of the injection:
+     * warm-up, then ramp, then steady, then ramp-down until the last user is done.
+     *
+     * The warm-up lasts -Dphase.warmUpSeconds (default 30, 0 for none); it runs the same journeys as the
+     * measured injection, in populations of its own (see warmUp(...)), while the injector's JIT, the connections
+     * and TLS sessions and the target's caches warm up. The measured populations wait for it to end,
+     * see open(...) and closed(...).
+     *
+     * @param ramp   how long the measured injection ramps up, after the warm-up
+     * @param steady how long it then holds its load
+     */
+    public static Phases of(Duration ramp, Duration steady) {
+        return new Phases(Duration.ofSeconds(Long.getLong("phase.warmUpSeconds", 30)), ramp, steady);
+    }
+
+    public Duration warmUp() {
+        return warmUp;
+    }
+
+    /**
+     * @return how long after the start of the injection the steady phase ends
+     */
+    public Duration steadyEnd() {
+        return warmUp.plus(ramp).plus(steady);
+    }
+
+    /**
+     * Open injection profile of one measured population: nothing during the warm-up, then the measured steps.
+     *
+     * @param measured the measured injection steps, which start with the ramp phase
+     */
+    public List<OpenInjectionStep> open(OpenInjectionStep... measured) {
+        List<OpenInjectionStep> steps = new ArrayList<>();
+        if (!warmUp.isZero()) {
+            steps.add(nothingFor(warmUp));
+        }
+        steps.addAll(Arrays.asList(measured));
+        return steps;
+    }
+
+    /**
+     * Closed injection profile of one measured population: no user during the warm-up, then the measured steps.
+     *
+     * @param measured the measured injection steps, which start with the ramp phase
+     */
+    public List<ClosedInjectionStep> closed(ClosedInjectionStep... measured) {
+        List<ClosedInjectionStep> steps = new ArrayList<>();
+        if (!warmUp.isZero()) {
+            steps.add(constantConcurrentUsers(0).during(warmUp));
+        }
+        steps.addAll(Arrays.asList(measured));
+        return steps;
+    }
+
+    /**
+     * The warm-up population of one journey, at a constant arrival rate: a scenario of its own, named
+     * scenarioName + " (warm-up)", that runs the journey inside the WARM_UP group.
+     *
+     * Gatling reports the warm-up's requests under that group, so details(request) assertions only cover the
+     * measured requests (global() still covers them all), and RequestMetrics records them as
+     * "warm-up / request" (see measured(...)).
+     *
+     * @param usersPerSec arrival rate during the warm-up, for the whole run
+     * @return the population, to pass to setUp(...) with the measured ones; none without a warm-up
+     */
+    public List<PopulationBuilder> warmUp(String scenarioName, ChainBuilder journey, double usersPerSec, ProtocolBuilder protocol) {
+        double rate = Injectors.rate(usersPerSec);
+        if (warmUp.isZero() || rate <= 0) {
+            return List.of();
+        }
+        return List.of(warmUpScenario(scenarioName, journey).injectOpen(constantUsersPerSec(rate).during(warmUp)).protocols(protocol));
+    }
+
+    /**
+     * The warm-up population of one journey, with a constant number of users, see warmUp(...).
+     *
+     * @param users concurrent users during the warm-up, for the whole run; each injector runs at least one
+     */
+    public List<PopulationBuilder> warmUpClosed(String scenarioName, ChainBuilder journey, int users, ProtocolBuilder protocol) {
+        if (warmUp.isZero()) {
+            return List.of();
+        }
+        return List.of(warmUpScenario(scenarioName, journey)
+                .injectClosed(constantConcurrentUsers(Math.max(1, Injectors.users(users))).during(warmUp)).protocols(protocol));
+    }
+
+    private static ScenarioBuilder warmUpScenario(String scenarioName, ChainBuilder journey) {
+        return scenario(scenarioName + " (" + WARM_UP + ")")
+                .group(WARM_UP).on(journey);
+    }
+
+    /**
+     * @param groups the groups a request was sent in, as Gatling logs them
+     * @return whether the request belongs to a warm-up population
+     */
+    static boolean isWarmUp(scala.collection.immutable.List<String> groups) {
+        return groups.contains(WARM_UP);
+    }
+
+    /**
+     * @return the name RequestMetrics records a warm-up request under
+     */
+    static String warmUpName(String request) {
+        return WARM_UP_PREFIX + request;
+    }
+
+    /**
+     * @param stats per-request statistics, e.g. RequestMetrics.global().totals()
+     * @return the same without the warm-up requests, i.e. the measured traffic
+     */
+    public static Map<String, RequestMetrics.Snapshot> measured(Map<String, RequestMetrics.Snapshot> stats) {
+        Map<String, RequestMetrics.Snapshot> measured = new LinkedHashMap<>(stats);
+        measured.keySet().removeIf(name -> name.startsWith(WARM_UP_PREFIX));
+        return measured;
+    }
+
+    /**
+     * @return the phase of the running simulation, or null outside a run with phases
+     */
+    public static String current() {
+        Phases phases = running;
+        return phases == null ? null : phases.phaseAt(System.currentTimeMillis());
+    }
+
+    private String phaseAt(long epochMillis) {
+        long elapsed = epochMillis - startedAt;
+        if (elapsed < warmUp.toMillis()) {
+            return WARM_UP;
+        }
+        elapsed -= warmUp.toMillis();
+        if (elapsed < ramp.toMillis()) {
+            return RAMP;
+        }
+        return elapsed - ramp.toMillis() < steady.toMillis() ? STEADY : RAMP_DOWN;
+    }
+
+    /**
+     * Starts tagging requests with the phase they complete in. Called by PlaygroundSimulation.before(),
+     * right before the injection starts.
+     *
+     * At every phase boundary the run totals of RequestMetrics are taken, and the phase's statistics are the
+     * difference with the previous boundary: no per-request cost, and nothing of the warm-up leaks into
+     * the steady phase.
+     */
+    public synchronized void start() {
+        startedAt = System.currentTimeMillis();
+        synchronized (stats) {
+            lastBoundary = startedAt;
+            lastTotals = RequestMetrics.global().totals();
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "phases");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long boundary = 0;
+        for (Duration length : List.of(warmUp, ramp, steady)) {
+            boundary += length.toMillis();
+            long at = boundary;
+            scheduler.schedule(() -> close(startedAt + at), at, TimeUnit.MILLISECONDS);
+        }
+        running = this;
+        LOGGER.info("Phases: warm-up {} s, ramp {} s, steady {} s, then ramp-down",
+                warmUp.toSeconds(), ramp.toSeconds(), steady.toSeconds());
+    }
+
+    /**
+     * Closes the phase in progress and stops. Called by PlaygroundSimulation.after(), once the last user is done.
+     *
+     * @return the statistics of every phase that started, in timeline order
+     */
+    public synchronized Report stop() {
+        running = null;
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        close(System.currentTimeMillis());
+        synchronized (stats) {
+            return new Report(new LinkedHashMap<>(stats), new LinkedHashMap<>(periods));
+        }
+    }
+
+    /**
+     * Ends the phase that was in progress just before the given time; phases of no length (e.g. no warm-up)
+     * and boundaries already closed (the steady phase by its check, see steadyViolations) are skipped.
+     */
+    private void close(long boundary) {
+        synchronized (stats) {
+            if (boundary <= lastBoundary) {
+                return;
+            }
+            String phase = phaseAt(boundary - 1);
+            Map<String, RequestMetrics.Snapshot> totals = RequestMetrics.global().totals();
+            stats.put(phase, RequestMetrics.difference(totals, lastTotals));
+            periods.put(phase, new RequestMetrics.Period(lastBoundary, boundary));
+            lastTotals = totals;
+            lastBoundary = boundary;
+        }
+    }
+
+    /**
+     * Checks objectives on the steady phase only, failing the run through Gatling's assertions (see RunCheck):
+     * the verdict on steady-state performance, which the run's own assertions, over the ramp and ramp-down too,
+     * cannot give. Return it from PlaygroundSimulation.checks(), which runs it once the measured load has ended,
+     * e.g. at steadyEnd().
+     *
+     * In a multi-injector run there is none: each injector only sees its share of the traffic, and the launcher
+     * checks the objectives on the merged results (see Slo.assertions()).
+     *
+     * @param objectives checked on the measured requests of the steady phase; also missed if it has no request at all
+     * @return the check, or none
+     */
+    public List<RunCheck> steadyChecks(List<Slo> objectives) {
+        if (Injectors.count() > 1 || objectives.isEmpty()) {
+            return List.of();
+        }
+        return List.of(new RunCheck("steady-state objectives", () -> steadyViolations(objectives)));
+    }
+
+    private List<String> steadyViolations(List<Slo> objectives) {
+        Map<String, RequestMetrics.Snapshot> steadyStats;
+        double steadySeconds;
+        synchronized (stats) {
+            if (!stats.containsKey(STEADY) && lastTotals != null && STEADY.equals(phaseAt(lastBoundary))) {
+                // checked as the steady phase ends, before the scheduler closed it
+                close(startedAt + steadyEnd().toMillis());
+            }
+            if (!stats.containsKey(STEADY)) {
+                return List.of("the steady phase has not started");
+            }
+            steadyStats = stats.get(STEADY);
+            steadySeconds = periods.get(STEADY).seconds();
+        }
+        steadyStats = measured(steadyStats);
+        if (steadyStats.isEmpty() || LatencyReport.total(steadyStats).count() == 0) {
+            return List.of("no request completed in the steady phase");
+        }
+        List<String> violations = new ArrayList<>();
+        for (Slo slo : objectives) {
+            violations.addAll(slo.violations(steadyStats, steadySeconds));
+        }
+        return violations;
+    }
+
+    /**
+     * Per-phase statistics of a run and when each phase started and ended, for the report and for the
+     * launcher's throughput objectives (see PlaygroundSimulation.after()): the verdict comes from Gatling's
+     * assertions, the steady phase's included (see steadyChecks).
+     */
+    public record Report(Map<String, Map<String, RequestMetrics.Snapshot>> stats, Map<String, RequestMetrics.Period> periods) {
+
+        /**
+         * @return one latency table per phase, warm-up first
+         */
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            for (String phase : NAMES) {
+                Map<String, RequestMetrics.Snapshot> phaseStats = stats.get(phase);
+                if (phaseStats != null) {
+                    out.append(String.format(Locale.ROOT, "%n%s (%.0f s):%n", phase, periods.get(phase).seconds()))
+                            .append(LatencyReport.table(phaseStats));
+                }
+            }
+            return out.toString();
+        }
+    }
+}
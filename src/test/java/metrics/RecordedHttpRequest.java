@@ -0,0 +1,158 @@
+package metrics;
+
+import io.gatling.commons.stats.OK$;
+import io.gatling.commons.stats.Status;
+import io.gatling.core.CoreComponents;
+import io.gatling.core.action.Action;
+import io.gatling.core.actor.ActorRef;
+import io.gatling.core.controller.Controller;
+import io.gatling.core.protocol.Protocol;
+import io.gatling.core.protocol.ProtocolComponents;
+import io.gatling.core.protocol.ProtocolComponentsRegistry;
+import io.gatling.core.protocol.ProtocolKey;
+import io.gatling.core.session.GroupBlock;
+import io.gatling.core.stats.StatsEngine;
+import io.gatling.core.structure.ScenarioContext;
+import io.gatling.http.engine.response.DefaultStatsProcessor;
+import io.gatling.http.engine.tx.HttpTxExecutor;
+import io.gatling.http.protocol.HttpComponents;
+import io.gatling.http.protocol.HttpProtocol;
+import io.gatling.javaapi.core.ActionBuilder;
+import io.gatling.javaapi.http.HttpRequestActionBuilder;
+import io.netty.channel.ChannelHandler;
+import scala.Function1;
+import scala.Option;
+import scala.collection.immutable.List;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * An HTTP request whose statistics, as Gatling logs them, are also handed to RequestMetrics.
+ *
+ * Gatling gives no way to listen to its StatsEngine, so the request is built against a StatsEngine that forwards
+ * every call to Gatling's own and records the responses on the way (see RequestMetrics.onResponse and onCrash).
+ * Its HTTP components are the scenario's (same engine, connection pools and caches), but with a transaction
+ * executor of their own that reports to that StatsEngine. These are built once per scenario, which Gatling builds
+ * one context for, and shared by all its recorded requests. The outcome and timestamps are then exactly the ones
+ * of Gatling's reports: a failed check, a timeout or a request that could not be built are failures, and the
+ * session's failure status is left alone.
+ *
+ * Built against Gatling 3.14's internal constructors (CoreComponents, ScenarioContext, HttpTxExecutor):
+ * check this class when upgrading Gatling.
+ */
+final class RecordedHttpRequest implements ActionBuilder {
+
+    /**
+     * The recording context of each scenario, by Gatling's context of that scenario; weak, so the contexts
+     * of a finished simulation go with it (see launcher.SimulationBatch).
+     */
+    private static final Map<ScenarioContext, ScenarioContext> RECORDING = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final HttpRequestActionBuilder request;
+
+    RecordedHttpRequest(HttpRequestActionBuilder request) {
+        this.request = request;
+    }
+
+    @Override
+    public io.gatling.core.action.builder.ActionBuilder asScala() {
+        return this::build;
+    }
+
+    private Action build(ScenarioContext ctx, Action next) {
+        return request.asScala().build(RECORDING.computeIfAbsent(ctx, RecordedHttpRequest::recording), next);
+    }
+
+    private static ScenarioContext recording(ScenarioContext ctx) {
+        CoreComponents core = ctx.coreComponents();
+        StatsEngine stats = new Recording(core.statsEngine());
+        CoreComponents recorded = new CoreComponents(core.actorSystem(), core.eventLoopGroup(), core.controller(),
+                core.throttler(), stats, core.clock(), core.exit(), core.configuration());
+
+        ProtocolKey<HttpProtocol, HttpComponents> key = HttpProtocol.HttpProtocolKey();
+        HttpComponents http = ctx.protocolComponentsRegistry().components(key);
+        HttpComponents recordedHttp = new HttpComponents(http.httpProtocol(), http.httpEngine(), http.httpCaches(),
+                new HttpTxExecutor(recorded, http.httpEngine(), http.httpCaches(), new DefaultStatsProcessor(stats), http.httpProtocol()));
+
+        scala.collection.mutable.HashMap<ProtocolKey<?, ?>, Function1<Protocol, ProtocolComponents>> factories = new scala.collection.mutable.HashMap<>();
+        factories.update(key, protocol -> recordedHttp);
+        scala.collection.immutable.Map<Class<? extends Protocol>, Protocol> protocols =
+                new scala.collection.immutable.Map.Map1<>(HttpProtocol.class, http.httpProtocol());
+        ProtocolComponentsRegistry registry = new ProtocolComponentsRegistry(recorded, protocols, factories, new scala.collection.mutable.HashMap<>());
+
+        return new ScenarioContext(recorded, registry, ctx.pauseType(), ctx.throttled());
+    }
+
+    /**
+     * Gatling's StatsEngine, plus the responses of one request going to RequestMetrics.
+     */
+    private static final class Recording implements StatsEngine {
+
+        private final StatsEngine gatling;
+
+        private Recording(StatsEngine gatling) {
+            this.gatling = gatling;
+        }
+
+        @Override
+        public void logResponse(String scenario, List<String> groups, String requestName, long startTimestamp, long endTimestamp,
+                                Status status, Option<String> responseCode, Option<String> message) {
+            gatling.logResponse(scenario, groups, requestName, startTimestamp, endTimestamp, status, responseCode, message);
+            RequestMetrics.onResponse(groups, requestName, startTimestamp, endTimestamp, OK$.MODULE$.equals(status));
+        }
+
+        @Override
+        public void logRequestCrash(String scenario, List<String> groups, String requestName, String error) {
+            gatling.logRequestCrash(scenario, groups, requestName, error);
+            RequestMetrics.onCrash(groups, requestName);
+        }
+
+        @Override
+        public void start() {
+            gatling.start();
+        }
+
+        @Override
+        public void stop(ActorRef<Controller.Command> controller, Option<Exception> exception) {
+            gatling.stop(controller, exception);
+        }
+
+        @Override
+        public void logUserStart(String scenario) {
+            gatling.logUserStart(scenario);
+        }
+
+        @Override
+        public void logUserEnd(String scenario) {
+            gatling.logUserEnd(scenario);
+        }
+
+        @Override
+        public void logGroupEnd(String scenario, GroupBlock groupBlock, long exitTimestamp) {
+            gatling.logGroupEnd(scenario, groupBlock, exitTimestamp);
+        }
+
+        @Override
+        public ChannelHandler statsChannelHandler(String name) {
+            return gatling.statsChannelHandler(name);
+        }
+
+        @Override
+        public void logTcpConnectAttempt(InetSocketAddress remoteAddress) {
+            gatling.logTcpConnectAttempt(remoteAddress);
+        }
+
+        @Override
+        public void logTcpConnect(String name, long startTimestamp, long endTimestamp, Option<String> error) {
+            gatling.logTcpConnect(name, startTimestamp, endTimestamp, error);
+        }
+
+        @Override
+        public void logTlsHandshake(String name, long startTimestamp, long endTimestamp, Option<String> error) {
+            gatling.logTlsHandshake(name, startTimestamp, endTimestamp, error);
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package metrics;
+
+import common.SendSchedule;
+import io.gatling.javaapi.core.ChainBuilder;
+import io.gatling.javaapi.core.Session;
+import io.gatling.javaapi.http.HttpRequestActionBuilder;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import static io.gatling.javaapi.core.CoreDsl.exec;
+
+public class RequestMetrics {
+
+    /**
+     * Latencies are recorded in milliseconds (Gatling's timestamp resolution), up to one hour.
+     *
+     * The histograms of RequestMetrics are auto-resizing and start small: they only grow to the largest latency
+     * actually recorded, so a series whose requests stay under a second holds a few KB rather than the
+     * ~100 KB of a histogram sized for the whole hour.
+     */
+    static final long HIGHEST_LATENCY_MS = 3_600_000;
+    static final int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * Recorders per series and outcome, a power of two: at least one per Gatling event loop (one per core by default).
+     */
+    static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+    /**
+     * Whether the session had failed before a scheduled request, while timed() clears the status to read the
+     * request's own outcome.
+     */
+    private static final String FAILED_BEFORE = "metrics.failedBefore";
+
+    private static final RequestMetrics GLOBAL = new RequestMetrics();
+    private static final RequestMetrics CORRECTED = new RequestMetrics();
+
+    private final ConcurrentHashMap<String, Series> series = new ConcurrentHashMap<>();
+    private final AtomicLong firstRequestAt = new AtomicLong();
+
+    /**
+     * The process-wide metrics that the API chains record into.
+     */
+    public static RequestMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Latencies of the requests that had a scheduled send time (see common.SendSchedule), by request name,
+     * measured from that time rather than from the actual send: what users would have seen had the injector
+     * sent every request on time, i.e. corrected for coordinated omission.
+     * The scenarios start with SendSchedule.arrival(), so each user's first request is included, from the
+     * user's first action; a delay before that action is not seen (Gatling does not expose the due start time).
+     */
+    public static RequestMetrics corrected() {
+        return CORRECTED;
+    }
+
+    /**
+     * Sends a request and records its latency and outcome under its name.
+     *
+     * Build every HTTP request through it, from one name constant per request:
+     *   RequestMetrics.timed(CREATE_POST, name -> http(name).post("/posts").check(status().in(201, 200)))
+     *
+     * The latency and outcome are the ones Gatling logs for its own statistics (see RecordedHttpRequest):
+     * a request is ok unless one of its checks failed, it got no response or it could not be built, so these
+     * histograms, and the SLOs, baselines, phases and live metrics built on them, count the same failures as
+     * Gatling's reports. Redirects are recorded under the names Gatling gives them. The series is resolved once
+     * here, so the per-request cost is one wait-free histogram update. The corrected series of a name is only
+     * created by its first scheduled request.
+     *
+     * A request sent after a SendSchedule pause is also recorded in corrected(), from its scheduled send time
+     * until the response has been processed (the step after the request runs right then, on the user's event loop),
+     * and its send delay goes to InjectorHealth; the schedule is then consumed, so only the first request after
+     * the pause counts as scheduled. Its outcome is read from the session: the failure status is cleared for the
+     * request, which Gatling marks as failed if it fails, then restored, so the session ends up as Gatling would
+     * have left it. The user's event loop is handed to InjectorHealth, which tracks the loops, and the outcome is
+     * appended to the ResultsLog when one is open.
+     * The send time of the run's first request is kept as firstRequestAt(), for startup measurements.
+     * Requests of the warm-up populations (see Phases.warmUp) are recorded as "warm-up / name", as Gatling does,
+     * so Phases.measured(...) can leave them out.
+     *
+     * @param name    the request name, passed on to request
+     * @param request builds the HTTP request for a given name, e.g. name -> http(name).get("/posts")
+     * @return a ChainBuilder that sends the request and records it
+     */
+    public static ChainBuilder timed(String name, Function<String, HttpRequestActionBuilder> request) {
+        GLOBAL.series(name);
+        ResultsLog.intern(name);
+        return exec(RequestMetrics::beforeSend)
+                .exec(new RecordedHttpRequest(request.apply(name)))
+                .exec(session -> afterResponse(session, name));
+    }
+
+    private static Session beforeSend(Session session) {
+        long scheduled = SendSchedule.scheduledAt(session);
+        if (scheduled <= 0) {
+            return session;
+        }
+        InjectorHealth.onScheduled(System.currentTimeMillis() - scheduled);
+        return session.set(FAILED_BEFORE, session.isFailed()).markAsSucceeded();
+    }
+
+    private static Session afterResponse(Session session, String name) {
+        InjectorHealth.onResponse(session);
+        long scheduled = SendSchedule.scheduledAt(session);
+        if (scheduled <= 0) {
+            return session;
+        }
+        String recordedAs = session.groups().contains(Phases.WARM_UP) ? Phases.warmUpName(name) : name;
+        CORRECTED.series(recordedAs).record(System.currentTimeMillis() - scheduled, !session.isFailed());
+        Session restored = session.getBoolean(FAILED_BEFORE) ? session.markAsFailed() : session;
+        return SendSchedule.sent(restored.remove(FAILED_BEFORE));
+    }
+
+    /**
+     * Records one response as Gatling logged it, see RecordedHttpRequest.
+     *
+     * @param groups the groups the request was sent in, outermost first
+     */
+    static void onResponse(scala.collection.immutable.List<String> groups, String name, long start, long end, boolean ok) {
+        if (GLOBAL.firstRequestAt.get() == 0) {
+            GLOBAL.firstRequestAt.compareAndSet(0, start);
+        }
+        record(groups, name, start, end, ok);
+    }
+
+    /**
+     * Records a request that could not be built or sent, as a failure without latency, as Gatling does.
+     */
+    static void onCrash(scala.collection.immutable.List<String> groups, String name) {
+        long now = System.currentTimeMillis();
+        record(groups, name, now, now, false);
+    }
+
+    private static void record(scala.collection.immutable.List<String> groups, String name, long start, long end, boolean ok) {
+        String recordedAs = Phases.isWarmUp(groups) ? Phases.warmUpName(name) : name;
+        GLOBAL.series(recordedAs).record(end - start, ok);
+        ResultsLog.record(ResultsLog.intern(recordedAs), start, end, ok);
+    }
+
+    /**
+     * Records one request outcome.
+     *
+     * @param name      the request name, e.g. "[GET] All Posts"
+     * @param latencyMs the response time in milliseconds
+     * @param ok        false if the request failed
+     */
+    public void record(String name, long latencyMs, boolean ok) {
+        series(name).record(latencyMs, ok);
+    }
+
+    Series series(String name) {
+        return series.computeIfAbsent(name, Series::new);
+    }
+
+    /**
+     * @return when the first request with a response was sent, in epoch milliseconds; 0 if none yet
+     */
+    public long firstRequestAt() {
+        return firstRequestAt.get();
+    }
+
+    /**
+     * Forgets everything recorded so far, so the next simulation run in the same JVM starts from nothing
+     * (see launcher.SimulationBatch). Only call it while no request is in flight.
+     */
+    public synchronized void reset() {
+        for (Series s : series.values()) {
+            s.drain();
+            s.okPending.reset();
+            s.koPending.reset();
+            s.okTotal.reset();
+            s.koTotal.reset();
+        }
+        firstRequestAt.set(0);
+    }
+
+    /**
+     * Moves everything recorded since the previous call into the run totals and returns it.
+     *
+     * @return per-request histograms for the interval just ended, sorted by name
+     */
+    public synchronized Map<String, Snapshot> collect() {
+        Map<String, Snapshot> interval = new TreeMap<>();
+        for (Series s : series.values()) {
+            interval.put(s.name, s.collect());
+        }
+        return interval;
+    }
+
+    /**
+     * @return per-request histograms for the whole run so far, sorted by name
+     */
+    public synchronized Map<String, Snapshot> totals() {
+        Map<String, Snapshot> totals = new TreeMap<>();
+        for (Series s : series.values()) {
+            s.drain();
+            totals.put(s.name, new Snapshot(copyOf(s.okTotal), copyOf(s.koTotal)));
+        }
+        return totals;
+    }
+
+    /**
+     * Returns what was recorded between two calls to totals(), e.g. to leave a warm-up out of a measurement.
+     *
+     * Unlike collect(), this does not consume anything, so it can be used while LiveMetrics is running.
+     *
+     * @param later   totals taken at the end of the window
+     * @param earlier totals taken at its start
+     * @return per-request histograms for the window, sorted by name
+     */
+    public static Map<String, Snapshot> difference(Map<String, Snapshot> later, Map<String, Snapshot> earlier) {
+        Map<String, Snapshot> window = new TreeMap<>();
+        for (Map.Entry<String, Snapshot> entry : later.entrySet()) {
+            Snapshot snapshot = new Snapshot(copyOf(entry.getValue().ok()), copyOf(entry.getValue().ko()));
+            Snapshot before = earlier.get(entry.getKey());
+            if (before != null) {
+                snapshot.ok().subtract(before.ok());
+                snapshot.ko().subtract(before.ko());
+            }
+            window.put(entry.getKey(), snapshot);
+        }
+        return window;
+    }
+
+    /**
+     * Writes per-request histograms as an HdrHistogram log readable by readLog, covering the period from
+     * startedAt until now.
+     *
+     * @param startedAt the start of the period the histograms cover, in epoch milliseconds
+     */
+    public static void writeLog(Path file, Map<String, Snapshot> snapshots, long startedAt) {
+        writeLog(file, snapshots, startedAt, System.currentTimeMillis());
+    }
+
+    /**
+     * Writes per-request histograms as an HdrHistogram log, one tagged histogram per request name and outcome,
+     * so logs from several injectors can be merged exactly with readLog. Each histogram carries the period
+     * it covers, which readLog returns, e.g. to turn its counts into a throughput.
+     *
+     * @param startedAt the start of the period the histograms cover, in epoch milliseconds
+     * @param endedAt   its end
+     */
+    public static void writeLog(Path file, Map<String, Snapshot> snapshots, long startedAt, long endedAt) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            HistogramLogWriter writer = new HistogramLogWriter(file.toFile());
+            try {
+                writer.outputLogFormatVersion();
+                writer.outputStartTime(startedAt);
+                writer.outputLegend();
+                for (Map.Entry<String, Snapshot> entry : snapshots.entrySet()) {
+                    write(writer, "ok:" + entry.getKey(), entry.getValue().ok(), startedAt, endedAt);
+                    write(writer, "ko:" + entry.getKey(), entry.getValue().ko(), startedAt, endedAt);
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void write(HistogramLogWriter writer, String tag, Histogram histogram, long startedAt, long endedAt) {
+        Histogram tagged = histogram.copy();
+        tagged.setTag(URLEncoder.encode(tag, StandardCharsets.UTF_8));
+        tagged.setStartTimeStamp(startedAt);
+        tagged.setEndTimeStamp(endedAt);
+        writer.outputIntervalHistogram(tagged);
+    }
+
+    /**
+     * Reads a log written by writeLog and adds its histograms into the given per-request snapshots.
+     *
+     * @return the period the log's histograms cover, or null if it has none
+     */
+    public static Period readLog(Path file, Map<String, Snapshot> into) {
+        try {
+            HistogramLogReader reader = new HistogramLogReader(file.toFile());
+            try {
+                Period period = null;
+                EncodableHistogram encoded;
+                while ((encoded = reader.nextIntervalHistogram()) != null) {
+                    Histogram histogram = (Histogram) encoded;
+                    String tag = URLDecoder.decode(histogram.getTag(), StandardCharsets.UTF_8);
+                    Snapshot snapshot = into.computeIfAbsent(tag.substring(3), name -> Snapshot.empty());
+                    (tag.startsWith("ok:") ? snapshot.ok() : snapshot.ko()).add(histogram);
+                    period = new Period(histogram.getStartTimeStamp(), histogram.getEndTimeStamp()).span(period);
+                }
+                return period;
+            } finally {
+                reader.close();
+            }
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The period a log's histograms cover, in epoch milliseconds (see writeLog and readLog).
+     */
+    public record Period(long startedAt, long endedAt) {
+
+        /**
+         * @return its length, at least a millisecond, for a throughput
+         */
+        public double seconds() {
+            return Math.max(1, endedAt - startedAt) / 1000.0;
+        }
+
+        /**
+         * @return the shortest period covering this one and the other, e.g. the windows of several injectors
+         */
+        public Period span(Period other) {
+            return other == null ? this
+                    : new Period(Math.min(startedAt, other.startedAt), Math.max(endedAt, other.endedAt));
+        }
+    }
+
+    /**
+     * @return an empty auto-resizing histogram
+     */
+    static Histogram newHistogram() {
+        return new Histogram(SIGNIFICANT_DIGITS);
+    }
+
+    /**
+     * @return an auto-resizing copy of the histogram, which can take any other histogram's values
+     */
+    static Histogram copyOf(Histogram histogram) {
+        Histogram copy = newHistogram();
+        copy.add(histogram);
+        return copy;
+    }
+
+    /**
+     * Latencies of successful (ok) and failed (ko) requests for one request name.
+     */
+    public record Snapshot(Histogram ok, Histogram ko) {
+
+        public static Snapshot empty() {
+            return new Snapshot(newHistogram(), newHistogram());
+        }
+
+        public long count() {
+            return ok.getTotalCount() + ko.getTotalCount();
+        }
+
+        public long errors() {
+            return ko.getTotalCount();
+        }
+
+        /**
+         * @return ok and ko latencies combined
+         */
+        public Histogram all() {
+            Histogram all = copyOf(ok);
+            all.add(ko);
+            return all;
+        }
+
+        public void add(Snapshot other) {
+            ok.add(other.ok);
+            ko.add(other.ko);
+        }
+    }
+
+    /**
+     * The latencies of one request name, striped by recording thread. A Recorder is wait-free for any number of
+     * concurrent writers, but writers sharing one still contend on its counters' cache lines, so each event loop
+     * records into its stripe's recorders, merged when drained. A Recorder auto-resizes, so its two
+     * internal histograms only grow to the largest latency recorded. Not a packed one: two writers resizing
+     * a packed recorder at once can spin forever (HdrHistogram 2.2.2), freezing the event loops.
+     */
+    static final class Series {
+
+        private final String name;
+        private final AtomicReferenceArray<Stripe> stripes = new AtomicReferenceArray<>(STRIPES);
+        private final Histogram okTotal = newHistogram();
+        private final Histogram koTotal = newHistogram();
+
+        /**
+         * Drained since the last collect(); totals() drains too, without taking the interval away from collect().
+         */
+        private final Histogram okPending = newHistogram();
+        private final Histogram koPending = newHistogram();
+
+        private Series(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Records on the calling thread's stripe, so event loops recording the same request name do not contend
+         * on one recorder.
+         */
+        void record(long latencyMs, boolean success) {
+            long value = Math.max(0, Math.min(latencyMs, HIGHEST_LATENCY_MS));
+            stripe().recorder(success).recordValue(value);
+        }
+
+        private Stripe stripe() {
+            int index = (int) Thread.currentThread().threadId() & (STRIPES - 1);
+            Stripe stripe = stripes.get(index);
+            if (stripe == null) {
+                stripes.compareAndSet(index, null, new Stripe());
+                stripe = stripes.get(index);
+            }
+            return stripe;
+        }
+
+        /**
+         * Returns everything drained since the previous call as one interval snapshot.
+         * Only called under the owning RequestMetrics' lock.
+         */
+        private Snapshot collect() {
+            drain();
+            Snapshot interval = new Snapshot(copyOf(okPending), copyOf(koPending));
+            okPending.reset();
+            koPending.reset();
+            return interval;
+        }
+
+        /**
+         * Moves what the stripes took since the last drain into the pending interval and the totals.
+         * Only called under the owning RequestMetrics' lock.
+         */
+        private void drain() {
+            for (int i = 0; i < STRIPES; i++) {
+                Stripe stripe = stripes.get(i);
+                if (stripe != null) {
+                    stripe.drainInto(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * The recorders of one series on the threads sharing a stripe. Interval histograms can only be recycled by
+     * the recorder that produced them, hence one recycled histogram per recorder. The failure recorder is only
+     * created by the stripe's first failure, as most stripes never see one.
+     */
+    private static final class Stripe {
+
+        private final Recorder ok = new Recorder(SIGNIFICANT_DIGITS);
+        private volatile Recorder ko;
+        private Histogram okRecycled;
+        private Histogram koRecycled;
+
+        private Recorder recorder(boolean success) {
+            if (success) {
+                return ok;
+            }
+            Recorder recorder = ko;
+            if (recorder == null) {
+                synchronized (this) {
+                    if (ko == null) {
+                        ko = new Recorder(SIGNIFICANT_DIGITS);
+                    }
+                    recorder = ko;
+                }
+            }
+            return recorder;
+        }
+
+        private void drainInto(Series series) {
+            okRecycled = ok.getIntervalHistogram(okRecycled);
+            series.okPending.add(okRecycled);
+            series.okTotal.add(okRecycled);
+            Recorder failures = ko;
+            if (failures != null) {
+                koRecycled = failures.getIntervalHistogram(koRecycled);
+                series.koPending.add(koRecycled);
+                series.koTotal.add(koRecycled);
+            }
+        }
+    }
+}
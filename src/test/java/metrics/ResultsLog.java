@@ -0,0 +1,232 @@
+package metrics;
+
+import common.Injectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compact, append-only binary log of every request, for runs too long for Gatling's simulation.log.
+ *
+ * File layout:
+ * - header: the magic bytes "GRL1", then the run start time (8 bytes, epoch milliseconds)
+ * - blocks: a type byte, the payload length (4 bytes), then the payload
+ *   - NAMES: one interned request name: varint id, varint length, UTF-8 bytes
+ *   - RECORDS: a base timestamp (8 bytes), then one record per request:
+ *     varint (name id << 1 | failed), varint zigzag(start - previous start), varint response time
+ *
+ * Request names are interned when the chains are built (RequestMetrics.timed), so a record is typically
+ * 4 to 6 bytes. Each event-loop thread fills its own 64 KiB buffer and appends it as one block when full,
+ * so recording never contends with other threads. ResultsReport reads the file back.
+ */
+public class ResultsLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultsLog.class);
+
+    static final byte[] MAGIC = {'G', 'R', 'L', '1'};
+    static final byte NAMES = 1;
+    static final byte RECORDS = 2;
+    static final int BLOCK_HEADER = 5;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Worst case of one record: three varints of at most 10 bytes (name, timestamp delta, response time).
+     */
+    private static final int MAX_RECORD = 30;
+
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static final List<String> NAMES_BY_ID = new ArrayList<>();
+
+    private static volatile ResultsLog running;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final List<Buffer> buffers = new ArrayList<>();
+    private final ThreadLocal<Buffer> buffer = ThreadLocal.withInitial(this::newBuffer);
+    private final LongAdder records = new LongAdder();
+
+    private ResultsLog(Path file) throws IOException {
+        this.file = file;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length + Long.BYTES).put(MAGIC).putLong(System.currentTimeMillis()).flip();
+        write(header);
+    }
+
+    /**
+     * Starts logging every request to -Dmetrics.resultsFile, if set.
+     *
+     * Pair it with -Dgatling.noReports=true on long runs, and build the report from this file with ResultsReport.
+     * In a multi-injector run, injector N writes to the file name plus ".N".
+     */
+    public static void startIfEnabled() {
+        String path = System.getProperty("metrics.resultsFile");
+        if (path == null) {
+            return;
+        }
+        if (Injectors.count() > 1) {
+            path = path + "." + Injectors.index();
+        }
+        synchronized (NAMES_BY_ID) {
+            if (running != null) {
+                return;
+            }
+            try {
+                ResultsLog log = new ResultsLog(Path.of(path));
+                for (int id = 0; id < NAMES_BY_ID.size(); id++) {
+                    log.writeName(id, NAMES_BY_ID.get(id));
+                }
+                running = log;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create results file " + path, e);
+            }
+        }
+        LOGGER.info("Logging results to {}", path);
+    }
+
+    /**
+     * Flushes every thread's buffer and closes the file. Call it once no request is in flight any more.
+     */
+    public static void stop() {
+        ResultsLog log;
+        synchronized (NAMES_BY_ID) {
+            log = running;
+            running = null;
+        }
+        if (log == null) {
+            return;
+        }
+        try {
+            synchronized (log.buffers) {
+                for (Buffer buffer : log.buffers) {
+                    buffer.flush();
+                }
+            }
+            log.channel.close();
+            LOGGER.info("Logged {} requests to {} ({} bytes)", log.records.sum(), log.file, Files.size(log.file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the id of this request name, assigned on first use
+     */
+    static int intern(String name) {
+        Integer id = IDS.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (NAMES_BY_ID) {
+            return IDS.computeIfAbsent(name, key -> {
+                int next = NAMES_BY_ID.size();
+                NAMES_BY_ID.add(key);
+                if (running != null) {
+                    running.writeName(next, key);
+                }
+                return next;
+            });
+        }
+    }
+
+    /**
+     * Appends one request, if logging is on. Called by RequestMetrics for every response Gatling logs.
+     */
+    static void record(int nameId, long startMillis, long endMillis, boolean ok) {
+        ResultsLog log = running;
+        if (log != null) {
+            log.buffer.get().append(nameId, startMillis, endMillis, ok);
+        }
+    }
+
+    private Buffer newBuffer() {
+        Buffer created = new Buffer();
+        synchronized (buffers) {
+            buffers.add(created);
+        }
+        return created;
+    }
+
+    private void writeName(int id, String name) {
+        byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_HEADER + 10 + utf8.length);
+        block.put(NAMES).putInt(0);
+        putVarint(block, id);
+        putVarint(block, utf8.length);
+        block.put(utf8);
+        block.putInt(1, block.position() - BLOCK_HEADER).flip();
+        write(block);
+    }
+
+    private void write(ByteBuffer block) {
+        try {
+            synchronized (channel) {
+                while (block.hasRemaining()) {
+                    channel.write(block);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write results file " + file, e);
+        }
+    }
+
+    static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * One thread's pending records. Synchronized only so stop() can flush it from another thread;
+     * the lock is otherwise always taken by the same thread.
+     */
+    private final class Buffer {
+
+        private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        private long previousStart;
+        private long count;
+
+        synchronized void append(int nameId, long startMillis, long endMillis, boolean ok) {
+            if (bytes.position() == 0) {
+                bytes.put(RECORDS).putInt(0).putLong(startMillis);
+                previousStart = startMillis;
+            }
+            long delta = startMillis - previousStart;
+            putVarint(bytes, ((long) nameId << 1) | (ok ? 0 : 1));
+            putVarint(bytes, (delta << 1) ^ (delta >> 63));
+            putVarint(bytes, Math.max(0, endMillis - startMillis));
+            previousStart = startMillis;
+            count++;
+            if (bytes.remaining() < MAX_RECORD) {
+                flush();
+            }
+        }
+
+        synchronized void flush() {
+            if (bytes.position() == 0) {
+                return;
+            }
+            bytes.putInt(1, bytes.position() - BLOCK_HEADER).flip();
+            write(bytes);
+            bytes.clear();
+            records.add(count);
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package metrics;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Builds the latency report of a run from its ResultsLog file in one streaming pass.
+ *
+ * The file is memory-mapped in windows of up to 1 GiB and decoded record by record into one pair of
+ * HdrHistograms per request name, so memory depends on the number of request names, not of requests.
+ *
+ * Usage:
+ *   mvn -Presults test-compile exec:exec -Dresults.file=target/results.bin
+ * or, with the test classpath at hand:
+ *   java -cp ... metrics.ResultsReport target/results.bin [more files...] [--hlog target/results.hlog]
+ *
+ * Several files, e.g. one per injector, are merged by request name.
+ * --hlog also writes the per-request histograms as an HdrHistogram log, the format RequestMetrics.readLog,
+ * the injector launcher and Baseline work with.
+ */
+public class ResultsReport {
+
+    private static final long WINDOW = 1L << 30;
+
+    private final List<String> names = new ArrayList<>();
+    private RequestMetrics.Snapshot[] snapshots = new RequestMetrics.Snapshot[16];
+    private long startedAt;
+    private long firstStart = Long.MAX_VALUE;
+    private long lastEnd = Long.MIN_VALUE;
+    private long requests;
+
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Path hlog = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--hlog") && i + 1 < args.length) {
+                hlog = Path.of(args[++i]);
+            } else if (args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            } else {
+                files.add(Path.of(args[i]));
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: ResultsReport <results file>... [--hlog <file>]");
+            System.exit(1);
+        }
+        long began = System.nanoTime();
+        ResultsReport report = new ResultsReport();
+        report.startedAt = Long.MAX_VALUE;
+        Map<String, RequestMetrics.Snapshot> snapshots = new TreeMap<>();
+        for (Path file : files) {
+            ResultsReport part = read(file);
+            for (Map.Entry<String, RequestMetrics.Snapshot> entry : part.snapshots().entrySet()) {
+                snapshots.computeIfAbsent(entry.getKey(), name -> RequestMetrics.Snapshot.empty()).add(entry.getValue());
+            }
+            report.startedAt = Math.min(report.startedAt, part.startedAt);
+            report.firstStart = Math.min(report.firstStart, part.firstStart);
+            report.lastEnd = Math.max(report.lastEnd, part.lastEnd);
+            report.requests += part.requests;
+        }
+        System.out.println(report.summary());
+        System.out.print(LatencyReport.table(snapshots));
+        if (hlog != null) {
+            RequestMetrics.writeLog(hlog, snapshots, report.startedAt);
+        }
+        System.out.printf(Locale.ROOT, "Read in %.2f s%n", (System.nanoTime() - began) / 1e9);
+    }
+
+    /**
+     * Reads a ResultsLog file.
+     *
+     * @throws IllegalArgumentException if the file is not a results log, or is truncated mid-block
+     */
+    public static ResultsReport read(Path file) throws IOException {
+        ResultsReport report = new ResultsReport();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, ResultsLog.MAGIC.length + Long.BYTES));
+            byte[] magic = new byte[ResultsLog.MAGIC.length];
+            try {
+                header.get(magic);
+                report.startedAt = header.getLong();
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException(file + " is not a results log");
+            }
+            if (!Arrays.equals(magic, ResultsLog.MAGIC)) {
+                throw new IllegalArgumentException(file + " is not a results log");
+            }
+            long position = ResultsLog.MAGIC.length + Long.BYTES;
+            while (position < size) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+                int consumed = report.readBlocks(window);
+                if (consumed == 0) {
+                    throw new IllegalArgumentException(file + " is truncated at byte " + position);
+                }
+                position += consumed;
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Decodes every complete block of the window.
+     *
+     * @return the bytes consumed; the next window starts at the first incomplete block
+     */
+    private int readBlocks(ByteBuffer window) {
+        while (window.remaining() >= ResultsLog.BLOCK_HEADER) {
+            int start = window.position();
+            byte type = window.get();
+            int length = window.getInt();
+            if (window.remaining() < length) {
+                window.position(start);
+                break;
+            }
+            ByteBuffer payload = window.slice(window.position(), length);
+            window.position(window.position() + length);
+            switch (type) {
+                case ResultsLog.NAMES -> readName(payload);
+                case ResultsLog.RECORDS -> readRecords(payload);
+                default -> throw new IllegalArgumentException("Unknown block type " + type + " at offset " + start);
+            }
+        }
+        return window.position();
+    }
+
+    private void readName(ByteBuffer payload) {
+        int id = (int) getVarint(payload);
+        byte[] utf8 = new byte[(int) getVarint(payload)];
+        payload.get(utf8);
+        while (names.size() <= id) {
+            names.add(null);
+        }
+        names.set(id, new String(utf8, StandardCharsets.UTF_8));
+        if (snapshots.length <= id) {
+            snapshots = Arrays.copyOf(snapshots, Math.max(id + 1, snapshots.length * 2));
+        }
+        snapshots[id] = RequestMetrics.Snapshot.empty();
+    }
+
+    private void readRecords(ByteBuffer payload) {
+        long start = payload.getLong();
+        while (payload.hasRemaining()) {
+            long name = getVarint(payload);
+            long delta = getVarint(payload);
+            start += (delta >>> 1) ^ -(delta & 1);
+            long latency = Math.min(getVarint(payload), RequestMetrics.HIGHEST_LATENCY_MS);
+            RequestMetrics.Snapshot snapshot = snapshots[(int) (name >>> 1)];
+            ((name & 1) == 0 ? snapshot.ok() : snapshot.ko()).recordValue(latency);
+            firstStart = Math.min(firstStart, start);
+            lastEnd = Math.max(lastEnd, start + latency);
+            requests++;
+        }
+    }
+
+    private static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * @return per-request histograms, sorted by name; names that never got a request are left out
+     */
+    public Map<String, RequestMetrics.Snapshot> snapshots() {
+        Map<String, RequestMetrics.Snapshot> byName = new TreeMap<>();
+        for (int id = 0; id < names.size(); id++) {
+            if (names.get(id) != null && snapshots[id].count() > 0) {
+                byName.put(names.get(id), snapshots[id]);
+            }
+        }
+        return byName;
+    }
+
+    /**
+     * @return request count, time span and mean throughput of the run
+     */
+    public String summary() {
+        if (requests == 0) {
+            return "No requests";
+        }
+        double seconds = Math.max(1, lastEnd - firstStart) / 1000.0;
+        return String.format(Locale.ROOT, "%d requests over %.1f s, %.1f req/s", requests, seconds, requests / seconds);
+    }
+}
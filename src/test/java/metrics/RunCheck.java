@@ -0,0 +1,61 @@
+package metrics;
+
+import io.gatling.javaapi.core.Assertion;
+import io.gatling.javaapi.core.PopulationBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static io.gatling.javaapi.core.CoreDsl.atOnceUsers;
+import static io.gatling.javaapi.core.CoreDsl.details;
+import static io.gatling.javaapi.core.CoreDsl.exec;
+import static io.gatling.javaapi.core.CoreDsl.pause;
+import static io.gatling.javaapi.core.CoreDsl.scenario;
+
+/**
+ * A check of the run itself rather than of the target's responses, e.g. that the injector was not the
+ * bottleneck (InjectorHealth.CHECK), failing the run through Gatling's assertions.
+ *
+ * Gatling only fails a run, with its exit code, on assertions over its own statistics; an exception thrown once
+ * the run is over, from Simulation.after(), is logged but does not change the outcome. So the check runs as a
+ * population of one user, whose group, named after the check, fails if there is any problem, and assertion()
+ * requires that group to have no failure.
+ *
+ * @param name     the check's name, also its scenario's and its group's
+ * @param problems what is wrong, one line each; empty when the check passes
+ */
+public record RunCheck(String name, Supplier<List<String>> problems) {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RunCheck.class);
+
+    /**
+     * @param ended polled every second from the start of the injection; the check runs once it returns true,
+     *              e.g. at the end of the measured load
+     * @return the population running the check, to pass to setUp(...) with the simulation's own
+     */
+    public PopulationBuilder population(BooleanSupplier ended) {
+        return scenario(name)
+                .asLongAs(session -> !ended.getAsBoolean()).on(pause(Duration.ofSeconds(1)))
+                .group(name).on(exec(session -> {
+                    List<String> found = problems.get();
+                    if (found.isEmpty()) {
+                        LOGGER.info("Check {} passed", name);
+                        return session;
+                    }
+                    LOGGER.warn("Check {} FAILED: {}", name, String.join("; ", found));
+                    return session.markAsFailed();
+                }))
+                .injectOpen(atOnceUsers(1));
+    }
+
+    /**
+     * @return the assertion that fails the run when the check found a problem, to pass to setUp(...).assertions(...)
+     */
+    public Assertion assertion() {
+        return details(name).failedRequests().count().is(0L);
+    }
+}
@@ -0,0 +1,180 @@
+package metrics;
+
+import common.Injectors;
+import io.gatling.javaapi.core.Assertion;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static io.gatling.javaapi.core.CoreDsl.details;
+
+public class Slo {
+
+    private final String request;
+    private final Map<Double, Integer> percentiles;
+    private final double minRequestsPerSec;
+    private final double maxFailedPercent;
+
+    private Slo(String request, Map<Double, Integer> percentiles, double minRequestsPerSec, double maxFailedPercent) {
+        this.request = request;
+        this.percentiles = percentiles;
+        this.minRequestsPerSec = minRequestsPerSec;
+        this.maxFailedPercent = maxFailedPercent;
+    }
+
+    /**
+     * Starts the objectives of one request, by the name given to http(...), e.g.
+     *   Slo.request("[PUT] Update Post").p95(300).p99(800).maxFailedPercent(1)
+     *
+     * Percentile objectives, unlike a max response time, are not broken by a single outlier
+     * such as one GC pause.
+     */
+    public static Slo request(String name) {
+        return new Slo(name, Map.of(), 0, -1);
+    }
+
+    /**
+     * Starts the objectives of all requests together, e.g. Slo.global().p99(1500).maxFailedPercent(5)
+     *
+     * Gatling's global() statistics include the warm-up requests (see Phases.warmUp), so a simulation with
+     * a warm-up sets its objectives per request instead.
+     */
+    public static Slo global() {
+        return new Slo(null, Map.of(), 0, -1);
+    }
+
+    public Slo p50(int maxMillis) {
+        return percentile(50, maxMillis);
+    }
+
+    public Slo p95(int maxMillis) {
+        return percentile(95, maxMillis);
+    }
+
+    public Slo p99(int maxMillis) {
+        return percentile(99, maxMillis);
+    }
+
+    /**
+     * @param percentile e.g. 99.9
+     * @param maxMillis  the response time that percentile must stay below
+     */
+    public Slo percentile(double percentile, int maxMillis) {
+        Map<Double, Integer> next = new LinkedHashMap<>(percentiles);
+        next.put(percentile, maxMillis);
+        return new Slo(request, next, minRequestsPerSec, maxFailedPercent);
+    }
+
+    /**
+     * @param requestsPerSec the throughput of the whole run, over all injectors
+     */
+    public Slo minRequestsPerSec(double requestsPerSec) {
+        return new Slo(request, percentiles, requestsPerSec, maxFailedPercent);
+    }
+
+    public Slo maxFailedPercent(double percent) {
+        return new Slo(request, percentiles, minRequestsPerSec, percent);
+    }
+
+    /**
+     * Returns the objectives as Gatling assertions on this request's statistics.
+     *
+     * In a multi-injector run there are none: each injector only sees its share of the traffic, so the
+     * launcher checks the objectives on the merged results instead (see violations and launcher.InjectorLauncher).
+     *
+     * @return the assertions, to pass to setUp(...).assertions(...)
+     */
+    public List<Assertion> assertions() {
+        List<Assertion> assertions = new ArrayList<>();
+        if (Injectors.count() > 1) {
+            return assertions;
+        }
+        for (Map.Entry<Double, Integer> entry : percentiles.entrySet()) {
+            assertions.add(scope().responseTime().percentile(entry.getKey()).lt(entry.getValue()));
+        }
+        if (minRequestsPerSec > 0) {
+            assertions.add(scope().requestsPerSec().gte(minRequestsPerSec));
+        }
+        if (maxFailedPercent >= 0) {
+            assertions.add(scope().failedRequests().percent().lte(maxFailedPercent));
+        }
+        return assertions;
+    }
+
+    private Assertion.WithPath scope() {
+        // unqualified, global() would be this class's factory
+        return request == null ? io.gatling.javaapi.core.CoreDsl.global() : details(request);
+    }
+
+    /**
+     * Checks the objectives against histograms of our own, e.g. the results merged from several injectors
+     * (see launcher.InjectorLauncher), the same way the Gatling assertions check the run.
+     *
+     * @param stats   per-request histograms
+     * @param seconds the period they cover, for the throughput objective
+     * @return the objectives missed, one line each; none if the request has no data
+     */
+    public List<String> violations(Map<String, RequestMetrics.Snapshot> stats, double seconds) {
+        return violations(stats, stats, seconds);
+    }
+
+    /**
+     * Same as violations(stats, seconds), with the throughput objective checked on other histograms,
+     * e.g. those of the steady phase alone, whose requests all fall within its start and end.
+     *
+     * @param rated   per-request histograms for the throughput objective
+     * @param seconds the period those cover
+     */
+    public List<String> violations(Map<String, RequestMetrics.Snapshot> stats, Map<String, RequestMetrics.Snapshot> rated,
+                                   double seconds) {
+        RequestMetrics.Snapshot snapshot = request == null ? LatencyReport.total(stats) : stats.get(request);
+        String name = request == null ? "All Requests" : request;
+        List<String> violations = new ArrayList<>();
+        if (snapshot == null || snapshot.count() == 0) {
+            return violations;
+        }
+        Histogram all = snapshot.all();
+        for (Map.Entry<Double, Integer> entry : percentiles.entrySet()) {
+            long value = all.getValueAtPercentile(entry.getKey());
+            if (value >= entry.getValue()) {
+                violations.add(String.format(Locale.ROOT, "%s: p%s %d ms, objective below %d ms",
+                        name, LatencyReport.number(entry.getKey()), value, entry.getValue()));
+            }
+        }
+        RequestMetrics.Snapshot ratedSnapshot = request == null ? LatencyReport.total(rated) : rated.get(request);
+        double rate = (ratedSnapshot == null ? 0 : ratedSnapshot.count()) / seconds;
+        if (minRequestsPerSec > 0 && rate < Injectors.rate(minRequestsPerSec)) {
+            violations.add(String.format(Locale.ROOT, "%s: %.2f req/s, objective at least %.2f req/s",
+                    name, rate, Injectors.rate(minRequestsPerSec)));
+        }
+        double failedPercent = 100.0 * snapshot.errors() / snapshot.count();
+        if (maxFailedPercent >= 0 && failedPercent > maxFailedPercent) {
+            violations.add(String.format(Locale.ROOT, "%s: %.2f%% failed, objective at most %s%%",
+                    name, failedPercent, LatencyReport.number(maxFailedPercent)));
+        }
+        return violations;
+    }
+
+    /**
+     * @return the assertions of all given objectives, to pass to setUp(...).assertions(...)
+     */
+    public static List<Assertion> assertions(Slo... slos) {
+        return assertions(List.of(slos));
+    }
+
+    /**
+     * @return the assertions of all given objectives, to pass to setUp(...).assertions(...)
+     */
+    public static List<Assertion> assertions(List<Slo> slos) {
+        List<Assertion> assertions = new ArrayList<>();
+        for (Slo slo : slos) {
+            assertions.addAll(slo.assertions());
+        }
+        return assertions;
+    }
+}
@@ -0,0 +1,239 @@
+package metrics;
+
+import common.Injectors;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class SoakMonitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SoakMonitor.class);
+
+    /**
+     * Fails the run if drift was detected in any window so far; added by SoakSimulation with -Dsoak.failOnDrift=true.
+     */
+    public static final RunCheck DRIFT = new RunCheck("soak drift", SoakMonitor::drift);
+
+    private static SoakMonitor running;
+
+    private final Path dir;
+    private final long windowMillis;
+    private final int referenceWindow;
+    private final double tolerance;
+    private final Baseline drift;
+    private final ScheduledExecutorService scheduler;
+
+    // only touched by the scheduler thread, then by stop() once it has shut down
+    private Map<String, RequestMetrics.Snapshot> lastTotals;
+    private Map<String, RequestMetrics.Snapshot> reference;
+    private Map<String, RequestMetrics.Snapshot> previous;
+    private double referenceRate;
+    private long windowStart = System.currentTimeMillis();
+    private int window;
+    private volatile int driftedWindows;
+
+    private SoakMonitor(Path dir, long windowMillis, int referenceWindow, double tolerance, double z) {
+        this.dir = dir;
+        this.windowMillis = windowMillis;
+        this.referenceWindow = referenceWindow;
+        this.tolerance = tolerance;
+        this.drift = new Baseline(tolerance, z);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "soak-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts cutting the run into windows of -Dsoak.windowMinutes (default 60).
+     *
+     * Only the run totals kept by RequestMetrics (one pair of fixed-size histograms per request name) and
+     * three window snapshots are held in memory, however long the run. At the end of every window:
+     * - window-NNN.txt gets the window's latency table and its drift findings
+     * - soak-trend.csv gets one line per request name: count, errors, throughput, p50, p95, p99, max
+     * - the window is compared with the previous one (sudden change) and with the reference window
+     *   -Dsoak.referenceWindow (default 2, the first one being warm-up) for slow degradation,
+     *   using Baseline's confidence-interval test with -Dsoak.tolerance (default 0.10) and -Dsoak.z (default 2.58);
+     *   a drop in throughput beyond the tolerance is flagged too. Findings go to soak-drift.log and the log.
+     *
+     * Files go to -Dsoak.dir (default target/soak/SimulationName-timestamp), in an injector-N subfolder
+     * per injector in a multi-injector run.
+     */
+    public static synchronized void start(String simulationName) {
+        if (running != null) {
+            return;
+        }
+        Path dir = Path.of(System.getProperty("soak.dir", "target/soak/" + simulationName + "-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"))));
+        if (Injectors.count() > 1) {
+            dir = dir.resolve("injector-" + Injectors.index());
+        }
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create soak report folder " + dir, e);
+        }
+        running = new SoakMonitor(dir,
+                TimeUnit.MINUTES.toMillis(Long.getLong("soak.windowMinutes", 60)),
+                Integer.getInteger("soak.referenceWindow", 2),
+                Double.parseDouble(System.getProperty("soak.tolerance", "0.10")),
+                Double.parseDouble(System.getProperty("soak.z", "2.58")));
+        running.begin();
+        LOGGER.info("Soak reports every {} min in {}", running.windowMillis / 60_000, dir);
+    }
+
+    /**
+     * Closes the last, partial window and stops.
+     *
+     * @return the number of windows in which drift was detected
+     */
+    public static synchronized int stop() {
+        SoakMonitor monitor = running;
+        if (monitor == null) {
+            return 0;
+        }
+        running = null;
+        monitor.scheduler.shutdownNow();
+        try {
+            monitor.scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        monitor.roll(false);
+        LOGGER.info("Soak run: {} windows, drift in {}; reports in {}", monitor.window, monitor.driftedWindows, monitor.dir);
+        return monitor.driftedWindows;
+    }
+
+    /**
+     * @return one line if drift was detected in a window of the running monitor, none otherwise
+     */
+    private static synchronized List<String> drift() {
+        SoakMonitor monitor = running;
+        if (monitor == null || monitor.driftedWindows == 0) {
+            return List.of();
+        }
+        return List.of("drift detected in " + monitor.driftedWindows + " soak windows, see " + monitor.dir.resolve("soak-drift.log"));
+    }
+
+    private void begin() {
+        lastTotals = RequestMetrics.global().totals();
+        append("soak-trend.csv", "window,start,end,request,count,errors,rps,p50,p95,p99,max\n");
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                roll(true);
+            } catch (RuntimeException e) {
+                // a failed window must not cancel the schedule
+                LOGGER.warn("Soak window failed", e);
+            }
+        }, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param complete false for the last window, cut short by the end of the run, whose throughput says nothing
+     */
+    private void roll(boolean complete) {
+        long end = System.currentTimeMillis();
+        Map<String, RequestMetrics.Snapshot> totals = RequestMetrics.global().totals();
+        Map<String, RequestMetrics.Snapshot> current = RequestMetrics.difference(totals, lastTotals);
+        lastTotals = totals;
+        long start = windowStart;
+        windowStart = end;
+        window++;
+
+        double seconds = Math.max(1, end - start) / 1000.0;
+        RequestMetrics.Snapshot all = LatencyReport.total(current);
+        double rate = all.count() / seconds;
+
+        StringBuilder trend = new StringBuilder();
+        trend.append(trendLine(start, end, "All Requests", all, seconds));
+        for (Map.Entry<String, RequestMetrics.Snapshot> entry : current.entrySet()) {
+            trend.append(trendLine(start, end, entry.getKey(), entry.getValue(), seconds));
+        }
+        append("soak-trend.csv", trend.toString());
+
+        List<String> findings = new ArrayList<>();
+        if (previous != null) {
+            for (String line : drift.compare(current, previous)) {
+                findings.add("vs window " + (window - 1) + ": " + line);
+            }
+        }
+        if (reference != null) {
+            for (String line : drift.compare(current, reference)) {
+                findings.add("vs window " + referenceWindow + ": " + line);
+            }
+            if (complete && rate < referenceRate * (1 - tolerance)) {
+                findings.add(String.format(Locale.ROOT, "vs window %d: throughput %.1f req/s, reference %.1f req/s",
+                        referenceWindow, rate, referenceRate));
+            }
+        }
+        if (window == referenceWindow && complete) {
+            reference = current;
+            referenceRate = rate;
+        }
+        previous = current;
+
+        StringBuilder report = new StringBuilder()
+                .append(String.format("Window %d: %s to %s (%.0f s)%n%n", window, Instant.ofEpochMilli(start), Instant.ofEpochMilli(end), seconds))
+                .append(LatencyReport.table(current)).append('\n');
+        if (findings.isEmpty()) {
+            report.append("No drift\n");
+        } else {
+            driftedWindows++;
+            report.append("Drift:\n  ").append(String.join("\n  ", findings)).append('\n');
+            StringBuilder log = new StringBuilder();
+            for (String finding : findings) {
+                log.append("window ").append(window).append(' ').append(finding).append('\n');
+            }
+            append("soak-drift.log", log.toString());
+        }
+        try {
+            Files.writeString(dir.resolve(String.format("window-%03d.txt", window)), report);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Histogram latencies = all.all();
+        LOGGER.info(String.format(Locale.ROOT, "soak window %d: %.1f req/s, ko %d, p50 %d p95 %d p99 %d max %d ms, %s",
+                window, rate, all.errors(), latencies.getValueAtPercentile(50), latencies.getValueAtPercentile(95),
+                latencies.getValueAtPercentile(99), latencies.getMaxValue(),
+                findings.isEmpty() ? "no drift" : findings.size() + " drift findings"));
+        for (String finding : findings) {
+            LOGGER.warn("soak window {} drift {}", window, finding);
+        }
+    }
+
+    private String trendLine(long start, long end, String name, RequestMetrics.Snapshot snapshot, double seconds) {
+        Histogram latencies = snapshot.all();
+        return String.format(Locale.ROOT, "%d,%s,%s,\"%s\",%d,%d,%.2f,%d,%d,%d,%d%n",
+                window, Instant.ofEpochMilli(start), Instant.ofEpochMilli(end), name.replace("\"", "\"\""),
+                snapshot.count(), snapshot.errors(), snapshot.count() / seconds,
+                latencies.getValueAtPercentile(50), latencies.getValueAtPercentile(95),
+                latencies.getValueAtPercentile(99), latencies.getMaxValue());
+    }
+
+    private void append(String file, String text) {
+        try {
+            Files.writeString(dir.resolve(file), text, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
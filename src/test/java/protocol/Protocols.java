@@ -2,14 +2,40 @@ package protocol;
 
 import io.gatling.javaapi.http.HttpDsl;
 import io.gatling.javaapi.http.HttpProtocolBuilder;
+import server.LocalStandInServer;
 
 public class Protocols {
 
+    /**
+     * True when the run targets the in-process stand-in server instead of the public APIs.
+     *
+     * Enabled with -Dtarget=local (or the "local" Maven profile).
+     * The stand-in port can be changed with -Dlocal.port=NNNN.
+     */
+    public static final boolean LOCAL = "local".equals(System.getProperty("target"));
+
+    /**
+     * Base URL of the local stand-in server (see server.LocalStandInServer).
+     */
+    public static final String LOCAL_BASE_URL = System.getProperty("local.baseUrl",
+            "http://127.0.0.1:" + Integer.getInteger("local.port", LocalStandInServer.DEFAULT_PORT));
+
+    /**
+     * True when the stand-in should run inside the simulation JVM.
+     * Pointing -Dlocal.baseUrl at a stand-in started elsewhere turns this off.
+     */
+    public static final boolean LOCAL_EMBEDDED = LOCAL && System.getProperty("local.baseUrl") == null;
+
+    /**
+     * Base URL of the ReqRes API, also used by calls made outside Gatling (e.g. the shared token pool).
+     */
+    public static final String REQRES_BASE_URL = LOCAL ? LOCAL_BASE_URL : "https://reqres.in";
+
     /**
      * HTTP protocol configuration for ReqRes API.
      *
      * This sets up:
-     * - Base URL: https://reqres.in
+     * - Base URL: https://reqres.in (or the local stand-in when LOCAL is set)
      * - Accept and Content-Type headers as application/json
      * - A custom User-Agent header for identification
      * - Caching disabled (optional)
@@ -17,7 +43,7 @@ public class Protocols {
      * Use this when testing endpoints from the ReqRes API.
      */
     public static HttpProtocolBuilder reqResProtocol = HttpDsl.http
-            .baseUrl("https://reqres.in")
+            .baseUrl(REQRES_BASE_URL)
             .acceptHeader("application/json")
             .contentTypeHeader("application/json")
             .userAgentHeader("Gatling Performance Test")
@@ -27,13 +53,13 @@ public class Protocols {
      * HTTP protocol configuration for JSONPlaceholder API.
      *
      * This sets up:
-     * - Base URL: https://jsonplaceholder.typicode.com
+     * - Base URL: https://jsonplaceholder.typicode.com (or the local stand-in when LOCAL is set)
      * - Accept and Content-Type headers as application/json
      *
      * Use this when testing endpoints from the JSONPlaceholder API.
      */
     public static HttpProtocolBuilder jsonPlaceholderProtocol = HttpDsl.http
-            .baseUrl("https://jsonplaceholder.typicode.com")
+            .baseUrl(LOCAL ? LOCAL_BASE_URL : "https://jsonplaceholder.typicode.com")
             .acceptHeader("application/json")
             .contentTypeHeader("application/json");
 }
\ No newline at end of file
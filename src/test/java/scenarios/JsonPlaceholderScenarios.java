@@ -3,10 +3,43 @@ package scenarios;
 import static io.gatling.javaapi.core.CoreDsl.*;
 import api.JsonPlaceholderApi;
 import common.DataFeeder;
+import common.Injectors;
+import common.MappedJsonFeeder;
+import common.SendSchedule;
+import common.SyntheticPostFeeder;
+import common.WorkloadModel;
+import io.gatling.javaapi.core.ChainBuilder;
+import io.gatling.javaapi.core.FeederBuilder;
 import io.gatling.javaapi.core.ScenarioBuilder;
 
+import java.time.Duration;
+
 public class JsonPlaceholderScenarios {
 
+    /**
+     * The pause between the steps of the scripted scenarios. It goes through SendSchedule, so the request after it
+     * has a scheduled send time, and is also recorded from that time (see metrics.RequestMetrics.corrected()).
+     * Every scenario starts with SendSchedule.arrival(), so a user's first request is scheduled as well.
+     */
+    private static final Duration THINK_TIME = Duration.ofSeconds(1);
+
+    /**
+     * Feeds one record of data/posts.json.
+     *
+     * When several injectors share the run (see Injectors), each one reads its own slice of the file
+     * (DataFeeder.getPartitionedJsonFeeder), so no two injectors create, update or delete with the same record.
+     *
+     * @param random true to pick records at random, false to read them in circles
+     */
+    private static ChainBuilder feedPosts(boolean random) {
+        if (Injectors.count() > 1) {
+            MappedJsonFeeder slice = DataFeeder.getPartitionedJsonFeeder("posts.json");
+            return feed(random ? slice.random() : slice.circular());
+        }
+        FeederBuilder.FileBased<Object> posts = DataFeeder.getJsonFeeder("posts.json");
+        return feed(random ? posts.random() : posts.circular());
+    }
+
     /**
      * Full CRUD flow using JSONPlaceholder.
      *
@@ -22,16 +55,25 @@ public class JsonPlaceholderScenarios {
      * Feeder file: data/posts.json (randomized)
      */
     public static ScenarioBuilder fullCrudFlow = scenario("Full CRUD with JSONPlaceholder")
-            .feed(DataFeeder.getJsonFeeder("posts.json").random())
-            .exec(JsonPlaceholderApi.getPosts)
-            .pause(1)
-            .exec(JsonPlaceholderApi.getPostById)
-            .pause(1)
-            .exec(JsonPlaceholderApi.createPost)
-            .pause(1)
-            .exec(JsonPlaceholderApi.updatePost)
-            .pause(1)
-            .exec(JsonPlaceholderApi.deletePost);
+            .exec(fullCrud());
+
+    /**
+     * The journey of fullCrudFlow, e.g. for its warm-up population (see metrics.Phases.warmUp).
+     * Each call feeds from a feeder of its own.
+     */
+    public static ChainBuilder fullCrud() {
+        return exec(SendSchedule.arrival())
+                .exec(feedPosts(true))
+                .exec(JsonPlaceholderApi.getPosts)
+                .exec(SendSchedule.pauseFor(THINK_TIME))
+                .exec(JsonPlaceholderApi.getPostById)
+                .exec(SendSchedule.pauseFor(THINK_TIME))
+                .exec(JsonPlaceholderApi.createPost)
+                .exec(SendSchedule.pauseFor(THINK_TIME))
+                .exec(JsonPlaceholderApi.updatePost)
+                .exec(SendSchedule.pauseFor(THINK_TIME))
+                .exec(JsonPlaceholderApi.deletePost);
+    }
 
     /**
      * Repeats the create post operation 3 times using random data each time.
@@ -42,16 +84,26 @@ public class JsonPlaceholderScenarios {
      * Useful for testing multiple variations of input.
      */
     public static ScenarioBuilder repeatWithRandomData = scenario("Repeat 3 times with Random Data")
+            .exec(SendSchedule.arrival())
             .repeat(3).on(
-                    feed(DataFeeder.getJsonFeeder("posts.json").random())
+                    feedPosts(true)
                             .exec(JsonPlaceholderApi.createPost)
             );
 
     public static ScenarioBuilder repeatWithRandomDataClosed = scenario("Repeat with Random Data - Closed")
-            .repeat(3).on(
-                    feed(DataFeeder.getJsonFeeder("posts.json").random())
-                            .exec(JsonPlaceholderApi.createPost)
-            );
+            .exec(repeatCreatePost());
+
+    /**
+     * Three posts created with random data, the journey of repeatWithRandomDataClosed.
+     * Each call feeds from a feeder of its own.
+     */
+    public static ChainBuilder repeatCreatePost() {
+        return exec(SendSchedule.arrival())
+                .repeat(3).on(
+                        feedPosts(true)
+                                .exec(JsonPlaceholderApi.createPost)
+                );
+    }
 
     /**
      * Uses a circular feeder with 3 users defined in the JSON file.
@@ -62,7 +114,8 @@ public class JsonPlaceholderScenarios {
      * This setup ensures even data distribution among users.
      */
     public static ScenarioBuilder threeUsersCircular = scenario("3 Users Circular Feeder")
-            .feed(DataFeeder.getJsonFeeder("posts.json").circular())
+            .exec(SendSchedule.arrival())
+            .exec(feedPosts(false))
             .exec(JsonPlaceholderApi.createPost);
 
     /**
@@ -72,30 +125,66 @@ public class JsonPlaceholderScenarios {
      * This simulates a user performing the same task multiple times with different input.
      */
     public static ScenarioBuilder threeUsersThreeIterations = scenario("3 Users × 3 Iterations Each")
+            .exec(SendSchedule.arrival())
             .repeat(3).on(
-                    feed(DataFeeder.getJsonFeeder("posts.json").random())
+                    feedPosts(true)
                             .exec(JsonPlaceholderApi.createPost)
             );
 
     /**
-     * Scenario demonstrating different user actions with weighted probabilities.
+     * Scenario demonstrating realistic user journeys driven by a workload model.
      *
-     * Users randomly perform one of the following actions per iteration:
-     *  - 70% chance to create a new post
-     *  - 20% chance to update an existing post
-     *  - 10% chance to delete a post
+     * Each virtual user walks a Markov chain over the JsonPlaceholderApi chains,
+     * e.g. "get all posts, open one, update it, leave":
+     *  - the first action and every next one are sampled from the transition weights
+     *  - each action is followed by a think time drawn from the state's distribution
+     *  - the session ends on an "exit" transition
      *
-     * This simulates realistic user behavior with varied traffic patterns,
-     * useful for testing how the system handles different operations under load.
+     * Model file: data/workload_model.json (retune the traffic mix there, no recompilation needed)
      *
      * Feeder:
-     *  - Uses randomized data from posts.json feeder to supply required fields.
+     *  - Uses randomized data from posts.json feeder to supply required fields, on every step.
      */
     public static ScenarioBuilder randomUserActions = scenario("Random User Actions with Probabilities")
-            .feed(DataFeeder.getJsonFeeder("posts.json").random())
-            .randomSwitch().on(
-                    percent(70.0).then(exec(JsonPlaceholderApi.createPost)),
-                    percent(20.0).then(exec(JsonPlaceholderApi.updatePost)),
-                    percent(10.0).then(exec(JsonPlaceholderApi.deletePost))
-            );
-}
\ No newline at end of file
+            .exec(randomActions());
+
+    /**
+     * The journey of randomUserActions. Each call feeds from a feeder of its own.
+     */
+    public static ChainBuilder randomActions() {
+        return exec(SendSchedule.arrival())
+                .exec(WorkloadModel.load("workload_model.json").chain(
+                        feedPosts(true)
+                ));
+    }
+
+    /**
+     * Create, update and delete flow using generated data instead of a feeder file.
+     *
+     * Each virtual user gets its own deterministic stream of unique records
+     * (title, body, userId, id) derived from its user id, so target-side caches
+     * see millions of distinct keys instead of the same three rows.
+     *
+     * Generator: SyntheticPostFeeder (seed 1, unbounded cardinality)
+     */
+    public static ScenarioBuilder syntheticUniqueCrud = scenario("Synthetic Unique Create/Update/Delete")
+            .exec(SendSchedule.arrival())
+            .exec(SyntheticPostFeeder.posts().forEachUser())
+            .exec(JsonPlaceholderApi.createPost)
+            .exec(SendSchedule.pauseFor(THINK_TIME))
+            .exec(JsonPlaceholderApi.updatePost)
+            .exec(SendSchedule.pauseFor(THINK_TIME))
+            .exec(JsonPlaceholderApi.deletePost);
+
+    /**
+     * Uploads a generated JSON array of posts, then the same amount of generated bytes.
+     *
+     * Payload size: -Dupload.bytes (default 10 MiB); endpoint: -Dupload.path (default /uploads,
+     * so run it against the local stand-in or a target with an upload endpoint).
+     */
+    public static ScenarioBuilder largeUploads = scenario("Large Generated Uploads")
+            .exec(SendSchedule.arrival())
+            .exec(JsonPlaceholderApi.uploadGeneratedPosts)
+            .exec(SendSchedule.pauseFor(THINK_TIME))
+            .exec(JsonPlaceholderApi.uploadGeneratedBytes);
+}
@@ -0,0 +1,249 @@
+package scenarios;
+
+import api.JsonPlaceholderApi;
+import api.ReqResApi;
+import common.JsonFieldExtractor;
+import common.ReplayLog;
+import common.TrafficReplay;
+import io.gatling.javaapi.core.ChainBuilder;
+import io.gatling.javaapi.core.Choice;
+import io.gatling.javaapi.core.ScenarioBuilder;
+import io.gatling.javaapi.http.HttpRequestActionBuilder;
+import metrics.RequestMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.gatling.javaapi.core.CoreDsl.*;
+import static io.gatling.javaapi.http.HttpDsl.http;
+
+public class ReplayScenarios {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplayScenarios.class);
+
+    private static final Pattern POST_PATH = Pattern.compile("/posts/(\\d+)");
+    private static final JsonFieldExtractor TITLE = JsonFieldExtractor.compile("$.title");
+    private static final JsonFieldExtractor BODY = JsonFieldExtractor.compile("$.body");
+    private static final JsonFieldExtractor USER_ID = JsonFieldExtractor.compile("$.userId");
+    private static final JsonFieldExtractor EMAIL = JsonFieldExtractor.compile("$.email");
+    private static final JsonFieldExtractor PASSWORD = JsonFieldExtractor.compile("$.password");
+
+    private static final List<String> METHODS = List.of("GET", "POST", "PUT", "PATCH", "DELETE", "HEAD", "OPTIONS");
+
+    /**
+     * Entries skipped because their method is not one of METHODS, by method as recorded.
+     */
+    private static final Map<String, LongAdder> UNSUPPORTED = new ConcurrentHashMap<>();
+
+    /**
+     * Sends the current entry through the matching API chain, so replayed traffic is checked and named
+     * exactly like the scripted scenarios:
+     * - GET /posts, GET /posts/{id}, POST /posts, PUT /posts/{id}, DELETE /posts/{id} -> JsonPlaceholderApi
+     * - POST /api/login, GET /api/users?page=2 -> ReqResApi.login / getUsers
+     * Any other entry (or one whose body lacks the fields a chain needs) is sent as recorded, as a generic
+     * request named "[REPLAY] METHOD", forwarding Content-Type, Accept, Authorization and x-api-key.
+     * Methods are matched in upper case, whatever the log's case; entries with a method outside METHODS are not
+     * replayed at all, see unsupported().
+     */
+    private static final ChainBuilder DISPATCH = doSwitchOrElse(session -> session.getString("replay.route")).on(
+            onCase("getPosts").then(JsonPlaceholderApi.getPosts),
+            onCase("getPostById").then(JsonPlaceholderApi.getPostById),
+            onCase("createPost").then(JsonPlaceholderApi.createPost),
+            onCase("updatePost").then(JsonPlaceholderApi.updatePost),
+            onCase("deletePost").then(JsonPlaceholderApi.deletePost),
+            // login only runs when there is no token yet: drop the one saved by the previous login entry
+            onCase("login").then(exec(session -> session.remove("authToken")).exec(ReqResApi.login)),
+            onCase("getUsers").then(ReqResApi.getUsers)
+    ).orElse(generic());
+
+    /**
+     * Replays the entries of a recorded log that target JSONPlaceholder (anything outside /api/).
+     *
+     * @param file    a JSON Lines or HAR log, see ReplayLog
+     * @param speedup 1 for the recorded pace, 24 to replay a day in an hour
+     */
+    public static TrafficReplay jsonPlaceholderTraffic(Path file, double speedup) {
+        return TrafficReplay.of(file, speedup, entry -> !isReqRes(entry) && supported(entry), ReplayScenarios::attributes);
+    }
+
+    /**
+     * Replays the entries of the same log that target ReqRes (/api/...), in step with the JSONPlaceholder ones.
+     *
+     * @param jsonPlaceholder the replay of jsonPlaceholderTraffic(...)
+     */
+    public static TrafficReplay reqResTraffic(TrafficReplay jsonPlaceholder) {
+        return jsonPlaceholder.alongside(entry -> isReqRes(entry) && supported(entry), ReplayScenarios::attributes);
+    }
+
+    /**
+     * @return how many entries were skipped for an unsupported method, e.g. "none" or "CONNECT: 3, TRACE: 1"
+     */
+    public static String unsupported() {
+        if (UNSUPPORTED.isEmpty()) {
+            return "none";
+        }
+        StringBuilder summary = new StringBuilder();
+        new TreeMap<>(UNSUPPORTED).forEach((method, count) ->
+                summary.append(summary.isEmpty() ? "" : ", ").append(method).append(": ").append(count.sum()));
+        return summary.toString();
+    }
+
+    /**
+     * Zeroes the skipped-entry counts, so a simulation only reports its own, even after another replay
+     * in the same JVM (see launcher.SimulationBatch). Call it before the replay starts.
+     */
+    public static void reset() {
+        UNSUPPORTED.clear();
+    }
+
+    /**
+     * A scenario whose virtual users send the replay's entries on schedule until the log is exhausted.
+     * Inject it with enough users at once to cover the recorded concurrency.
+     */
+    public static ScenarioBuilder replay(String name, TrafficReplay traffic) {
+        return scenario(name).exec(traffic.loop(DISPATCH));
+    }
+
+    private static boolean isReqRes(ReplayLog.Entry entry) {
+        return entry.path().startsWith("/api/");
+    }
+
+    /**
+     * @return whether the entry's method has a request builder; if not, the entry is counted and the first
+     *         one of each method logged
+     */
+    private static boolean supported(ReplayLog.Entry entry) {
+        if (METHODS.contains(entry.method().toUpperCase(Locale.ROOT))) {
+            return true;
+        }
+        LongAdder skipped = UNSUPPORTED.computeIfAbsent(entry.method(), method -> {
+            LOGGER.warn("Not replaying {} entries, such as #{} {}: unsupported method", method, entry.sequence(), entry.path());
+            return new LongAdder();
+        });
+        skipped.increment();
+        return false;
+    }
+
+    /**
+     * Picks the chain for an entry and extracts the session attributes that chain needs.
+     */
+    private static Map<String, Object> attributes(ReplayLog.Entry entry) {
+        Map<String, Object> attributes = new HashMap<>();
+        String method = entry.method().toUpperCase(Locale.ROOT);
+        String authorization = entry.header("authorization");
+        String apiKey = entry.header("x-api-key");
+        attributes.put("replay.method", method);
+        attributes.put("replay.path", entry.path());
+        attributes.put("replay.body", entry.body() == null ? "" : entry.body());
+        attributes.put("replay.contentType", entry.headers().getOrDefault("content-type", "application/json"));
+        attributes.put("replay.accept", entry.headers().getOrDefault("accept", "*/*"));
+        if (authorization != null) {
+            attributes.put("replay.authorization", authorization);
+        }
+        if (apiKey != null) {
+            attributes.put("replay.apiKey", apiKey);
+        }
+        attributes.put("replay.route", method + ((authorization != null ? 1 : 0) | (apiKey != null ? 2 : 0)));
+
+        byte[] body = entry.body() == null ? new byte[0] : entry.body().getBytes(StandardCharsets.UTF_8);
+        Matcher postPath = POST_PATH.matcher(entry.path());
+        boolean post = postPath.matches();
+        switch (method) {
+            case "GET" -> {
+                if (entry.path().equals("/posts")) {
+                    attributes.put("replay.route", "getPosts");
+                } else if (post) {
+                    attributes.put("id", postPath.group(1));
+                    attributes.put("replay.route", "getPostById");
+                } else if (entry.path().equals("/api/users?page=2") && authorization != null && authorization.startsWith("Bearer ")) {
+                    attributes.put("authToken", authorization.substring("Bearer ".length()));
+                    attributes.put("replay.route", "getUsers");
+                }
+            }
+            case "POST" -> {
+                if (entry.path().equals("/posts") && putPostFields(body, attributes)) {
+                    attributes.put("replay.route", "createPost");
+                } else if (entry.path().equals("/api/login")) {
+                    String email = EMAIL.extract(body);
+                    String password = PASSWORD.extract(body);
+                    if (email != null && password != null) {
+                        attributes.put("email", email);
+                        attributes.put("password", password);
+                        attributes.put("replay.route", "login");
+                    }
+                }
+            }
+            case "PUT" -> {
+                if (post && putPostFields(body, attributes)) {
+                    attributes.put("id", postPath.group(1));
+                    attributes.put("replay.route", "updatePost");
+                }
+            }
+            case "DELETE" -> {
+                if (post) {
+                    attributes.put("id", postPath.group(1));
+                    attributes.put("replay.route", "deletePost");
+                }
+            }
+            default -> {
+            }
+        }
+        return attributes;
+    }
+
+    private static boolean putPostFields(byte[] body, Map<String, Object> attributes) {
+        String title = TITLE.extract(body);
+        String text = BODY.extract(body);
+        String userId = USER_ID.extract(body);
+        if (title == null || text == null || userId == null) {
+            return false;
+        }
+        attributes.put("title", title);
+        attributes.put("body", text);
+        attributes.put("userId", userId);
+        return true;
+    }
+
+    /**
+     * One request builder per method and combination of forwarded auth headers,
+     * keyed like the generic "replay.route" values (e.g. "GET1" for a GET with Authorization).
+     */
+    private static ChainBuilder generic() {
+        List<Choice.WithKey> cases = new ArrayList<>();
+        for (String method : METHODS) {
+            String name = "[REPLAY] " + method;
+            for (int headers = 0; headers < 4; headers++) {
+                int forwarded = headers;
+                cases.add(onCase(method + headers).then(RequestMetrics.timed(name, requestName -> {
+                    HttpRequestActionBuilder request = http(requestName)
+                            .httpRequest(method, session -> session.getString("replay.path"))
+                            .header("Content-Type", session -> session.getString("replay.contentType"))
+                            .header("Accept", session -> session.getString("replay.accept"));
+                    if ((forwarded & 1) != 0) {
+                        request = request.header("Authorization", session -> session.getString("replay.authorization"));
+                    }
+                    if ((forwarded & 2) != 0) {
+                        request = request.header("x-api-key", session -> session.getString("replay.apiKey"));
+                    }
+                    if (method.equals("POST") || method.equals("PUT") || method.equals("PATCH")) {
+                        request = request.body(StringBody(session -> session.getString("replay.body")));
+                    }
+                    return request;
+                })));
+            }
+        }
+        return doSwitch(session -> session.getString("replay.route")).on(cases);
+    }
+}
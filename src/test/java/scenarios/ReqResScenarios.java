@@ -2,8 +2,11 @@ package scenarios;
 
 import api.ReqResApi;
 import common.DataFeeder;
+import common.SendSchedule;
+import io.gatling.javaapi.core.ChainBuilder;
 import io.gatling.javaapi.core.ScenarioBuilder;
 
+import static io.gatling.javaapi.core.CoreDsl.exec;
 import static io.gatling.javaapi.core.CoreDsl.scenario;
 
 public class ReqResScenarios {
@@ -24,7 +27,35 @@ public class ReqResScenarios {
      * This scenario mimics a typical authenticated flow.
      */
     public static ScenarioBuilder loginAndGetUsers = scenario("ReqRes Login + Get Users")
+            .exec(loginAndGetUsersJourney());
+
+    /**
+     * The journey of loginAndGetUsers, e.g. for its warm-up population (see metrics.Phases.warmUp).
+     * Each call feeds from a feeder of its own; like every getJsonFeeder feeder, it reads the file in circles.
+     */
+    public static ChainBuilder loginAndGetUsersJourney() {
+        return exec(SendSchedule.arrival())
+                .feed(DataFeeder.getJsonFeeder("/reqres_users.json"))
+                .exec(ReqResApi.login)
+                .exitHereIfFailed() // no token, so no authenticated call
+                .exec(ReqResApi.getUsers);
+    }
+
+    /**
+     * Same journey as loginAndGetUsers, but the auth token comes from the pool shared by all virtual users.
+     *
+     * Steps:
+     * 1. Feeds user credentials (email and password) from 'reqres_users.json'.
+     * 2. Takes a cached token for those credentials (one login per credential and TTL, not per user).
+     * 3. Sends a GET request to retrieve the list of users using the auth token,
+     *    unless no token could be obtained, in which case the user stops there.
+     *
+     * Use this for open-model runs, where per-user logins would otherwise dominate the traffic.
+     */
+    public static ScenarioBuilder sharedTokenGetUsers = scenario("ReqRes Shared Token + Get Users")
+            .exec(SendSchedule.arrival())
             .feed(DataFeeder.getJsonFeeder("/reqres_users.json"))
-            .exec(ReqResApi.login)
+            .exec(ReqResApi.loginWithSharedToken)
+            .exitHereIfFailed() // the shared login failed: do not send "Bearer null"
             .exec(ReqResApi.getUsers);
 }
\ No newline at end of file
@@ -0,0 +1,526 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class LocalStandInServer {
+
+    /**
+     * Default port the stand-in listens on when no "local.port" system property is given.
+     */
+    public static final int DEFAULT_PORT = 8089;
+
+    private static final byte[] EMPTY_OBJECT = "{}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MISSING_API_KEY = "{ \"error\": \"Missing API key\" }".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MISSING_PASSWORD = "{ \"error\": \"Missing password\" }".getBytes(StandardCharsets.UTF_8);
+    private static final byte[][] USERS_PAGES = {usersPage(1), usersPage(2)};
+    private static final int SEEDED_POSTS = 100;
+
+    /**
+     * How many posts created through POST are kept, set with "local.maxCreatedPosts" (default 10000,
+     * the default capacity of the created-post ID pool). Older ones are evicted, so a long run does
+     * not grow the heap with every create it never deletes.
+     */
+    private static final int MAX_CREATED_POSTS = Integer.getInteger("local.maxCreatedPosts", 10_000);
+
+    private static LocalStandInServer shared;
+    private static int sharedRefs;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Posts keyed by ID, stored as ready-to-send JSON bytes.
+     * A sorted map keeps GET /posts in ID order, like JSONPlaceholder.
+     */
+    private final ConcurrentSkipListMap<Integer, byte[]> posts = new ConcurrentSkipListMap<>();
+    private final AtomicInteger nextPostId = new AtomicInteger(SEEDED_POSTS + 1);
+
+    /**
+     * Snapshot of the GET /posts payload, rebuilt lazily after writes.
+     * The version and the bytes are published together, so a reader never pairs one with the other's.
+     */
+    private final AtomicLong postsVersion = new AtomicLong();
+    private final AtomicReference<PostsSnapshot> allPosts = new AtomicReference<>(new PostsSnapshot(-1, null));
+
+    /**
+     * Creates a stand-in server bound to the loopback interface.
+     *
+     * Every exchange runs on its own virtual thread, so a slow client never
+     * holds up others and the server scales with the number of connections
+     * rather than a fixed worker pool.
+     *
+     * @param port the port to listen on, or 0 for an ephemeral port
+     */
+    public LocalStandInServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 4096);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/posts", this::handlePosts);
+        server.createContext("/api/login", this::handleLogin);
+        server.createContext("/api/users", this::handleUsers);
+        server.createContext("/uploads", this::handleUpload);
+        seedPosts();
+    }
+
+    /**
+     * Starts the process-wide stand-in if it is not already running.
+     *
+     * Simulations call this from before() when the "local" target is selected.
+     * Calls are reference counted, so several simulations in one JVM can share a server.
+     *
+     * @return the running shared server
+     */
+    public static synchronized LocalStandInServer startShared() {
+        if (shared == null) {
+            try {
+                shared = new LocalStandInServer(Integer.getInteger("local.port", DEFAULT_PORT));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            shared.start();
+        }
+        sharedRefs++;
+        return shared;
+    }
+
+    /**
+     * Releases one reference to the shared stand-in and stops it when the last one is gone.
+     */
+    public static synchronized void stopShared() {
+        if (shared != null && --sharedRefs <= 0) {
+            shared.stop();
+            shared = null;
+            sharedRefs = 0;
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the base URL clients should use, e.g. http://127.0.0.1:8089
+     */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Seeds the same 100 posts JSONPlaceholder serves (10 users × 10 posts).
+     */
+    private void seedPosts() {
+        for (int id = 1; id <= SEEDED_POSTS; id++) {
+            int userId = (id - 1) / 10 + 1;
+            posts.put(id, post(id, userId, "post " + id, "body of post " + id));
+        }
+    }
+
+    private static byte[] post(int id, int userId, String title, String body) {
+        return ("{\n" +
+                "  \"userId\": " + userId + ",\n" +
+                "  \"id\": " + id + ",\n" +
+                "  \"title\": \"" + title + "\",\n" +
+                "  \"body\": \"" + body + "\"\n" +
+                "}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Handles the JSONPlaceholder post routes:
+     * - GET /posts, GET /posts/{id}
+     * - POST /posts (201 with a fresh ID; only the last MAX_CREATED_POSTS created posts are kept)
+     * - PUT /posts/{id} (200, upserts seeded and kept IDs; other IDs are answered but not stored)
+     * - DELETE /posts/{id} (200, idempotent like the real API)
+     */
+    private void handlePosts(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            Integer id = postId(exchange.getRequestURI());
+            switch (method) {
+                case "GET" -> {
+                    if (id == null) {
+                        send(exchange, 200, allPosts());
+                    } else {
+                        byte[] post = posts.get(id);
+                        send(exchange, post == null ? 404 : 200, post == null ? EMPTY_OBJECT : post);
+                    }
+                }
+                case "POST" -> {
+                    int newId = nextPostId.getAndIncrement();
+                    byte[] created = withId(readBody(exchange), newId);
+                    posts.put(newId, created);
+                    int oldestKept = newId - MAX_CREATED_POSTS + 1;
+                    if (oldestKept > SEEDED_POSTS + 1) {
+                        // a range, not one ID: upload IDs come from the same counter and leave gaps
+                        posts.subMap(SEEDED_POSTS, false, oldestKept, false).clear();
+                    }
+                    postsVersion.incrementAndGet();
+                    send(exchange, 201, created);
+                }
+                case "PUT", "PATCH" -> {
+                    if (id == null) {
+                        send(exchange, 404, EMPTY_OBJECT);
+                        return;
+                    }
+                    byte[] updated = withId(readBody(exchange), id);
+                    if (kept(id)) {
+                        posts.put(id, updated);
+                        postsVersion.incrementAndGet();
+                    }
+                    send(exchange, 200, updated);
+                }
+                case "DELETE" -> {
+                    if (id != null && posts.remove(id) != null) {
+                        postsVersion.incrementAndGet();
+                    }
+                    send(exchange, 200, EMPTY_OBJECT);
+                }
+                default -> send(exchange, 405, EMPTY_OBJECT);
+            }
+        }
+    }
+
+    /**
+     * Handles POST /api/login.
+     *
+     * Any user with a non-empty password is accepted; the token is derived from the email
+     * so repeated logins for the same user return the same value, as with ReqRes.
+     */
+    private void handleLogin(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, EMPTY_OBJECT);
+                return;
+            }
+            if (exchange.getRequestHeaders().getFirst("x-api-key") == null) {
+                send(exchange, 401, MISSING_API_KEY);
+                return;
+            }
+            String body = new String(readBody(exchange), StandardCharsets.UTF_8);
+            String email = stringField(body, "email");
+            String password = stringField(body, "password");
+            if (email == null || password == null || password.isEmpty()) {
+                send(exchange, 400, MISSING_PASSWORD);
+                return;
+            }
+            String token = Integer.toHexString(email.hashCode()) + Long.toHexString(email.length() * 0x9E3779B97F4A7C15L);
+            send(exchange, 200, ("{ \"token\": \"" + token + "\" }").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Handles POST /uploads: reads the body through a small buffer and answers with its size,
+     * so uploads of any size (chunked or not) can be tested without the server keeping them.
+     */
+    private void handleUpload(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                send(exchange, 405, EMPTY_OBJECT);
+                return;
+            }
+            long size = 0;
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = exchange.getRequestBody()) {
+                for (int read; (read = in.read(buffer)) >= 0; ) {
+                    size += read;
+                }
+            }
+            send(exchange, 201, ("{ \"id\": " + nextPostId.getAndIncrement() + ", \"bytes\": " + size + " }").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Handles GET /api/users?page=N with the same paging shape as ReqRes (6 users per page, 12 in total).
+     */
+    private void handleUsers(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, EMPTY_OBJECT);
+                return;
+            }
+            if (exchange.getRequestHeaders().getFirst("x-api-key") == null) {
+                send(exchange, 401, MISSING_API_KEY);
+                return;
+            }
+            int page = page(exchange.getRequestURI());
+            send(exchange, 200, page >= 1 && page <= USERS_PAGES.length ? USERS_PAGES[page - 1] : emptyUsersPage(page));
+        }
+    }
+
+    private static byte[] usersPage(int page) {
+        StringBuilder json = new StringBuilder()
+                .append("{ \"page\": ").append(page)
+                .append(", \"per_page\": 6, \"total\": 12, \"total_pages\": 2, \"data\": [");
+        for (int i = 0; i < 6; i++) {
+            int id = (page - 1) * 6 + i + 1;
+            if (i > 0) {
+                json.append(", ");
+            }
+            json.append("{ \"id\": ").append(id)
+                    .append(", \"email\": \"user").append(id).append("@reqres.in\"")
+                    .append(", \"first_name\": \"User\", \"last_name\": \"").append(id).append("\" }");
+        }
+        return json.append("] }").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Pages past the last one exist in ReqRes too, with the same paging fields and no users.
+     */
+    private static byte[] emptyUsersPage(int page) {
+        return ("{ \"page\": " + page + ", \"per_page\": 6, \"total\": 12, \"total_pages\": 2, \"data\": [] }")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] allPosts() {
+        long version = postsVersion.get();
+        PostsSnapshot current = allPosts.get();
+        if (current.version() == version) {
+            return current.json();
+        }
+        int size = 2;
+        for (byte[] post : posts.values()) {
+            size += post.length + 2;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        out.write('[');
+        boolean first = true;
+        for (Map.Entry<Integer, byte[]> entry : posts.entrySet()) {
+            if (!first) {
+                out.write(',');
+            }
+            out.writeBytes(entry.getValue());
+            first = false;
+        }
+        out.write(']');
+        byte[] json = out.toByteArray();
+        // a slower rebuild of an older version must not replace a newer snapshot
+        allPosts.accumulateAndGet(new PostsSnapshot(version, json),
+                (published, built) -> published.version() >= built.version() ? published : built);
+        return json;
+    }
+
+    /**
+     * The GET /posts payload together with the posts version it was built from.
+     */
+    private record PostsSnapshot(long version, byte[] json) {
+    }
+
+    /**
+     * @return whether a post with this ID is stored: a seeded one, or one of the last MAX_CREATED_POSTS created
+     */
+    private boolean kept(int id) {
+        int next = nextPostId.get();
+        return id >= 1 && (id <= SEEDED_POSTS || (id < next && id >= next - MAX_CREATED_POSTS));
+    }
+
+    private static Integer postId(URI uri) {
+        String path = uri.getPath();
+        if (path.length() <= "/posts/".length()) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(path.substring("/posts/".length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static int page(URI uri) {
+        String query = uri.getQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                if (param.startsWith("page=")) {
+                    try {
+                        return Integer.parseInt(param.substring(5));
+                    } catch (NumberFormatException ignored) {
+                        return 1;
+                    }
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Returns the posted JSON object with "id" set to the given value.
+     *
+     * The body is not parsed into a tree: it is scanned for a top-level "id" key, whose value is
+     * replaced in place, and the field is appended when there is none.
+     */
+    private static byte[] withId(byte[] body, int id) {
+        int end = body.length - 1;
+        while (end >= 0 && Character.isWhitespace(body[end])) {
+            end--;
+        }
+        if (end < 0 || body[end] != '}') {
+            return ("{ \"id\": " + id + " }").getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] value = String.valueOf(id).getBytes(StandardCharsets.UTF_8);
+        int[] existing = topLevelValue(body, "id");
+        if (existing != null) {
+            byte[] result = new byte[body.length - (existing[1] - existing[0]) + value.length];
+            System.arraycopy(body, 0, result, 0, existing[0]);
+            System.arraycopy(value, 0, result, existing[0], value.length);
+            System.arraycopy(body, existing[1], result, existing[0] + value.length, body.length - existing[1]);
+            return result;
+        }
+        int last = end - 1;
+        while (last >= 0 && Character.isWhitespace(body[last])) {
+            last--;
+        }
+        boolean empty = last >= 0 && body[last] == '{';
+        byte[] suffix = ((empty ? "" : ",") + "\n  \"id\": " + id + "\n}").getBytes(StandardCharsets.UTF_8);
+        byte[] result = new byte[last + 1 + suffix.length];
+        System.arraycopy(body, 0, result, 0, last + 1);
+        System.arraycopy(suffix, 0, result, last + 1, suffix.length);
+        return result;
+    }
+
+    /**
+     * Finds the value of a top-level key of a JSON object.
+     *
+     * @return the start (inclusive) and end (exclusive) offsets of the value, or null when the key is absent
+     */
+    private static int[] topLevelValue(byte[] json, String key) {
+        byte[] quoted = ("\"" + key + "\"").getBytes(StandardCharsets.UTF_8);
+        int depth = 0;
+        for (int i = 0; i < json.length; i++) {
+            byte c = json[i];
+            if (c == '"') {
+                int start = i;
+                i = stringEnd(json, i);
+                if (depth != 1 || i - start + 1 != quoted.length || !Arrays.equals(json, start, i + 1, quoted, 0, quoted.length)) {
+                    continue;
+                }
+                int colon = i + 1;
+                while (colon < json.length && Character.isWhitespace(json[colon])) {
+                    colon++;
+                }
+                if (colon >= json.length || json[colon] != ':') {
+                    continue;
+                }
+                int from = colon + 1;
+                while (from < json.length && Character.isWhitespace(json[from])) {
+                    from++;
+                }
+                int to = from;
+                if (to < json.length && json[to] == '"') {
+                    to = stringEnd(json, to) + 1;
+                } else {
+                    int nested = 0;
+                    for (; to < json.length; to++) {
+                        byte v = json[to];
+                        if (v == '"') {
+                            to = stringEnd(json, to);
+                        } else if (v == '{' || v == '[') {
+                            nested++;
+                        } else if (v == '}' || v == ']') {
+                            if (nested-- == 0) {
+                                break;
+                            }
+                        } else if (v == ',' && nested == 0) {
+                            break;
+                        }
+                    }
+                    while (to > from && Character.isWhitespace(json[to - 1])) {
+                        to--;
+                    }
+                }
+                return new int[]{from, Math.min(to, json.length)};
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the offset of the quote closing the string that opens at the given offset, or the last offset if unterminated
+     */
+    private static int stringEnd(byte[] json, int open) {
+        for (int i = open + 1; i < json.length; i++) {
+            if (json[i] == '\\') {
+                i++;
+            } else if (json[i] == '"') {
+                return i;
+            }
+        }
+        return json.length - 1;
+    }
+
+    /**
+     * Extracts a top-level string field from a small flat JSON object, or null when it is absent.
+     */
+    private static String stringField(String json, String name) {
+        int key = json.indexOf("\"" + name + "\"");
+        if (key < 0) {
+            return null;
+        }
+        int colon = json.indexOf(':', key + name.length() + 2);
+        int open = colon < 0 ? -1 : json.indexOf('"', colon + 1);
+        if (open < 0) {
+            return null;
+        }
+        StringBuilder value = new StringBuilder();
+        for (int i = open + 1; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '\\' && i + 1 < json.length()) {
+                value.append(json.charAt(++i));
+            } else if (c == '"') {
+                return value.toString();
+            } else {
+                value.append(c);
+            }
+        }
+        return null;
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Runs the stand-in on its own so simulations in another JVM (or another host) can target it.
+     *
+     * Usage: java -cp target/test-classes server.LocalStandInServer [port]
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("local.port", DEFAULT_PORT);
+        LocalStandInServer server = new LocalStandInServer(port);
+        server.start();
+        System.out.println("Local stand-in listening on " + server.baseUrl());
+    }
+}
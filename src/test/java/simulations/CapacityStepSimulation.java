@@ -0,0 +1,117 @@
+package simulations;
+
+import static io.gatling.javaapi.core.CoreDsl.*;
+import io.gatling.javaapi.core.ScenarioBuilder;
+import io.gatling.javaapi.http.HttpProtocolBuilder;
+import metrics.RequestMetrics;
+import protocol.Protocols;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+public class CapacityStepSimulation extends PlaygroundSimulation {
+
+    /**
+     * One step of a capacity search (launcher.CapacitySearch): runs an existing scenario
+     * at a constant arrival rate and measures it after a warm-up.
+     *
+     * Configuration:
+     * - capacity.scenario      : static ScenarioBuilder field, e.g. scenarios.ReqResScenarios.loginAndGetUsers
+     *                            (default scenarios.JsonPlaceholderScenarios.fullCrudFlow)
+     * - capacity.rate          : arrival rate in users per second (default 1)
+     * - capacity.warmupSeconds : injection time excluded from the measurement (default 10)
+     * - capacity.stepSeconds   : measured injection time (default 30)
+     * - capacity.histogramLog  : where to write the measured per-request histograms, with the window they cover
+     *
+     * The protocol is picked from the scenario's class: ReqRes scenarios use reqResProtocol,
+     * everything else jsonPlaceholderProtocol.
+     */
+    private static final String SCENARIO = System.getProperty("capacity.scenario", "scenarios.JsonPlaceholderScenarios.fullCrudFlow");
+    private static final double RATE = Double.parseDouble(System.getProperty("capacity.rate", "1"));
+    private static final Duration WARMUP = Duration.ofSeconds(Long.getLong("capacity.warmupSeconds", 10));
+    private static final Duration STEP = Duration.ofSeconds(Long.getLong("capacity.stepSeconds", 30));
+
+    // guarded by this
+    private Map<String, RequestMetrics.Snapshot> atWindowStart = Map.of();
+    private long windowStartedAt;
+    private Map<String, RequestMetrics.Snapshot> window;
+    private long windowEndedAt;
+    private Thread windowTimer;
+
+    {
+        setUpChecked(WARMUP.plus(STEP),
+                scenarioField(SCENARIO).injectOpen(
+                        constantUsersPerSec(RATE).during(WARMUP.plus(STEP))
+                ).protocols(protocol(SCENARIO))
+        );
+    }
+
+    /**
+     * Starts the measurement window's timer: the window opens once the warm-up is over and closes
+     * when the injection ends, so it holds the requests completed at the step's rate and none of those
+     * of the users still in flight afterwards.
+     */
+    @Override
+    public void before() {
+        super.before();
+        synchronized (this) {
+            windowStartedAt = System.currentTimeMillis();
+        }
+        windowTimer = Thread.ofPlatform().daemon().name("capacity-window").start(() -> {
+            try {
+                Thread.sleep(WARMUP);
+                openWindow();
+                Thread.sleep(STEP);
+                closeWindow();
+            } catch (InterruptedException e) {
+                // the run ended early: after() closes the window
+            }
+        });
+    }
+
+    private synchronized void openWindow() {
+        atWindowStart = RequestMetrics.global().totals();
+        windowStartedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Takes the requests completed since the window opened; only the first call counts.
+     */
+    private synchronized void closeWindow() {
+        if (window == null) {
+            window = RequestMetrics.difference(RequestMetrics.global().totals(), atWindowStart);
+            windowEndedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Writes the requests completed within the window, and the window's start and end,
+     * to -Dcapacity.histogramLog.
+     */
+    @Override
+    public void after() {
+        windowTimer.interrupt();
+        closeWindow();
+        String histogramLog = System.getProperty("capacity.histogramLog");
+        if (histogramLog != null) {
+            synchronized (this) {
+                RequestMetrics.writeLog(Path.of(histogramLog), window, windowStartedAt, windowEndedAt);
+            }
+        }
+        super.after();
+    }
+
+    private static ScenarioBuilder scenarioField(String field) {
+        int dot = field.lastIndexOf('.');
+        try {
+            return (ScenarioBuilder) Class.forName(field.substring(0, dot)).getField(field.substring(dot + 1)).get(null);
+        } catch (ReflectiveOperationException | ClassCastException | StringIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("capacity.scenario must name a public static ScenarioBuilder field: " + field, e);
+        }
+    }
+
+    private static HttpProtocolBuilder protocol(String field) {
+        return field.startsWith("scenarios.ReqRes") ? Protocols.reqResProtocol : Protocols.jsonPlaceholderProtocol;
+    }
+}
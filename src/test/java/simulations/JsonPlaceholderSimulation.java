@@ -1,13 +1,20 @@
 package simulations;
 
 import static io.gatling.javaapi.core.CoreDsl.*;
-import io.gatling.javaapi.core.Simulation;
+import api.JsonPlaceholderApi;
+import common.Injectors;
+import io.gatling.javaapi.core.PopulationBuilder;
+import metrics.Phases;
+import metrics.RunCheck;
+import metrics.Slo;
 import scenarios.JsonPlaceholderScenarios;
 import protocol.Protocols;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
-public class JsonPlaceholderSimulation extends Simulation {
+public class JsonPlaceholderSimulation extends PlaygroundSimulation {
 
     /**
      * Simulation for testing various flows using the JSONPlaceholder API.
@@ -38,50 +45,85 @@ public class JsonPlaceholderSimulation extends Simulation {
      *
      * 6. randomUserActions:
      *    - Five users ramping up over 10 seconds
-     *    - Each user randomly performs one of the following per iteration:
-     *       • 70% chance to create a new post
-     *       • 20% chance to update an existing post
-     *       • 10% chance to delete a post
-     *    - Demonstrates weighted random user behavior simulation
+     *    - Each user follows the Markov workload model in data/workload_model.json:
+     *      sequences such as get, then update, with sampled think times between actions
+     *    - Demonstrates model-driven user behavior simulation
      *
-     * Assertions:
-     * - Global maximum response time must be below 1500 ms
-     * - Global failure rate must be less than 5%
+     * Phases (see metrics.Phases):
+     * - warm-up: -Dphase.warmUpSeconds (default 30) of the fullCrudFlow journey at 0.5 users/s, the randomUserActions
+     *   one at 0.2 users/s and one closed user of repeatWithRandomDataClosed, in populations of their own whose
+     *   requests are grouped under "warm-up"; the measured populations wait for it to end
+     * - ramp: the first 10 seconds of the injection above
+     * - steady: the next 5 seconds, until the closed users stop
+     * - ramp-down: until the last user is done
+     *
+     * Multi-injector runs (launcher.InjectorLauncher):
+     * - User counts are split across the injector JVMs via Injectors.users(...)
+     *
+     * Assertions (SLOS), on the measured requests, the warm-up's being grouped apart, and again on the steady
+     * phase alone (Phases.steadyChecks); a multi-injector run checks them on the merged results instead:
+     * - Per CRUD request: p95 below 800 ms, p99 below 1500 ms and less than 5% failed
+     *   (per request rather than global(), which would count the warm-up; the CRUD requests are all this simulation sends)
      */
+    public static final List<Slo> SLOS = List.of(
+            Slo.request(JsonPlaceholderApi.GET_ALL_POSTS).p95(800).p99(1500).maxFailedPercent(5),
+            Slo.request(JsonPlaceholderApi.GET_POST_BY_ID).p95(800).p99(1500).maxFailedPercent(5),
+            Slo.request(JsonPlaceholderApi.CREATE_POST).p95(800).p99(1500).maxFailedPercent(5),
+            Slo.request(JsonPlaceholderApi.UPDATE_POST).p95(800).p99(1500).maxFailedPercent(5),
+            Slo.request(JsonPlaceholderApi.DELETE_POST).p95(800).p99(1500).maxFailedPercent(5)
+    );
+
+    private final Phases phases = Phases.of(Duration.ofSeconds(10), Duration.ofSeconds(5));
+
     {
-        setUp(
+        phases(phases);
+
+        List<PopulationBuilder> populations = new ArrayList<>();
+        populations.addAll(phases.warmUp("Full CRUD with JSONPlaceholder",
+                JsonPlaceholderScenarios.fullCrud(), 0.5, Protocols.jsonPlaceholderProtocol));
+        populations.addAll(phases.warmUpClosed("Repeat with Random Data - Closed",
+                JsonPlaceholderScenarios.repeatCreatePost(), 1, Protocols.jsonPlaceholderProtocol));
+        populations.addAll(phases.warmUp("Random User Actions with Probabilities",
+                JsonPlaceholderScenarios.randomActions(), 0.2, Protocols.jsonPlaceholderProtocol));
+        populations.addAll(List.of(
                 // Original full CRUD scenario with ramped users
-                JsonPlaceholderScenarios.fullCrudFlow.injectOpen(
-                        rampUsers(3).during(Duration.ofSeconds(10))
-                ).protocols(Protocols.jsonPlaceholderProtocol),
+                JsonPlaceholderScenarios.fullCrudFlow.injectOpen(phases.open(
+                        rampUsers(Injectors.users(3)).during(Duration.ofSeconds(10))
+                )).protocols(Protocols.jsonPlaceholderProtocol),
 
                 // One user performing 3 POST requests with random data at once
-                JsonPlaceholderScenarios.repeatWithRandomData.injectOpen(
-                        atOnceUsers(1)
-                ).protocols(Protocols.jsonPlaceholderProtocol),
+                JsonPlaceholderScenarios.repeatWithRandomData.injectOpen(phases.open(
+                        atOnceUsers(Injectors.users(1))
+                )).protocols(Protocols.jsonPlaceholderProtocol),
 
                 // Two concurrent users constantly sending repeated POSTs over 15 seconds
-                JsonPlaceholderScenarios.repeatWithRandomDataClosed.injectClosed(
-                        constantConcurrentUsers(2).during(Duration.ofSeconds(15))
-                ).protocols(Protocols.jsonPlaceholderProtocol),
+                JsonPlaceholderScenarios.repeatWithRandomDataClosed.injectClosed(phases.closed(
+                        constantConcurrentUsers(Injectors.users(2)).during(Duration.ofSeconds(15))
+                )).protocols(Protocols.jsonPlaceholderProtocol),
 
                 // Three users each sending one POST with circular feeder data
-                JsonPlaceholderScenarios.threeUsersCircular.injectOpen(
-                        atOnceUsers(3)
-                ).protocols(Protocols.jsonPlaceholderProtocol),
+                JsonPlaceholderScenarios.threeUsersCircular.injectOpen(phases.open(
+                        atOnceUsers(Injectors.users(3))
+                )).protocols(Protocols.jsonPlaceholderProtocol),
 
                 // Three users each performing 3 POST operations using random data
-                JsonPlaceholderScenarios.threeUsersThreeIterations.injectOpen(
-                        atOnceUsers(3)
-                ).protocols(Protocols.jsonPlaceholderProtocol),
+                JsonPlaceholderScenarios.threeUsersThreeIterations.injectOpen(phases.open(
+                        atOnceUsers(Injectors.users(3))
+                )).protocols(Protocols.jsonPlaceholderProtocol),
 
                 // Five users ramping up over 10 seconds, randomly choosing actions with weighted probabilities
-                JsonPlaceholderScenarios.randomUserActions.injectOpen(
-                        rampUsers(5).during(Duration.ofSeconds(10))
-                ).protocols(Protocols.jsonPlaceholderProtocol)
-        ).assertions(
-                global().responseTime().max().lt(1500), // Max 1500ms response time
-                global().failedRequests().percent().lt(5.0) // <5% failure rate
-        );
+                JsonPlaceholderScenarios.randomUserActions.injectOpen(phases.open(
+                        rampUsers(Injectors.users(5)).during(Duration.ofSeconds(10))
+                )).protocols(Protocols.jsonPlaceholderProtocol)
+        ));
+
+        setUpChecked(phases.steadyEnd(), populations).assertions(Slo.assertions(SLOS));
+    }
+
+    @Override
+    protected List<RunCheck> checks() {
+        List<RunCheck> checks = new ArrayList<>(super.checks());
+        checks.addAll(phases.steadyChecks(SLOS));
+        return checks;
     }
-}
\ No newline at end of file
+}
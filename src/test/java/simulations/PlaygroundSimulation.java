@@ -0,0 +1,184 @@
+package simulations;
+
+import common.GeneratedBody;
+import common.IdPool;
+import common.Injectors;
+import common.Offload;
+import common.RetryBudget;
+import io.gatling.javaapi.core.Assertion;
+import io.gatling.javaapi.core.PopulationBuilder;
+import io.gatling.javaapi.core.Simulation;
+import metrics.Baseline;
+import metrics.InjectorHealth;
+import metrics.LatencyReport;
+import metrics.LiveMetrics;
+import metrics.Phases;
+import metrics.RequestMetrics;
+import metrics.ResultsLog;
+import metrics.RunCheck;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import protocol.Protocols;
+import server.LocalStandInServer;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+public abstract class PlaygroundSimulation extends Simulation {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PlaygroundSimulation.class);
+
+    private volatile long startedAt;
+    private Phases phases;
+
+    /**
+     * Runs the simulation in phases (warm-up, ramp, steady, ramp-down): statistics are reported per phase.
+     * Call it from the simulation's initializer, next to setUp(...), with the timeline its injection profiles follow.
+     */
+    protected void phases(Phases phases) {
+        this.phases = phases;
+    }
+
+    /**
+     * Sets up the simulation's populations like setUp(...), with the run checks the command line asks for,
+     * as Gatling assertions, so that a failed check fails the run with Gatling's exit code:
+     * - -Dbaseline.check=true: no regression against the stored baseline (see Baseline.assertions)
+     * - the checks(), run when the measured load ends: by default, with -Dhealth.invalidate=true,
+     *   that the injector was not the bottleneck (see InjectorHealth.CHECK)
+     * Chain the simulation's own assertions as usual: setUpChecked(...).assertions(...).
+     *
+     * @param measuredFor how long after the start of the injection the measured load ends, e.g. phases.steadyEnd()
+     */
+    protected SetUp setUpChecked(Duration measuredFor, PopulationBuilder... populations) {
+        return setUpChecked(measuredFor, Arrays.asList(populations));
+    }
+
+    /**
+     * @see #setUpChecked(Duration, PopulationBuilder...)
+     */
+    protected SetUp setUpChecked(Duration measuredFor, List<PopulationBuilder> populations) {
+        return setUpChecked(() -> startedAt > 0 && System.currentTimeMillis() - startedAt >= measuredFor.toMillis(), populations);
+    }
+
+    /**
+     * @param measuredLoadEnded tells when the measured load has ended, for a simulation that cannot tell how long it lasts
+     * @see #setUpChecked(Duration, PopulationBuilder...)
+     */
+    protected SetUp setUpChecked(BooleanSupplier measuredLoadEnded, PopulationBuilder... populations) {
+        return setUpChecked(measuredLoadEnded, Arrays.asList(populations));
+    }
+
+    private SetUp setUpChecked(BooleanSupplier measuredLoadEnded, List<PopulationBuilder> populations) {
+        List<PopulationBuilder> all = new ArrayList<>(populations);
+        List<Assertion> assertions = new ArrayList<>(Baseline.assertions(getClass().getSimpleName()));
+        for (RunCheck check : checks()) {
+            all.add(check.population(measuredLoadEnded));
+            assertions.add(check.assertion());
+        }
+        return setUp(all).assertions(assertions);
+    }
+
+    /**
+     * @return the checks of the run itself that setUpChecked(...) adds; override to add a simulation's own
+     */
+    protected List<RunCheck> checks() {
+        return Boolean.getBoolean("health.invalidate") ? List.of(InjectorHealth.CHECK) : List.of();
+    }
+
+    /**
+     * Prepares the run before any user is injected:
+     * - starts the in-process stand-in server when running with -Dtarget=local
+     * - starts the live metrics endpoint when running with -Dmetrics.live=true
+     * - opens the binary results log when running with -Dmetrics.resultsFile=... (see ResultsLog)
+     * - starts monitoring the injector's own health (see InjectorHealth; -Dhealth.enabled=false to turn off)
+     * - waits at the launcher's start barrier when this JVM is one of several injectors
+     * - starts the phase timeline, if the simulation has one (see phases(...))
+     */
+    @Override
+    public void before() {
+        if (Protocols.LOCAL_EMBEDDED) {
+            LocalStandInServer.startShared();
+        }
+        LiveMetrics.startIfEnabled();
+        ResultsLog.startIfEnabled();
+        InjectorHealth.startIfEnabled();
+        Injectors.awaitStart();
+        startedAt = System.currentTimeMillis();
+        if (phases != null) {
+            phases.start();
+        }
+    }
+
+    /**
+     * Writes the per-request latency histograms to -Dmetrics.histogramLog (if set), and those of the steady phase,
+     * with its start and end, to -Dmetrics.steadyHistogramLog (if set and the simulation has phases),
+     * where the injector launcher picks them up for merging, closes the binary results log and stops
+     * the live metrics endpoint and the stand-in server. Logs the final state of the shared id pools,
+     * retry budgets and offload executors, the throughput of generated uploads, and the latencies of scheduled
+     * requests from their scheduled send time (see RequestMetrics.corrected()).
+     *
+     * Logs the injector health report, with a warning if the injector rather than the target was the bottleneck;
+     * with -Dhealth.invalidate=true, such a run has already failed its InjectorHealth.CHECK (see setUpChecked).
+     *
+     * With phases, logs the statistics of each phase; the run's verdict is left to Gatling's assertions.
+     *
+     * Then stores this run as the baseline with -Dbaseline.update=true (see Baseline), without the warm-up
+     * (see Phases.measured). In a multi-injector run this is done by the launcher on the merged results.
+     */
+    @Override
+    public void after() {
+        LiveMetrics.stop();
+        ResultsLog.stop();
+        InjectorHealth.Report health = InjectorHealth.stop();
+        Phases.Report phaseReport = phases == null ? null : phases.stop();
+        if (phaseReport != null) {
+            LOGGER.info("Statistics per phase:{}", phaseReport);
+        }
+        Map<String, RequestMetrics.Snapshot> corrected = RequestMetrics.corrected().totals();
+        if (!corrected.isEmpty()) {
+            LOGGER.info("Latency of scheduled requests from their scheduled send time, corrected for coordinated omission:\n{}",
+                    LatencyReport.table(corrected));
+        }
+        List<String> bottlenecks = health == null ? List.of() : health.problems();
+        if (health != null) {
+            LOGGER.info("Injector health: {}", health);
+        }
+        if (!bottlenecks.isEmpty()) {
+            LOGGER.warn("The injector was the bottleneck, latencies are not those of the target: {}", String.join("; ", bottlenecks));
+        }
+        for (IdPool pool : IdPool.all()) {
+            LOGGER.info("Id pool {}", pool.stats());
+        }
+        for (RetryBudget budget : RetryBudget.all()) {
+            LOGGER.info("Retry budget {}", budget.stats());
+        }
+        for (Offload offload : Offload.all()) {
+            LOGGER.info("Offload {}", offload.stats());
+        }
+        for (GeneratedBody body : GeneratedBody.all()) {
+            if (body.counters().get("uploads") > 0) {
+                LOGGER.info("Upload {}", body.stats());
+            }
+        }
+        String histogramLog = System.getProperty("metrics.histogramLog");
+        if (histogramLog != null) {
+            RequestMetrics.writeLog(Path.of(histogramLog), RequestMetrics.global().totals(), startedAt);
+        }
+        String steadyLog = System.getProperty("metrics.steadyHistogramLog");
+        if (steadyLog != null && phaseReport != null && phaseReport.stats().containsKey(Phases.STEADY)) {
+            RequestMetrics.Period steady = phaseReport.periods().get(Phases.STEADY);
+            RequestMetrics.writeLog(Path.of(steadyLog), phaseReport.stats().get(Phases.STEADY), steady.startedAt(), steady.endedAt());
+        }
+        if (Protocols.LOCAL_EMBEDDED) {
+            LocalStandInServer.stopShared();
+        }
+        if (Injectors.count() == 1) {
+            Baseline.updateIfEnabled(getClass().getSimpleName(), Phases.measured(RequestMetrics.global().totals()), startedAt);
+        }
+    }
+}
\ No newline at end of file
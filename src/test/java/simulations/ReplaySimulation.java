@@ -0,0 +1,71 @@
+package simulations;
+
+import static io.gatling.javaapi.core.CoreDsl.*;
+import common.Injectors;
+import common.TrafficReplay;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import protocol.Protocols;
+import scenarios.ReplayScenarios;
+
+import java.nio.file.Path;
+
+public class ReplaySimulation extends PlaygroundSimulation {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplaySimulation.class);
+
+    private static final Path FILE = Path.of(System.getProperty("replay.file", "src/test/resources/data/replay_sample.jsonl"));
+    private static final double SPEEDUP = Double.parseDouble(System.getProperty("replay.speedup", "1"));
+    private static final int USERS = Integer.getInteger("replay.users", 50);
+
+    private final TrafficReplay jsonPlaceholder = ReplayScenarios.jsonPlaceholderTraffic(FILE, SPEEDUP);
+    private final TrafficReplay reqRes = ReplayScenarios.reqResTraffic(jsonPlaceholder);
+
+    /**
+     * Replays recorded traffic against both APIs with its original timing.
+     *
+     * Configuration:
+     * - replay.file    : JSON Lines or HAR log (default data/replay_sample.jsonl)
+     * - replay.speedup : time compression, e.g. 24 replays a day in an hour (default 1)
+     * - replay.users   : replaying virtual users per API, at least the recorded concurrency (default 50)
+     *
+     * JSONPlaceholder entries go to jsonPlaceholderProtocol and /api/ entries to reqResProtocol,
+     * each streamed by its own reader on the same clock.
+     *
+     * Multi-injector runs (launcher.InjectorLauncher):
+     * - Each injector replays every Nth entry, and its share of the users via Injectors.users(...)
+     *
+     * Assertions:
+     * - Global failure rate must be less than 5%
+     */
+    {
+        setUpChecked(() -> jsonPlaceholder.exhausted() && reqRes.exhausted(),
+                ReplayScenarios.replay("Replay JSONPlaceholder traffic", jsonPlaceholder).injectOpen(
+                        atOnceUsers(Injectors.users(USERS))
+                ).protocols(Protocols.jsonPlaceholderProtocol),
+
+                ReplayScenarios.replay("Replay ReqRes traffic", reqRes).injectOpen(
+                        atOnceUsers(Injectors.users(USERS))
+                ).protocols(Protocols.reqResProtocol)
+        ).assertions(
+                global().failedRequests().percent().lt(5.0)
+        );
+    }
+
+    @Override
+    public void before() {
+        ReplayScenarios.reset();
+        super.before();
+    }
+
+    /**
+     * Logs how many entries were replayed, and how many missed their schedule for lack of a free user.
+     */
+    @Override
+    public void after() {
+        LOGGER.info("JSONPlaceholder: {}", jsonPlaceholder.summary());
+        LOGGER.info("ReqRes: {}", reqRes.summary());
+        LOGGER.info("Skipped for an unsupported method: {}", ReplayScenarios.unsupported());
+        super.after();
+    }
+}
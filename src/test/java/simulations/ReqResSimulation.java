@@ -1,13 +1,24 @@
 package simulations;
 
 import static io.gatling.javaapi.core.CoreDsl.*;
-import io.gatling.javaapi.core.Simulation;
+import api.ReqResApi;
+import common.Injectors;
+import io.gatling.javaapi.core.PopulationBuilder;
+import metrics.Phases;
+import metrics.RunCheck;
+import metrics.Slo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import scenarios.ReqResScenarios;
 import protocol.Protocols;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
-public class ReqResSimulation extends Simulation {
+public class ReqResSimulation extends PlaygroundSimulation {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReqResSimulation.class);
 
     /**
      * Simulation for testing the ReqRes login and user retrieval flow.
@@ -17,25 +28,64 @@ public class ReqResSimulation extends Simulation {
      * 2. Logs in using ReqRes API and stores the auth token in session
      * 3. Fetches the user list using the token
      *
-     * Injection Profile:
-     * - 3 users ramping up over 10 seconds
+     * Alongside it, the same journey with the login token taken from the pool shared by all virtual users
+     * (ReqResScenarios.sharedTokenGetUsers, see ReqResApi.TOKENS): its Get Users requests count towards the
+     * same SLOs, while its logins are made outside Gatling and summarised in the log after the run.
+     *
+     * Injection Profile and phases (see metrics.Phases):
+     * - warm-up: -Dphase.warmUpSeconds (default 30) at 0.1 users/s, in a population of its own whose requests
+     *   are grouped under "warm-up"
+     * - ramp: none, as the measured profiles, 3 users ramping up over 10 seconds (per-user login) and 1 user/s
+     *   (shared token), are constant rates
+     * - steady: those 10 seconds
+     * - ramp-down: until the last user is done
+     *
+     * Multi-injector runs (launcher.InjectorLauncher):
+     * - User counts and rates are split across the injector JVMs via Injectors.users(...) and Injectors.rate(...)
      *
      * Protocol:
      * - Uses the configured ReqRes HTTP protocol
      *
-     * Assertions:
-     * - Max response time must be under 1000 ms
-     * - Failure rate must be less than 3%
+     * Assertions (SLOS), on the measured requests, the warm-up's being grouped apart, and again on the steady
+     * phase alone (Phases.steadyChecks); a multi-injector run checks them on the merged results instead:
+     * - Login and Get Users: p95 under 700 ms, p99 under 1000 ms, less than 3% failed
+     *   (per request rather than global(), which would count the warm-up)
      */
+    public static final List<Slo> SLOS = List.of(
+            Slo.request(ReqResApi.LOGIN).p95(700).p99(1000).maxFailedPercent(3),
+            Slo.request(ReqResApi.GET_USERS).p95(700).p99(1000).maxFailedPercent(3)
+    );
+
+    private final Phases phases = Phases.of(Duration.ZERO, Duration.ofSeconds(10));
+
     {
-        setUp(
-                ReqResScenarios.loginAndGetUsers.injectOpen(
-                        rampUsers(3).during(Duration.ofSeconds(10))
-                ).protocols(Protocols.reqResProtocol)
-        )
-                .assertions(
-                        global().responseTime().max().lt(1000),
-                        global().failedRequests().percent().lt(3.0)
-                );
+        phases(phases);
+
+        List<PopulationBuilder> populations = new ArrayList<>(phases.warmUp("ReqRes Login + Get Users",
+                ReqResScenarios.loginAndGetUsersJourney(), 0.1, Protocols.reqResProtocol));
+        populations.add(ReqResScenarios.loginAndGetUsers.injectOpen(phases.open(
+                rampUsers(Injectors.users(3)).during(Duration.ofSeconds(10))
+        )).protocols(Protocols.reqResProtocol));
+        populations.add(ReqResScenarios.sharedTokenGetUsers.injectOpen(phases.open(
+                constantUsersPerSec(Injectors.rate(1)).during(Duration.ofSeconds(10))
+        )).protocols(Protocols.reqResProtocol));
+
+        setUpChecked(phases.steadyEnd(), populations).assertions(Slo.assertions(SLOS));
+    }
+
+    /**
+     * Logs the shared token pool's activity: how many logins its users shared, and how many failed.
+     */
+    @Override
+    public void after() {
+        LOGGER.info("Shared login tokens: {}", ReqResApi.TOKENS.stats());
+        super.after();
+    }
+
+    @Override
+    protected List<RunCheck> checks() {
+        List<RunCheck> checks = new ArrayList<>(super.checks());
+        checks.addAll(phases.steadyChecks(SLOS));
+        return checks;
     }
-}
\ No newline at end of file
+}
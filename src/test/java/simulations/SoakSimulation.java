@@ -0,0 +1,75 @@
+package simulations;
+
+import static io.gatling.javaapi.core.CoreDsl.*;
+import common.Injectors;
+import metrics.RunCheck;
+import metrics.SoakMonitor;
+import protocol.Protocols;
+import scenarios.JsonPlaceholderScenarios;
+import scenarios.ReqResScenarios;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SoakSimulation extends PlaygroundSimulation {
+
+    private static final Duration DURATION = Duration.ofMinutes(Math.round(60 * Double.parseDouble(System.getProperty("soak.hours", "24"))));
+    private static final double CRUD_RATE = Double.parseDouble(System.getProperty("soak.crudUsersPerSec", "1"));
+    private static final double LOGIN_RATE = Double.parseDouble(System.getProperty("soak.loginUsersPerSec", "1"));
+
+    /**
+     * Long-running soak test, to catch leaks and slow degradation in the target.
+     *
+     * Configuration:
+     * - soak.hours            : duration of the constant load (default 24, typically 24 to 72)
+     * - soak.crudUsersPerSec  : arrival rate of fullCrudFlow users (default 1)
+     * - soak.loginUsersPerSec : arrival rate of login + get users users (default 1)
+     * - soak.windowMinutes, soak.referenceWindow, soak.tolerance, soak.dir: see SoakMonitor
+     *
+     * Memory stays flat however long the run: SoakMonitor keeps fixed-size histograms and writes a report,
+     * a trend line per request and drift findings at the end of every window. For the run itself, add
+     * -Dgatling.noReports=true, and -Dmetrics.resultsFile=... if every request must be kept (see ResultsLog).
+     *
+     * Multi-injector runs (launcher.InjectorLauncher):
+     * - Arrival rates are split across the injector JVMs via Injectors.rate(...)
+     *
+     * Assertions:
+     * - Global failure rate must be less than 5%
+     * - -Dsoak.failOnDrift=true also fails the run if any window that ended with the load drifted (SoakMonitor.DRIFT)
+     */
+    {
+        setUpChecked(DURATION,
+                JsonPlaceholderScenarios.fullCrudFlow.injectOpen(
+                        constantUsersPerSec(Injectors.rate(CRUD_RATE)).during(DURATION)
+                ).protocols(Protocols.jsonPlaceholderProtocol),
+
+                ReqResScenarios.loginAndGetUsers.injectOpen(
+                        constantUsersPerSec(Injectors.rate(LOGIN_RATE)).during(DURATION)
+                ).protocols(Protocols.reqResProtocol)
+        ).assertions(
+                global().failedRequests().percent().lt(5.0)
+        );
+    }
+
+    @Override
+    public void before() {
+        super.before();
+        SoakMonitor.start(getClass().getSimpleName());
+    }
+
+    @Override
+    public void after() {
+        SoakMonitor.stop();
+        super.after();
+    }
+
+    @Override
+    protected List<RunCheck> checks() {
+        List<RunCheck> checks = new ArrayList<>(super.checks());
+        if (Boolean.getBoolean("soak.failOnDrift")) {
+            checks.add(SoakMonitor.DRIFT);
+        }
+        return checks;
+    }
+}
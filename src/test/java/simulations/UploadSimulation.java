@@ -0,0 +1,45 @@
+package simulations;
+
+import static io.gatling.javaapi.core.CoreDsl.*;
+import common.Injectors;
+import protocol.Protocols;
+import scenarios.JsonPlaceholderScenarios;
+
+import java.time.Duration;
+
+public class UploadSimulation extends PlaygroundSimulation {
+
+    private static final int USERS = Integer.getInteger("upload.users", 5);
+
+    /**
+     * Large-payload upload test with generated bodies.
+     *
+     * Scenario:
+     * - largeUploads: a generated JSON array of posts, then generated bytes, each of -Dupload.bytes (default 10 MiB)
+     *
+     * Bodies are generated while they are sent, with chunked transfer encoding, so multi-GB uploads
+     * need neither fixtures nor memory. Upload throughput (MB/s) is logged at the end of the run,
+     * apart from the request latencies.
+     *
+     * Configuration:
+     * - upload.users : users ramping up over 10 seconds (default 5)
+     * - upload.bytes : payload size in bytes
+     * - upload.path  : upload endpoint (default /uploads, served by the stand-in: run with -Dtarget=local)
+     *
+     * Multi-injector runs (launcher.InjectorLauncher):
+     * - User counts are split across the injector JVMs via Injectors.users(...)
+     *
+     * Assertions:
+     * - Global failure rate must be less than 5%
+     */
+    {
+        // checked once the last user has started uploading
+        setUpChecked(Duration.ofSeconds(10),
+                JsonPlaceholderScenarios.largeUploads.injectOpen(
+                        rampUsers(Injectors.users(USERS)).during(Duration.ofSeconds(10))
+                ).protocols(Protocols.jsonPlaceholderProtocol)
+        ).assertions(
+                global().failedRequests().percent().lt(5.0)
+        );
+    }
+}